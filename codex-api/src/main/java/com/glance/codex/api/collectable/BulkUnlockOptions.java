@@ -0,0 +1,22 @@
+package com.glance.codex.api.collectable;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * How {@link CollectableManager#unlockAll} announces a batch of unlocks
+ * <p>
+ * A summary replaces the per-collectable messages of the whole batch with one message. Besides the player
+ * placeholders it can use {@code {unlocked_count}}, {@code {replayed_count}} and the comma separated display
+ * names of the newly unlocked collectables as {@code {collectables_formatted}} / {@code {collectables_plain}}.
+ * Reward commands always run per collectable
+ *
+ * @param playerSummary sent to the player instead of each collectable's player message, null to send those
+ * @param globalSummary broadcast instead of each collectable's global message, null to broadcast those
+ * @author Cammy
+ */
+public record BulkUnlockOptions(@Nullable String playerSummary, @Nullable String globalSummary) {
+
+    /** Every collectable sends its own messages, exactly like separate unlocks */
+    public static final BulkUnlockOptions PER_COLLECTABLE = new BulkUnlockOptions(null, null);
+
+}
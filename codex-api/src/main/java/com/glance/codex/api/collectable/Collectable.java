@@ -28,6 +28,17 @@ public interface Collectable {
 
     boolean allowReplay();
 
+    default boolean trackReplays() {
+        return false;
+    }
+
+    /**
+     * @return minimum time between two replays by the same player, 0 for none
+     */
+    default long replayCooldownMillis() {
+        return 0L;
+    }
+
     void setMeta(@NotNull CollectableMeta meta);
 
     @Nullable
@@ -1,6 +1,7 @@
 package com.glance.codex.api.collectable;
 
 import com.glance.codex.api.collectable.type.CollectableType;
+import com.glance.codex.api.data.storage.CollectableCounts;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.Optional;
@@ -14,6 +15,11 @@ public interface CollectableAPI {
 
     Optional<CollectableType> getCollectableType(@NotNull String typeId);
 
+    /**
+     * @return leaderboard counts, empty if disabled in the storage config
+     */
+    Optional<CollectableCounts> counts();
+
     String apiVersion();
 
 }
@@ -1,6 +1,7 @@
 package com.glance.codex.api.collectable;
 
 import com.glance.codex.api.collectable.config.RepositoryConfig;
+import com.glance.codex.api.data.storage.UnlockResult;
 import com.glance.codex.utils.lifecycle.Manager;
 import org.bukkit.NamespacedKey;
 import org.bukkit.entity.Player;
@@ -8,7 +9,9 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.Collection;
+import java.util.Map;
 import java.util.Set;
+import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 
 public interface CollectableManager extends Manager {
@@ -25,6 +28,45 @@ public interface CollectableManager extends Manager {
 
     CompletableFuture<Boolean> unlock(@NotNull Player player, NamespacedKey key);
 
+    /**
+     * Unlocks a collectable for a player who may be offline
+     * <p>
+     * Online players are handled like {@link #unlock(Player, NamespacedKey)}. For offline players the unlock
+     * is stored right away, so it already counts everywhere, while its discover effects (commands, messages and
+     * {@link Discoverable#onDiscover}) are queued and run in one batch when
+     * they next join. Replays of offline players are stored but not announced
+     * <p>
+     * The unlock is stored before its effects are queued, a crash or failed write in between keeps the
+     * unlock but drops its effects, the player is never rewarded for an unlock that was not stored
+     *
+     * @return future with whether this was a first unlock
+     */
+    CompletableFuture<Boolean> unlock(@NotNull UUID playerId, @NotNull NamespacedKey key);
+
+    /**
+     * Unlocks many collectables at once with a single storage call, see {@link #unlockAll(Player, Collection, BulkUnlockOptions)}
+     */
+    default CompletableFuture<Map<NamespacedKey, UnlockResult>> unlockAll(
+        @NotNull Player player, @NotNull Collection<NamespacedKey> keys
+    ) {
+        return unlockAll(player, keys, BulkUnlockOptions.PER_COLLECTABLE);
+    }
+
+    /**
+     * Unlocks many collectables at once, e.g. quest rewards
+     * <p>
+     * Everything is persisted with a single storage call and the reward commands of the batch run in one
+     * main thread task. Already unlocked collectables behave like {@link #unlock} replays, including the
+     * replay cooldown
+     *
+     * @param keys collectables to unlock, unknown keys and replays still cooling down are skipped
+     * @param options whether to collapse the messages into summaries
+     * @return future with the outcome per key not skipped in the order given, empty if the storage call failed
+     */
+    CompletableFuture<Map<NamespacedKey, UnlockResult>> unlockAll(
+        @NotNull Player player, @NotNull Collection<NamespacedKey> keys, @NotNull BulkUnlockOptions options
+    );
+
     CompletableFuture<Boolean> isUnlocked(@NotNull Player player, NamespacedKey key);
 
     CompletableFuture<Set<String>> unlockedIds(@NotNull Player player, @NotNull String namespace);
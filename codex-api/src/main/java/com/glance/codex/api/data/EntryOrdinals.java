@@ -0,0 +1,115 @@
+package com.glance.codex.api.data;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Process-wide registry of entry ordinals, small dense ints standing in for entry IDs
+ * <p>
+ * Repositories register their entries when they are loaded, so configured entries get the lowest
+ * ordinals in config order. IDs no repository knows about (e.g. entries removed from config but still
+ * in storage) are given the next free ordinal the first time they are seen
+ * <p>
+ * Ordinals are append-only and never reused, so they stay stable for the lifetime of the server,
+ * across repository reloads too. They are never persisted, storage always works with the string IDs
+ *
+ * @author Cammy
+ */
+public final class EntryOrdinals {
+
+    private static final Map<String, Namespace> NAMESPACES = new ConcurrentHashMap<>();
+
+    private EntryOrdinals() {}
+
+    /**
+     * Assigns ordinals to the given entries, in iteration order, skipping IDs that already have one
+     *
+     * @param namespace repository namespace
+     * @param ids entry IDs
+     */
+    public static void register(@NotNull String namespace, @NotNull Collection<String> ids) {
+        Namespace ns = namespace(namespace);
+        for (String id : ids) ns.ordinal(id);
+    }
+
+    /**
+     * @return the ordinal of the entry, assigning the next free one if it has none yet
+     */
+    public static int ordinal(@NotNull String namespace, @NotNull String id) {
+        return namespace(namespace).ordinal(id);
+    }
+
+    /**
+     * @return the entry ID for the ordinal, or null if it was never assigned
+     */
+    public static @Nullable String id(@NotNull String namespace, int ordinal) {
+        Namespace ns = NAMESPACES.get(namespace);
+        return ns != null ? ns.id(ordinal) : null;
+    }
+
+    /**
+     * @return how many ordinals the namespace has handed out
+     */
+    public static int size(@NotNull String namespace) {
+        Namespace ns = NAMESPACES.get(namespace);
+        return ns != null ? ns.size() : 0;
+    }
+
+    static @NotNull Namespace namespace(@NotNull String namespace) {
+        return NAMESPACES.computeIfAbsent(namespace, k -> new Namespace());
+    }
+
+    /**
+     * Ordinals of a single namespace
+     * <p>
+     * Lookups are lock-free, only assigning a new ordinal synchronizes
+     */
+    static final class Namespace {
+        private final Map<String, Integer> ordinals = new ConcurrentHashMap<>();
+        private volatile String[] ids = new String[16];
+        private int size;
+
+        int ordinal(@NotNull String id) {
+            Integer existing = ordinals.get(id);
+            if (existing != null) return existing;
+
+            synchronized (this) {
+                existing = ordinals.get(id);
+                if (existing != null) return existing;
+
+                final int ordinal = size;
+                String[] current = ids;
+                if (ordinal == current.length) current = Arrays.copyOf(current, ordinal * 2);
+                current[ordinal] = id;
+                // publish the array before the ordinal becomes visible through the map
+                ids = current;
+                size = ordinal + 1;
+                ordinals.put(id, ordinal);
+                return ordinal;
+            }
+        }
+
+        /**
+         * @return the ordinal, or -1 if the ID was never seen
+         */
+        int find(@NotNull String id) {
+            Integer ordinal = ordinals.get(id);
+            return ordinal != null ? ordinal : -1;
+        }
+
+        @Nullable String id(int ordinal) {
+            String[] current = ids;
+            return ordinal >= 0 && ordinal < current.length ? current[ordinal] : null;
+        }
+
+        synchronized int size() {
+            return size;
+        }
+    }
+
+}
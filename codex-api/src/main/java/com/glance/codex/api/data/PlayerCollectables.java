@@ -1,14 +1,30 @@
 package com.glance.codex.api.data;
 
-import lombok.Data;
-import lombok.experimental.Accessors;
+import com.google.gson.annotations.JsonAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.google.gson.TypeAdapter;
 import org.bukkit.NamespacedKey;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
 import java.util.Set;
+import java.util.function.Function;
 
 /**
  * Holds all collectable-related unlock and replay data for a single player
@@ -16,25 +32,89 @@ import java.util.Set;
  *
  * <h2>Stored Data</h2>
  * <ul>
- *   <li>{@link #unlocks} - Set of unlocked IDs per repository namespace</li>
- *   <li>{@link #firstUnlockedAt} - First-time unlock timestamps per ID</li>
- *   <li>{@link #lastReplayedAt} - Last replay timestamps per ID</li>
+ *   <li>{@link #unlocks()} - Set of unlocked IDs per repository namespace</li>
+ *   <li>{@link #firstUnlockedAt()} - First-time unlock timestamps per ID</li>
+ *   <li>{@link #lastReplayedAt()} - Last replay timestamps per ID</li>
  * </ul>
  *
  * <p>All timestamps are stored in epoch milliseconds</p>
  *
+ * <h2>Representation</h2>
+ * Entries are addressed by their {@link EntryOrdinals ordinal}: each namespace holds a {@link BitSet}
+ * of unlocked ordinals and two sparse primitive arrays of timestamps, holding only the ordinals that have
+ * one, instead of hash sets and maps of boxed Longs. The map-shaped accessors are live views over that data, reads
+ * and writes through them behave like the plain collections they replace
+ * <p>
+ * Serializes to the same JSON shape as the old map fields
+ *
+ * <p><b>Threading note:</b> not thread-safe, callers share instances through {@link #copy()}
+ * or their own locking</p>
+ *
  * @author Cammy
  */
-@Data
-@Accessors(fluent = true)
+@JsonAdapter(PlayerCollectables.Adapter.class)
 public class PlayerCollectables {
 
-    /** Map of namespace -> unlocked entry IDs */
-    private Map<String, Set<String>> unlocks = new HashMap<>();
-    /** Map of namespace -> (ID -> first unlocked time) */
-    private Map<String, Map<String, Long>> firstUnlockedAt = new HashMap<>();
-    /** Map of namespace -> (ID -> last replayed time) */
-    private Map<String, Map<String, Long>> lastReplayedAt = new HashMap<>();
+    /** Marks an empty timestamp slot */
+    private static final long NONE = Long.MIN_VALUE;
+
+    /** namespace -> unlock bits and timestamps */
+    private final Map<String, Bucket> buckets = new HashMap<>();
+
+    private final Map<String, Set<String>> unlocks = new UnlocksView();
+    private final Map<String, Map<String, Long>> firstUnlockedAt = new TimesView(true);
+    private final Map<String, Map<String, Long>> lastReplayedAt = new TimesView(false);
+
+    /**
+     * @return live view of namespace -> unlocked entry IDs
+     */
+    public @NotNull Map<String, Set<String>> unlocks() {
+        return unlocks;
+    }
+
+    /**
+     * @return live view of namespace -> (ID -> first unlocked time)
+     */
+    public @NotNull Map<String, Map<String, Long>> firstUnlockedAt() {
+        return firstUnlockedAt;
+    }
+
+    /**
+     * @return live view of namespace -> (ID -> last replayed time)
+     */
+    public @NotNull Map<String, Map<String, Long>> lastReplayedAt() {
+        return lastReplayedAt;
+    }
+
+    /**
+     * Replaces all unlocks with the given ones
+     */
+    public PlayerCollectables unlocks(@NotNull Map<String, Set<String>> unlocks) {
+        replace(this.unlocks, unlocks);
+        return this;
+    }
+
+    /**
+     * Replaces all first-unlock timestamps with the given ones
+     */
+    public PlayerCollectables firstUnlockedAt(@NotNull Map<String, Map<String, Long>> firstUnlockedAt) {
+        replace(this.firstUnlockedAt, firstUnlockedAt);
+        return this;
+    }
+
+    /**
+     * Replaces all replay timestamps with the given ones
+     */
+    public PlayerCollectables lastReplayedAt(@NotNull Map<String, Map<String, Long>> lastReplayedAt) {
+        replace(this.lastReplayedAt, lastReplayedAt);
+        return this;
+    }
+
+    private static <V> void replace(@NotNull Map<String, V> view, @NotNull Map<String, V> values) {
+        Map<String, V> incoming = new HashMap<>(values);
+        view.clear();
+        view.putAll(incoming);
+    }
 
     /**
      * Checks if the given entry ID is unlocked in a namespace
@@ -44,7 +124,10 @@ public class PlayerCollectables {
      * @return true if unlocked
      */
     public boolean isUnlocked(@NotNull String namespace, @NotNull String id) {
-        return unlocks.getOrDefault(namespace, Set.of()).contains(id);
+        Bucket bucket = buckets.get(namespace);
+        if (bucket == null) return false;
+        int ordinal = bucket.ordinals.find(id);
+        return ordinal >= 0 && bucket.unlocked.get(ordinal);
     }
 
     /**
@@ -68,12 +151,13 @@ public class PlayerCollectables {
      * @return true if newly unlocked, false if already unlocked
      */
     public boolean markUnlock(@NotNull String namespace, @NotNull String id, long when) {
-        Set<String> set = unlocks.computeIfAbsent(namespace, k -> new HashSet<>());
-        boolean added = set.add(id);
-        if (added) {
-            firstUnlockedAt.computeIfAbsent(namespace, k -> new HashMap<>()).put(id, when);
-        }
-        return added;
+        Bucket bucket = bucket(namespace);
+        int ordinal = bucket.ordinals.ordinal(id);
+        if (bucket.unlocked.get(ordinal)) return false;
+
+        bucket.unlocked.set(ordinal);
+        bucket.first.set(ordinal, when);
+        return true;
     }
 
     /**
@@ -83,6 +167,25 @@ public class PlayerCollectables {
         return markUnlock(key.getNamespace(), key.getKey(), when);
     }
 
+    /**
+     * Sets an unlocked entry along with its stored timestamps, as read back from storage
+     *
+     * @param namespace namespace of the entry
+     * @param id entry ID
+     * @param firstUnlockedAt first unlock timestamp, or null if none was recorded
+     * @param lastReplayedAt last replay timestamp, or null if never replayed
+     */
+    public void restoreUnlock(
+        @NotNull String namespace, @NotNull String id,
+        @Nullable Long firstUnlockedAt, @Nullable Long lastReplayedAt
+    ) {
+        Bucket bucket = bucket(namespace);
+        int ordinal = bucket.ordinals.ordinal(id);
+        bucket.unlocked.set(ordinal);
+        if (firstUnlockedAt != null) bucket.first.set(ordinal, firstUnlockedAt);
+        if (lastReplayedAt != null) bucket.replay.set(ordinal, lastReplayedAt);
+    }
+
     /**
      * Records a replay timestamp for the given entry
      *
@@ -91,7 +194,8 @@ public class PlayerCollectables {
      * @param when replay timestamp (epoch millis)
      */
     public void markReplay(@NotNull String namespace, @NotNull String id, long when) {
-        lastReplayedAt.computeIfAbsent(namespace, k -> new HashMap<>()).put(id, when);
+        Bucket bucket = bucket(namespace);
+        bucket.replay.set(bucket.ordinals.ordinal(id), when);
     }
 
     /**
@@ -101,4 +205,705 @@ public class PlayerCollectables {
         markReplay(key.getNamespace(), key.getKey(), when);
     }
 
+    /**
+     * Removes the given entry (re-locks it) along with its timestamps
+     * <p>
+     * Empty namespace buckets are dropped
+     *
+     * @param namespace namespace of the entry
+     * @param id entry ID
+     * @return true if the entry was unlocked before removal
+     */
+    public boolean removeUnlock(@NotNull String namespace, @NotNull String id) {
+        Bucket bucket = buckets.get(namespace);
+        if (bucket == null) return false;
+        int ordinal = bucket.ordinals.find(id);
+        if (ordinal < 0) return false;
+
+        boolean removed = bucket.unlocked.get(ordinal);
+        bucket.unlocked.clear(ordinal);
+        bucket.first.remove(ordinal);
+        bucket.replay.remove(ordinal);
+        prune(namespace, bucket);
+        return removed;
+    }
+
+    /**
+     * Removes every unlock and timestamp in the namespace
+     *
+     * @param namespace repository namespace
+     * @return how many unlocks were removed
+     */
+    public int clearNamespace(@NotNull String namespace) {
+        Bucket removed = buckets.remove(namespace);
+        return removed == null ? 0 : removed.unlocked.cardinality();
+    }
+
+    /**
+     * @param namespace repository namespace
+     * @return how many entries are unlocked in the namespace
+     */
+    public int unlockedCount(@NotNull String namespace) {
+        Bucket bucket = buckets.get(namespace);
+        return bucket == null ? 0 : bucket.unlocked.cardinality();
+    }
+
+    /**
+     * Removes all data held by this instance
+     */
+    public void clear() {
+        buckets.clear();
+    }
+
+    /**
+     * Creates a deep copy of this instance
+     * <p>
+     * Useful when handing a snapshot to another thread while this instance keeps being mutated
+     *
+     * @return an independent copy
+     */
+    public @NotNull PlayerCollectables copy() {
+        PlayerCollectables copy = new PlayerCollectables();
+        buckets.forEach((ns, bucket) -> {
+            if (!bucket.isEmpty()) copy.buckets.put(ns, bucket.copy());
+        });
+        return copy;
+    }
+
+    private @NotNull Bucket bucket(@NotNull String namespace) {
+        return buckets.computeIfAbsent(namespace, ns -> new Bucket(EntryOrdinals.namespace(ns)));
+    }
+
+    private void prune(@NotNull String namespace, @NotNull Bucket bucket) {
+        if (bucket.isEmpty()) buckets.remove(namespace, bucket);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof PlayerCollectables other)) return false;
+        return unlocks.equals(other.unlocks)
+                && firstUnlockedAt.equals(other.firstUnlockedAt)
+                && lastReplayedAt.equals(other.lastReplayedAt);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(unlocks, firstUnlockedAt, lastReplayedAt);
+    }
+
+    @Override
+    public String toString() {
+        return "PlayerCollectables(unlocks=" + unlocks
+                + ", firstUnlockedAt=" + firstUnlockedAt
+                + ", lastReplayedAt=" + lastReplayedAt + ")";
+    }
+
+    /*
+     * ===============
+     * Internal Layout
+     * ===============
+     */
+
+    /**
+     * One namespace of a player, everything indexed by entry ordinal
+     */
+    private static final class Bucket {
+        final EntryOrdinals.Namespace ordinals;
+        final BitSet unlocked;
+        final Times first;
+        final Times replay;
+
+        Bucket(@NotNull EntryOrdinals.Namespace ordinals) {
+            this(ordinals, new BitSet(), new Times(), new Times());
+        }
+
+        private Bucket(EntryOrdinals.Namespace ordinals, BitSet unlocked, Times first, Times replay) {
+            this.ordinals = ordinals;
+            this.unlocked = unlocked;
+            this.first = first;
+            this.replay = replay;
+        }
+
+        boolean isEmpty() {
+            return unlocked.isEmpty() && first.count == 0 && replay.count == 0;
+        }
+
+        Bucket copy() {
+            return new Bucket(ordinals, (BitSet) unlocked.clone(), first.copy(), replay.copy());
+        }
+    }
+
+    /**
+     * Timestamps by ordinal, only for the ordinals that have one
+     * <p>
+     * Kept as ordinals in ascending order with their values alongside, so a few timestamps at high ordinals
+     * cost a few slots rather than an array up to the highest ordinal. Lookups are a binary search, players
+     * hold few enough timestamps per namespace that shifting on insert is cheap
+     */
+    private static final class Times {
+        private static final int[] NO_ORDINALS = new int[0];
+        private static final long[] EMPTY = new long[0];
+
+        int[] ordinals = NO_ORDINALS;
+        long[] values = EMPTY;
+        int count;
+
+        private int index(int ordinal) {
+            return Arrays.binarySearch(ordinals, 0, count, ordinal);
+        }
+
+        long get(int ordinal) {
+            int index = index(ordinal);
+            return index >= 0 ? values[index] : NONE;
+        }
+
+        /**
+         * @return the previous value, or {@link #NONE}
+         */
+        long set(int ordinal, long value) {
+            int index = index(ordinal);
+            if (index >= 0) {
+                long previous = values[index];
+                values[index] = value;
+                return previous;
+            }
+
+            index = -(index + 1);
+            if (count == ordinals.length) {
+                int length = Math.max(4, count + (count >> 1));
+                ordinals = Arrays.copyOf(ordinals, length);
+                values = Arrays.copyOf(values, length);
+            }
+            System.arraycopy(ordinals, index, ordinals, index + 1, count - index);
+            System.arraycopy(values, index, values, index + 1, count - index);
+            ordinals[index] = ordinal;
+            values[index] = value;
+            count++;
+            return NONE;
+        }
+
+        /**
+         * @return the removed value, or {@link #NONE}
+         */
+        long remove(int ordinal) {
+            int index = index(ordinal);
+            if (index < 0) return NONE;
+            long previous = values[index];
+            System.arraycopy(ordinals, index + 1, ordinals, index, count - index - 1);
+            System.arraycopy(values, index + 1, values, index, count - index - 1);
+            count--;
+            return previous;
+        }
+
+        /**
+         * @return the lowest ordinal from {@code from} on that has a value, or -1
+         */
+        int next(int from) {
+            int index = index(from);
+            if (index < 0) index = -(index + 1);
+            return index < count ? ordinals[index] : -1;
+        }
+
+        void clear() {
+            ordinals = NO_ORDINALS;
+            values = EMPTY;
+            count = 0;
+        }
+
+        Times copy() {
+            Times copy = new Times();
+            if (count > 0) {
+                copy.ordinals = Arrays.copyOf(ordinals, count);
+                copy.values = Arrays.copyOf(values, count);
+                copy.count = count;
+            }
+            return copy;
+        }
+    }
+
+    /*
+     * =====
+     * Views
+     * =====
+     */
+
+    /**
+     * Namespace level view, each namespace maps to a live view of one part of its {@link Bucket}
+     * <p>
+     * Namespaces whose part is empty are not listed, matching how empty buckets used to be dropped
+     */
+    private abstract class NamespaceView<V> extends AbstractMap<String, V> {
+
+        abstract boolean present(@NotNull Bucket bucket);
+
+        abstract @NotNull V view(@NotNull Bucket bucket);
+
+        /** detached copy, returned by put and remove */
+        abstract @NotNull V snapshot(@NotNull Bucket bucket);
+
+        abstract void empty(@NotNull Bucket bucket);
+
+        /** adds every value to the bucket, the bucket part is empty when called */
+        abstract void fill(@NotNull Bucket bucket, @NotNull V value);
+
+        /** copies the value if it is one of our own views, which clearing its bucket would empty */
+        abstract @NotNull V detach(@NotNull V value);
+
+        @Override
+        public V get(Object key) {
+            Bucket bucket = buckets.get(key);
+            return bucket != null && present(bucket) ? view(bucket) : null;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return get(key) != null;
+        }
+
+        @Override
+        public V put(String namespace, V value) {
+            Objects.requireNonNull(value, "value");
+            Bucket bucket = bucket(namespace);
+            V previous = present(bucket) ? snapshot(bucket) : null;
+            V incoming = detach(value);
+            empty(bucket);
+            fill(bucket, incoming);
+            prune(namespace, bucket);
+            return previous;
+        }
+
+        @Override
+        public V remove(Object key) {
+            Bucket bucket = buckets.get(key);
+            if (bucket == null || !present(bucket)) return null;
+            V previous = snapshot(bucket);
+            empty(bucket);
+            prune((String) key, bucket);
+            return previous;
+        }
+
+        /**
+         * Returns the live view rather than the mapped value, so
+         * {@code computeIfAbsent(ns, k -> new HashSet<>()).add(id)} keeps working
+         */
+        @Override
+        public V computeIfAbsent(String namespace, Function<? super String, ? extends V> mapping) {
+            V existing = get(namespace);
+            if (existing != null) return existing;
+
+            V value = mapping.apply(namespace);
+            if (value == null) return null;
+            Bucket bucket = bucket(namespace);
+            fill(bucket, value);
+            return view(bucket);
+        }
+
+        @Override
+        public @NotNull Set<Entry<String, V>> entrySet() {
+            return new AbstractSet<>() {
+                @Override
+                public @NotNull Iterator<Entry<String, V>> iterator() {
+                    Iterator<Entry<String, Bucket>> it = buckets.entrySet().iterator();
+                    return new Iterator<>() {
+                        Entry<String, Bucket> next = advance();
+                        Bucket last;
+
+                        private Entry<String, Bucket> advance() {
+                            while (it.hasNext()) {
+                                Entry<String, Bucket> e = it.next();
+                                if (present(e.getValue())) return e;
+                            }
+                            return null;
+                        }
+
+                        @Override
+                        public boolean hasNext() {
+                            return next != null;
+                        }
+
+                        @Override
+                        public Entry<String, V> next() {
+                            if (next == null) throw new NoSuchElementException();
+                            Entry<String, Bucket> current = next;
+                            last = current.getValue();
+                            next = advance();
+                            return new SimpleImmutableEntry<>(current.getKey(), view(last));
+                        }
+
+                        @Override
+                        public void remove() {
+                            if (last == null) throw new IllegalStateException();
+                            // empty buckets are left in place, pruning here would break the iteration
+                            empty(last);
+                            last = null;
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    int size = 0;
+                    for (Bucket bucket : buckets.values()) {
+                        if (present(bucket)) size++;
+                    }
+                    return size;
+                }
+            };
+        }
+    }
+
+    private final class UnlocksView extends NamespaceView<Set<String>> {
+
+        @Override
+        boolean present(@NotNull Bucket bucket) {
+            return !bucket.unlocked.isEmpty();
+        }
+
+        @Override
+        @NotNull Set<String> view(@NotNull Bucket bucket) {
+            return new UnlockSet(bucket);
+        }
+
+        @Override
+        @NotNull Set<String> snapshot(@NotNull Bucket bucket) {
+            return new HashSet<>(new UnlockSet(bucket));
+        }
+
+        @Override
+        void empty(@NotNull Bucket bucket) {
+            bucket.unlocked.clear();
+        }
+
+        @Override
+        void fill(@NotNull Bucket bucket, @NotNull Set<String> ids) {
+            for (String id : ids) bucket.unlocked.set(bucket.ordinals.ordinal(id));
+        }
+
+        @Override
+        @NotNull Set<String> detach(@NotNull Set<String> ids) {
+            return ids instanceof UnlockSet ? new HashSet<>(ids) : ids;
+        }
+    }
+
+    private final class TimesView extends NamespaceView<Map<String, Long>> {
+        private final boolean first;
+
+        TimesView(boolean first) {
+            this.first = first;
+        }
+
+        private Times times(@NotNull Bucket bucket) {
+            return first ? bucket.first : bucket.replay;
+        }
+
+        @Override
+        boolean present(@NotNull Bucket bucket) {
+            return times(bucket).count > 0;
+        }
+
+        @Override
+        @NotNull Map<String, Long> view(@NotNull Bucket bucket) {
+            return new TimesMap(bucket.ordinals, times(bucket));
+        }
+
+        @Override
+        @NotNull Map<String, Long> snapshot(@NotNull Bucket bucket) {
+            return new HashMap<>(new TimesMap(bucket.ordinals, times(bucket)));
+        }
+
+        @Override
+        void empty(@NotNull Bucket bucket) {
+            times(bucket).clear();
+        }
+
+        @Override
+        void fill(@NotNull Bucket bucket, @NotNull Map<String, Long> values) {
+            Times times = times(bucket);
+            values.forEach((id, when) -> {
+                if (when != null) times.set(bucket.ordinals.ordinal(id), when);
+            });
+        }
+
+        @Override
+        @NotNull Map<String, Long> detach(@NotNull Map<String, Long> values) {
+            return values instanceof TimesMap ? new HashMap<>(values) : values;
+        }
+    }
+
+    /**
+     * Unlocked IDs of one namespace, backed by the bucket's bits
+     */
+    private static final class UnlockSet extends AbstractSet<String> {
+        private final Bucket bucket;
+
+        UnlockSet(@NotNull Bucket bucket) {
+            this.bucket = bucket;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            if (!(o instanceof String id)) return false;
+            int ordinal = bucket.ordinals.find(id);
+            return ordinal >= 0 && bucket.unlocked.get(ordinal);
+        }
+
+        @Override
+        public boolean add(String id) {
+            int ordinal = bucket.ordinals.ordinal(id);
+            if (bucket.unlocked.get(ordinal)) return false;
+            bucket.unlocked.set(ordinal);
+            return true;
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            if (!(o instanceof String id)) return false;
+            int ordinal = bucket.ordinals.find(id);
+            if (ordinal < 0 || !bucket.unlocked.get(ordinal)) return false;
+            bucket.unlocked.clear(ordinal);
+            return true;
+        }
+
+        @Override
+        public int size() {
+            return bucket.unlocked.cardinality();
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return bucket.unlocked.isEmpty();
+        }
+
+        @Override
+        public @NotNull Iterator<String> iterator() {
+            return new Iterator<>() {
+                int next = bucket.unlocked.nextSetBit(0);
+                int last = -1;
+
+                @Override
+                public boolean hasNext() {
+                    return next >= 0;
+                }
+
+                @Override
+                public String next() {
+                    if (next < 0) throw new NoSuchElementException();
+                    last = next;
+                    next = bucket.unlocked.nextSetBit(next + 1);
+                    return bucket.ordinals.id(last);
+                }
+
+                @Override
+                public void remove() {
+                    if (last < 0) throw new IllegalStateException();
+                    bucket.unlocked.clear(last);
+                    last = -1;
+                }
+            };
+        }
+    }
+
+    /**
+     * Timestamps of one namespace, backed by a {@link Times} array
+     */
+    private static final class TimesMap extends AbstractMap<String, Long> {
+        private final EntryOrdinals.Namespace ordinals;
+        private final Times times;
+
+        TimesMap(@NotNull EntryOrdinals.Namespace ordinals, @NotNull Times times) {
+            this.ordinals = ordinals;
+            this.times = times;
+        }
+
+        @Override
+        public Long get(Object key) {
+            if (!(key instanceof String id)) return null;
+            int ordinal = ordinals.find(id);
+            if (ordinal < 0) return null;
+            long value = times.get(ordinal);
+            return value == NONE ? null : value;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return get(key) != null;
+        }
+
+        @Override
+        public Long put(String id, Long value) {
+            Objects.requireNonNull(value, "value");
+            long previous = times.set(ordinals.ordinal(id), value);
+            return previous == NONE ? null : previous;
+        }
+
+        @Override
+        public Long remove(Object key) {
+            if (!(key instanceof String id)) return null;
+            int ordinal = ordinals.find(id);
+            if (ordinal < 0) return null;
+            long previous = times.remove(ordinal);
+            return previous == NONE ? null : previous;
+        }
+
+        @Override
+        public int size() {
+            return times.count;
+        }
+
+        @Override
+        public @NotNull Set<Entry<String, Long>> entrySet() {
+            return new AbstractSet<>() {
+                @Override
+                public @NotNull Iterator<Entry<String, Long>> iterator() {
+                    return new Iterator<>() {
+                        int next = times.next(0);
+                        int last = -1;
+
+                        @Override
+                        public boolean hasNext() {
+                            return next >= 0;
+                        }
+
+                        @Override
+                        public Entry<String, Long> next() {
+                            if (next < 0) throw new NoSuchElementException();
+                            last = next;
+                            next = times.next(next + 1);
+                            return new SimpleImmutableEntry<>(ordinals.id(last), times.get(last));
+                        }
+
+                        @Override
+                        public void remove() {
+                            if (last < 0) throw new IllegalStateException();
+                            times.remove(last);
+                            last = -1;
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return times.count;
+                }
+            };
+        }
+    }
+
+    /*
+     * ====
+     * JSON
+     * ====
+     */
+
+    /**
+     * Reads and writes the plain map layout, {@code {"unlocks": {ns: [ids]}, "firstUnlockedAt": {ns: {id: millis}}, ...}},
+     * so existing flat files stay readable
+     */
+    static final class Adapter extends TypeAdapter<PlayerCollectables> {
+
+        @Override
+        public void write(JsonWriter out, PlayerCollectables value) throws IOException {
+            if (value == null) {
+                out.nullValue();
+                return;
+            }
+
+            out.beginObject();
+            out.name("unlocks").beginObject();
+            for (Map.Entry<String, Set<String>> e : value.unlocks().entrySet()) {
+                out.name(e.getKey()).beginArray();
+                for (String id : e.getValue()) out.value(id);
+                out.endArray();
+            }
+            out.endObject();
+            writeTimes(out, "firstUnlockedAt", value.firstUnlockedAt());
+            writeTimes(out, "lastReplayedAt", value.lastReplayedAt());
+            out.endObject();
+        }
+
+        private static void writeTimes(JsonWriter out, String name, Map<String, Map<String, Long>> times) throws IOException {
+            out.name(name).beginObject();
+            for (Map.Entry<String, Map<String, Long>> ns : times.entrySet()) {
+                out.name(ns.getKey()).beginObject();
+                for (Map.Entry<String, Long> e : ns.getValue().entrySet()) {
+                    out.name(e.getKey()).value(e.getValue());
+                }
+                out.endObject();
+            }
+            out.endObject();
+        }
+
+        @Override
+        public PlayerCollectables read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+
+            PlayerCollectables data = new PlayerCollectables();
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                if (in.peek() == JsonToken.NULL) {
+                    in.nextNull();
+                    continue;
+                }
+                switch (name) {
+                    case "unlocks" -> readUnlocks(in, data);
+                    case "firstUnlockedAt" -> readTimes(in, data.firstUnlockedAt());
+                    case "lastReplayedAt" -> readTimes(in, data.lastReplayedAt());
+                    default -> in.skipValue();
+                }
+            }
+            in.endObject();
+            return data;
+        }
+
+        private static void readUnlocks(JsonReader in, PlayerCollectables data) throws IOException {
+            in.beginObject();
+            while (in.hasNext()) {
+                String ns = in.nextName();
+                List<String> ids = new ArrayList<>();
+                if (in.peek() == JsonToken.NULL) {
+                    in.nextNull();
+                    continue;
+                }
+                in.beginArray();
+                while (in.hasNext()) ids.add(in.nextString());
+                in.endArray();
+                addAll(data.unlocks(), ns, ids);
+            }
+            in.endObject();
+        }
+
+        private static void addAll(Map<String, Set<String>> unlocks, String ns, Collection<String> ids) {
+            if (!ids.isEmpty()) unlocks.computeIfAbsent(ns, k -> new HashSet<>()).addAll(ids);
+        }
+
+        private static void readTimes(JsonReader in, Map<String, Map<String, Long>> times) throws IOException {
+            in.beginObject();
+            while (in.hasNext()) {
+                String ns = in.nextName();
+                if (in.peek() == JsonToken.NULL) {
+                    in.nextNull();
+                    continue;
+                }
+                Map<String, Long> values = new HashMap<>();
+                in.beginObject();
+                while (in.hasNext()) {
+                    String id = in.nextName();
+                    if (in.peek() == JsonToken.NULL) {
+                        in.nextNull();
+                    } else {
+                        values.put(id, in.nextLong());
+                    }
+                }
+                in.endObject();
+                if (!values.isEmpty()) times.put(ns, values);
+            }
+            in.endObject();
+        }
+    }
+
 }
@@ -0,0 +1,50 @@
+package com.glance.codex.api.data.storage;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Per-player unlock counts, kept up to date as unlocks change, for leaderboards and completion rankings
+ * <p>
+ * Counts are maintained per repository namespace and across all namespaces combined (pass a null
+ * namespace), so neither query has to look at individual unlocks. Players with no unlocks are not ranked
+ * <p>
+ * Ranks use standard competition ranking, players with equal counts share a rank and the next rank is
+ * skipped accordingly ({@code 1, 2, 2, 4})
+ *
+ * @author Cammy
+ */
+public interface CollectableCounts {
+
+    /**
+     * Lists the players with the most unlocks
+     *
+     * @param namespace repository namespace, or null for all namespaces combined
+     * @param limit maximum number of players
+     * @return future with up to {@code limit} standings, highest count first
+     */
+    CompletableFuture<List<Standing>> top(@Nullable String namespace, int limit);
+
+    /**
+     * Looks up a single player's count and rank
+     *
+     * @param playerId UUID of the player
+     * @param namespace repository namespace, or null for all namespaces combined
+     * @return future with the player's standing, a count of 0 ranks right after every ranked player
+     */
+    CompletableFuture<Standing> standing(@NotNull UUID playerId, @Nullable String namespace);
+
+    /**
+     * A player's place in a ranking
+     *
+     * @param playerId UUID of the player
+     * @param count unlocks in the ranked namespace(s)
+     * @param rank 1-based rank
+     */
+    record Standing(@NotNull UUID playerId, int count, long rank) {}
+
+}
@@ -1,8 +1,14 @@
 package com.glance.codex.api.data.storage;
 
 import com.glance.codex.api.data.PlayerCollectables;
+import org.bukkit.NamespacedKey;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
@@ -56,6 +62,61 @@ public interface CollectableStorage {
             @NotNull String id, long whenMillis
     );
 
+    /**
+     * Unlocks a collectable, or records a replay if it was already unlocked, as one operation
+     * <p>
+     * Implementations should perform this atomically (single statement, transaction or
+     * read-modify-write) so two concurrent unlocks for the same key can never both report
+     * {@link UnlockResult#UNLOCKED}
+     * <p>
+     * The default implementation chains {@link #putUnlock} and {@link #recordReplay}
+     *
+     * @param playerId UUID of the player
+     * @param namespace repository namespace
+     * @param id entry ID
+     * @param whenMillis unlock/replay timestamp (epoch millis)
+     * @param recordReplay whether to store the replay timestamp when already unlocked
+     * @return future with which of the two happened
+     */
+    default CompletableFuture<UnlockResult> unlockOrReplay(
+            @NotNull UUID playerId, @NotNull String namespace,
+            @NotNull String id, long whenMillis, boolean recordReplay
+    ) {
+        return putUnlock(playerId, namespace, id, whenMillis).thenCompose(inserted -> {
+            if (inserted) return CompletableFuture.completedFuture(UnlockResult.UNLOCKED);
+            if (!recordReplay) return CompletableFuture.completedFuture(UnlockResult.REPLAYED);
+            return recordReplay(playerId, namespace, id, whenMillis).thenApply(v -> UnlockResult.REPLAYED);
+        });
+    }
+
+    /**
+     * Runs {@link #unlockOrReplay} for several collectables of one player as a single storage operation
+     * <p>
+     * Backends override this with one read-modify-write (or one transaction for SQL), the default simply
+     * runs {@link #unlockOrReplay} for each key concurrently
+     *
+     * @param playerId UUID of the player
+     * @param keys collectables to unlock, duplicates are only unlocked once
+     * @param whenMillis unlock/replay timestamp (epoch millis)
+     * @param recordReplays keys whose replay timestamp is stored when already unlocked
+     * @return future with the outcome per key, in the order given
+     */
+    default CompletableFuture<Map<NamespacedKey, UnlockResult>> unlockOrReplayAll(
+            @NotNull UUID playerId, @NotNull Collection<NamespacedKey> keys,
+            long whenMillis, @NotNull Set<NamespacedKey> recordReplays
+    ) {
+        Map<NamespacedKey, CompletableFuture<UnlockResult>> pending = new LinkedHashMap<>();
+        for (NamespacedKey key : new LinkedHashSet<>(keys)) {
+            pending.put(key, unlockOrReplay(playerId, key.getNamespace(), key.getKey(), whenMillis, recordReplays.contains(key)));
+        }
+
+        return CompletableFuture.allOf(pending.values().toArray(new CompletableFuture[0])).thenApply(v -> {
+            Map<NamespacedKey, UnlockResult> result = new LinkedHashMap<>();
+            pending.forEach((key, future) -> result.put(key, future.join()));
+            return result;
+        });
+    }
+
     /**
      * Deletes a single unlock (re-locks it)
      *
@@ -95,6 +156,28 @@ public interface CollectableStorage {
         throw new UnsupportedOperationException();
     }
 
+    /**
+     * Loads full snapshots for many players at once, e.g. to warm caches for everyone online
+     * <p>
+     * Backends override this with a bulk read (a chunked {@code IN (...)} query for SQL), the default
+     * simply runs {@link #loadSnapshot(UUID)} for each player concurrently
+     *
+     * @param playerIds UUIDs of the players
+     * @return future with a snapshot for every requested player (empty for players without data)
+     */
+    default CompletableFuture<Map<UUID, PlayerCollectables>> loadSnapshots(@NotNull Collection<UUID> playerIds) {
+        Map<UUID, CompletableFuture<PlayerCollectables>> pending = new HashMap<>();
+        for (UUID playerId : new LinkedHashSet<>(playerIds)) {
+            pending.put(playerId, loadSnapshot(playerId));
+        }
+
+        return CompletableFuture.allOf(pending.values().toArray(new CompletableFuture[0])).thenApply(v -> {
+            Map<UUID, PlayerCollectables> result = new HashMap<>();
+            pending.forEach((playerId, future) -> result.put(playerId, future.join()));
+            return result;
+        });
+    }
+
     /**
      * Saves a full snapshot of all collectables data for the player
      */
@@ -104,4 +187,19 @@ public interface CollectableStorage {
         throw new UnsupportedOperationException();
     }
 
+    /**
+     * Saves full snapshots for many players at once, replacing whatever each player had stored
+     * <p>
+     * Backends override this with a bulk write (one transaction per chunk for SQL), the default
+     * simply runs {@link #saveSnapshot(UUID, PlayerCollectables)} for each player concurrently
+     *
+     * @param snapshots snapshot per player UUID
+     * @return future completing once every snapshot is written
+     */
+    default CompletableFuture<Void> saveSnapshots(@NotNull Map<UUID, PlayerCollectables> snapshots) {
+        return CompletableFuture.allOf(snapshots.entrySet().stream()
+                .map(e -> saveSnapshot(e.getKey(), e.getValue()))
+                .toArray(CompletableFuture[]::new));
+    }
+
 }
@@ -0,0 +1,20 @@
+package com.glance.codex.api.data.storage;
+
+/**
+ * Outcome of {@link CollectableStorage#unlockOrReplay}
+ *
+ * @author Cammy
+ */
+public enum UnlockResult {
+
+    /** The collectable was not unlocked before and has now been inserted */
+    UNLOCKED,
+
+    /**
+     * The collectable was already unlocked
+     * <p>
+     * The replay timestamp is only updated when it was requested
+     */
+    REPLAYED
+
+}
@@ -6,6 +6,7 @@ plugins {
     alias(libs.plugins.indra)
     alias(libs.plugins.plugin.yml)
     alias(libs.plugins.run.paper)
+    alias(libs.plugins.jmh)
 }
 
 repositories {
@@ -22,10 +23,10 @@ repositories {
 dependencies {
     compileOnly(libs.paper.api)
 
-    // Codex API
-    implementation(libs.codex.api)
-    // OR (when local dev)
-    // implementation(project(":codex-api"))
+    // Codex API, built from this repo since the plugin depends on API additions not yet published
+    implementation(project(":codex-api"))
+    // OR (once published)
+    // implementation(libs.codex.api)
 
     // GUI
     paperLibrary(libs.triumph.gui)
@@ -52,12 +53,20 @@ dependencies {
     paperLibrary(libs.hikari)
 
     compileOnly(libs.sqlite)
+
+    // Benchmarks run outside the server, so they need the Bukkit types on their own classpath
+    jmh(libs.paper.api)
 }
 
 java {
     toolchain.languageVersion.set(JavaLanguageVersion.of(21))
 }
 
+// Microbenchmarks in src/jmh, run with ./gradlew :codex-paper:jmh
+jmh {
+    jmhVersion.set(libs.versions.jmh)
+}
+
 // Setup SQLite Build
 val sqlite: Configuration by configurations.creating
 dependencies { sqlite(libs.sqlite) }
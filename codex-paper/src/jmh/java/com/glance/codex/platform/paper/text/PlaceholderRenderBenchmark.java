@@ -0,0 +1,102 @@
+package com.glance.codex.platform.paper.text;
+
+import com.glance.codex.api.text.PlaceholderService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Applying an unlock message through {@link DefaultPlaceholderService} against the lock and replace loop it
+ * replaced, {@link LockingPlaceholderService}
+ * <p>
+ * Both services have the same few globals registered and get the standard collectable and player tags of an
+ * unlock as locals, the message uses a handful of them the way config messages do. The contended variants run
+ * the same call on several threads, as unlocks applied off the main thread do
+ *
+ * @author Cammy
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PlaceholderRenderBenchmark {
+
+    private static final String MESSAGE = "<gold>{player}</gold> found <yellow>{collectable_name_formatted}</yellow>"
+            + " in {repo_name_formatted} on {server_name}, {discovered_count} players ({discovered_percent}%) have it";
+
+    private final Map<String, String> placeholders = new LinkedHashMap<>();
+    private final PlaceholderService service = new DefaultPlaceholderService();
+    private final PlaceholderService locking = new LockingPlaceholderService();
+
+    @Setup
+    public void setup() {
+        placeholders.put("namespace", "notes");
+        placeholders.put("id", "mysterious_note");
+        placeholders.put("key", "notes:mysterious_note");
+        placeholders.put("repo_namespace", "notes");
+        placeholders.put("collectable_name_formatted", "<italic>Mysterious Note</italic>");
+        placeholders.put("collectable_name_plain", "Mysterious Note");
+        placeholders.put("allow_replay", "true");
+        placeholders.put("show_when_locked", "false");
+        placeholders.put("repo_name_formatted", "<aqua>Notes</aqua>");
+        placeholders.put("repo_name_plain", "Notes");
+        placeholders.put("discovered_count", "128");
+        placeholders.put("discovered_percent", "3.2");
+        placeholders.put("discovered_players", "4000");
+        placeholders.put("player", "Steve");
+        placeholders.put("uuid", "8667ba71-b85a-4004-af54-457a9734eed7");
+        placeholders.put("world", "world");
+        placeholders.put("location", "(12.500000, 64.000000, -30.500000)");
+        placeholders.put("block_location", "(12, 64, -31)");
+        placeholders.put("x", "12");
+        placeholders.put("y", "64");
+        placeholders.put("z", "-31");
+
+        for (PlaceholderService target : new PlaceholderService[] {service, locking}) {
+            target.registerDynamic("server_name", player -> "Survival");
+            target.registerDynamic("online", player -> "42");
+            target.registerDynamic("season", player -> "Autumn");
+            target.registerDynamic("event", player -> "Harvest Festival");
+        }
+
+        // the template cache is warm after the first call, as it is for config messages
+        service.apply(MESSAGE, null, placeholders);
+    }
+
+    @Benchmark
+    public String lockingApply() {
+        return locking.apply(MESSAGE, null, placeholders);
+    }
+
+    @Benchmark
+    public String apply() {
+        return service.apply(MESSAGE, null, placeholders);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public String lockingApplyContended() {
+        return locking.apply(MESSAGE, null, placeholders);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public String applyContended() {
+        return service.apply(MESSAGE, null, placeholders);
+    }
+
+}
@@ -3,8 +3,10 @@ package com.glance.codex.platform.paper.collectable;
 import com.glance.codex.api.collectable.CollectableAPI;
 import com.glance.codex.api.collectable.CollectableManager;
 import com.glance.codex.api.collectable.type.CollectableType;
+import com.glance.codex.api.data.storage.CollectableCounts;
 import com.glance.codex.platform.paper.collectable.type.CollectableTypeRegistry;
 import com.glance.codex.platform.paper.notebooks.NotebookRegistry;
+import com.glance.codex.platform.paper.persistence.config.CollectableStorageProvider;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import org.jetbrains.annotations.NotNull;
@@ -17,14 +19,17 @@ public class CollectableApiImpl implements CollectableAPI {
 
     private final CollectableManager collectableManager;
     private final CollectableTypeRegistry typeRegistry;
+    private final CollectableStorageProvider storageProvider;
 
     @Inject
     public CollectableApiImpl(
         @NotNull final CollectableManager collectableManager,
-        @NotNull final CollectableTypeRegistry typeRegistry
+        @NotNull final CollectableTypeRegistry typeRegistry,
+        @NotNull final CollectableStorageProvider storageProvider
     ) {
         this.collectableManager = collectableManager;
         this.typeRegistry = typeRegistry;
+        this.storageProvider = storageProvider;
     }
 
     @Override
@@ -42,6 +47,11 @@ public class CollectableApiImpl implements CollectableAPI {
         return this.typeRegistry.get(typeId);
     }
 
+    @Override
+    public Optional<CollectableCounts> counts() {
+        return this.storageProvider.counts();
+    }
+
     @Override
     public String apiVersion() {
         return "1.0.0";
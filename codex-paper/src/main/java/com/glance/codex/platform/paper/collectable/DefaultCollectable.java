@@ -56,6 +56,9 @@ public class DefaultCollectable extends PlayerCollectable implements ConfigSeria
     @ConfigField
     protected Boolean replayOnClick;
 
+    @ConfigField
+    protected Double replayCooldownSeconds;
+
     @ConfigField
     protected ItemEntry unlockedIcon;
 
@@ -111,6 +114,11 @@ public class DefaultCollectable extends PlayerCollectable implements ConfigSeria
         return (replayOnClick == null || replayOnClick);
     }
 
+    @Override
+    public long replayCooldownMillis() {
+        return replayCooldownSeconds != null ? Math.max(0L, Math.round(replayCooldownSeconds * 1000)) : 0L;
+    }
+
     /* Messages */
 
     @Override public String playerMessageOnReplay() {
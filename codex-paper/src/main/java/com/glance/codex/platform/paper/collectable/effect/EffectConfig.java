@@ -0,0 +1,22 @@
+package com.glance.codex.platform.paper.collectable.effect;
+
+import com.glance.codex.platform.paper.config.engine.annotation.Config;
+import com.glance.codex.platform.paper.config.engine.annotation.ConfigPath;
+import com.google.auto.service.AutoService;
+import com.google.inject.Singleton;
+import lombok.Data;
+import lombok.ToString;
+import lombok.experimental.Accessors;
+
+@Data
+@Accessors(fluent = true)
+@AutoService(Config.Handler.class)
+@ToString
+@Singleton
+@Config(section = "effects")
+public class EffectConfig implements Config.Handler {
+
+    @ConfigPath(value = "tickBudgetMillis", comments = "Main thread time per tick for unlock effects (commands, messages), the rest waits for the next tick")
+    private double tickBudgetMillis = 2.0;
+
+}
@@ -0,0 +1,95 @@
+package com.glance.codex.platform.paper.collectable.effect;
+
+import com.glance.codex.utils.lifecycle.Manager;
+import com.google.auto.service.AutoService;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import lombok.extern.slf4j.Slf4j;
+import org.bukkit.Bukkit;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the Bukkit-facing side effects of unlocks (discover hooks, commands, messages) on the main thread
+ * <p>
+ * Storage futures complete on storage threads, so their outcomes are queued here instead of touching the
+ * server directly. The queue is drained once per tick until {@code effects.tickBudgetMillis} is used up,
+ * a burst of unlocks is spread over the following ticks rather than stalling one. At least one effect runs
+ * every tick so the queue always makes progress
+ *
+ * @author Cammy
+ */
+@Slf4j
+@Singleton
+@AutoService(Manager.class)
+public class EffectDispatcher implements Manager {
+
+    private final Plugin plugin;
+    private final EffectConfig cfg;
+
+    private final Queue<Runnable> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+
+    private @Nullable BukkitTask drainTask;
+
+    @Inject
+    public EffectDispatcher(@NotNull final Plugin plugin, @NotNull final EffectConfig cfg) {
+        this.plugin = plugin;
+        this.cfg = cfg;
+    }
+
+    @Override
+    public void onEnable() {
+        this.drainTask = Bukkit.getScheduler().runTaskTimer(plugin, this::drain, 1L, 1L);
+    }
+
+    @Override
+    public void onDisable() {
+        if (this.drainTask != null) {
+            this.drainTask.cancel();
+            this.drainTask = null;
+        }
+        // nothing drains after this, run what is left while the server is still up
+        drain(Long.MAX_VALUE);
+    }
+
+    /**
+     * Queues an effect for the main thread, safe to call from any thread
+     */
+    public void dispatch(@NotNull Runnable effect) {
+        queue.add(effect);
+        queued.incrementAndGet();
+    }
+
+    /**
+     * @return effects waiting for a tick
+     */
+    public int queued() {
+        return Math.max(0, queued.get());
+    }
+
+    private void drain() {
+        drain((long) (cfg.tickBudgetMillis() * 1_000_000L));
+    }
+
+    private void drain(long budgetNanos) {
+        final long started = System.nanoTime();
+        Runnable effect;
+        while ((effect = queue.poll()) != null) {
+            queued.decrementAndGet();
+            try {
+                effect.run();
+            } catch (RuntimeException e) {
+                log.error("Collectable effect failed", e);
+            }
+            if (System.nanoTime() - started >= budgetNanos) break;
+        }
+    }
+
+}
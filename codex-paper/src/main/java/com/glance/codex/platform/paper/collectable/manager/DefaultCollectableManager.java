@@ -3,16 +3,23 @@ package com.glance.codex.platform.paper.collectable.manager;
 import com.glance.codex.api.collectable.*;
 import com.glance.codex.api.collectable.base.PlayerCollectable;
 import com.glance.codex.api.collectable.config.RepositoryConfig;
+import com.glance.codex.api.data.EntryOrdinals;
 import com.glance.codex.api.data.storage.CollectableStorage;
+import com.glance.codex.api.data.storage.UnlockResult;
 import com.glance.codex.api.text.PlaceholderService;
 import com.glance.codex.platform.paper.collectable.config.CollectableRepositoryConfig;
+import com.glance.codex.platform.paper.collectable.effect.EffectDispatcher;
 import com.glance.codex.platform.paper.collectable.config.EntryParser;
 import com.glance.codex.platform.paper.collectable.factory.CollectableRepoFactory;
 import com.glance.codex.platform.paper.collectable.type.CollectableTypeRegistry;
 import com.glance.codex.platform.paper.command.executor.CommandExecutorService;
 import com.glance.codex.platform.paper.config.engine.ConfigController;
 import com.glance.codex.platform.paper.config.engine.event.ConfigClassReloadEvent;
-import com.glance.codex.platform.paper.text.PlaceholderUtils;
+import com.glance.codex.platform.paper.persistence.cache.SessionCachedCollectableStorage;
+import com.glance.codex.platform.paper.persistence.config.CollectableStorageProvider;
+import com.glance.codex.platform.paper.persistence.discovery.DiscoveryStats;
+import com.glance.codex.platform.paper.persistence.pending.PendingUnlockStore;
+import com.glance.codex.platform.paper.text.PlaceholderContext;
 import com.glance.codex.utils.lifecycle.Manager;
 import com.google.auto.service.AutoService;
 import com.google.inject.Inject;
@@ -26,7 +33,10 @@ import org.bukkit.NamespacedKey;
 import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
 import org.bukkit.plugin.Plugin;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -35,6 +45,7 @@ import java.util.*;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.BiFunction;
+import java.util.function.Predicate;
 
 @Slf4j
 @Singleton
@@ -44,37 +55,56 @@ public class DefaultCollectableManager implements CollectableManager, Listener {
     private final Plugin plugin;
     private final Injector injector;
     private final Provider<CollectableStorage> storageProvider;
+    private final CollectableStorageProvider storageLayers;
     private final CommandExecutorService commandExecutor;
     private final CollectableRepoFactory repositoryFactory;
     private final CollectableTypeRegistry typeRegistry;
     private final PlaceholderService placeholderService;
+    private final DiscoveryStats discoveryStats;
+    /** resolved once storage is up, the store in use follows the active backend */
+    private final Provider<PendingUnlockStore> pendingUnlocks;
+    private final EffectDispatcher effects;
     private final MiniMessage mm = MiniMessage.miniMessage();
 
     private final Map<String, CollectableRepository> repositories = new ConcurrentHashMap<>();
 
+    /** unlocks still waiting on storage, identical requests share one future */
+    private final Map<InFlight, CompletableFuture<Boolean>> inFlight = new ConcurrentHashMap<>();
+    /** last unlock or replay of collectables with a replay cooldown, per online player */
+    private final Map<UUID, Map<NamespacedKey, Long>> lastActivity = new ConcurrentHashMap<>();
+
     @Inject
     public DefaultCollectableManager(
         @NotNull final Plugin plugin,
         @NotNull final Injector injector,
         @NotNull final Provider<CollectableStorage> storage,
+        @NotNull final CollectableStorageProvider storageLayers,
         @NotNull final CollectableTypeRegistry typeRegistry,
         @NotNull final PlaceholderService placeholderService,
         @NotNull final CommandExecutorService commandExecutor,
-        @NotNull final CollectableRepoFactory repositoryFactory
+        @NotNull final CollectableRepoFactory repositoryFactory,
+        @NotNull final DiscoveryStats discoveryStats,
+        @NotNull final Provider<PendingUnlockStore> pendingUnlocks,
+        @NotNull final EffectDispatcher effects
     ) {
         this.plugin = plugin;
         this.injector = injector;
         this.storageProvider = storage;
+        this.storageLayers = storageLayers;
         this.typeRegistry = typeRegistry;
         this.commandExecutor = commandExecutor;
         this.repositoryFactory = repositoryFactory;
         this.placeholderService = placeholderService;
+        this.discoveryStats = discoveryStats;
+        this.pendingUnlocks = pendingUnlocks;
+        this.effects = effects;
     }
 
     @Override
     public void onEnable() {
         // initialize storage instance
         this.storageProvider.get();
+        this.pendingUnlocks.get();
     }
 
     @Override
@@ -117,6 +147,7 @@ public class DefaultCollectableManager implements CollectableManager, Listener {
 
     @Override
     public void registerRepository(CollectableRepository repo) {
+        EntryOrdinals.register(repo.namespace(), repo.entries().keySet());
         repositories.put(repo.namespace(), repo);
     }
 
@@ -136,8 +167,34 @@ public class DefaultCollectableManager implements CollectableManager, Listener {
        return repositories.get(namespace);
     }
 
+    /**
+     * Unlocks or replays, identical calls made while one is still waiting on storage share its future
+     * <p>
+     * Spam from menu clicks or triggers firing every tick costs a single storage round trip and runs the
+     * replay effects once
+     */
     @Override
     public CompletableFuture<Boolean> unlock(@NotNull Player player, NamespacedKey key) {
+        final InFlight request = new InFlight(player.getUniqueId(), key);
+        final CompletableFuture<Boolean> shared = new CompletableFuture<>();
+        final CompletableFuture<Boolean> existing = inFlight.putIfAbsent(request, shared);
+        if (existing != null) return existing;
+
+        CompletableFuture<Boolean> unlock;
+        try {
+            unlock = performUnlock(player, key);
+        } catch (RuntimeException e) {
+            unlock = CompletableFuture.failedFuture(e);
+        }
+        unlock.whenComplete((result, ex) -> {
+            inFlight.remove(request, shared);
+            if (ex != null) shared.completeExceptionally(ex);
+            else shared.complete(result);
+        });
+        return shared;
+    }
+
+    private CompletableFuture<Boolean> performUnlock(@NotNull Player player, @NotNull NamespacedKey key) {
         var storage = storageProvider.get();
         Collectable collectable = get(key);
         if (collectable == null) return CompletableFuture.completedFuture(false);
@@ -148,31 +205,44 @@ public class DefaultCollectableManager implements CollectableManager, Listener {
         final String id = key.getKey();
         final CollectableRepository repo = repositories.get(ns);
 
-        var placeholderBuild = PlaceholderUtils.appendCollectableTags(
-                key, collectable, null);
-        placeholderBuild = PlaceholderUtils.appendPlayerTags(player, placeholderBuild);
-        final Map<String, String> placeholders = placeholderBuild;
+        final boolean replayable = collectable.allowReplay();
+        final boolean trackReplay = replayable && collectable.trackReplays();
+        final long cooldown = collectable.replayCooldownMillis();
+        final long now = System.currentTimeMillis();
 
-        return storage.isUnlocked(uuid, ns, id).thenCompose(unlocked -> {
-            if (unlocked) {
-                return performReplay(player, uuid, ns, id, collectable, placeholders);
-            } else {
-                // First unlock
-                long now = System.currentTimeMillis();
-                return storage.putUnlock(uuid, ns, id, now).thenApply(inserted -> {
-                   if (!inserted) return false;
-                   if (collectable instanceof Discoverable d) d.onDiscover(player);
-
-                   if (collectable instanceof PlayerCollectable pc) {
-                       if (pc.commandsOnDiscover() != null) {
-                           commandExecutor.execute(pc.commandsOnDiscover(), player, placeholders);
-                       }
-                       sendGlobalMessage(player, pc.globalMessageOnDiscover(), placeholders);
-                       sendPlayerMessage(player, pc.playerMessageOnDiscover(), placeholders);
-                   }
-                   return true;
-                });
+        // only a replay can be cooling down, the collectable is known to be unlocked
+        if (cooldown > 0 && coolingDown(uuid, key, cooldown, now)) return CompletableFuture.completedFuture(false);
+
+        // resolved lazily and shared by every message and command of this unlock, except where the player
+        // stood when unlocking, which the effects run later would no longer see
+        final PlaceholderContext placeholders = PlaceholderContext.of(key, collectable, player).pin();
+
+        return storage.unlockOrReplay(uuid, ns, id, now, trackReplay).thenApply(result -> {
+            if (cooldown > 0 && (result == UnlockResult.UNLOCKED || replayable)) recordActivity(uuid, key, now);
+
+            if (result == UnlockResult.REPLAYED) {
+                if (!replayable) return false;
+                placeholders.capture(PlaceholderContext.Group.DISCOVERY);
+                effects.dispatch(() -> performReplay(player, collectable, placeholders));
+                return true;
             }
+
+            // First unlock, counted before the tags are captured so they include this player
+            discoveryStats.recordUnlock(key);
+            placeholders.capture(PlaceholderContext.Group.DISCOVERY);
+            effects.dispatch(() -> {
+                if (collectable instanceof Discoverable d) d.onDiscover(player);
+
+                if (collectable instanceof PlayerCollectable pc) {
+                    if (pc.commandsOnDiscover() != null) {
+                        commandExecutor.executeAllNow(player,
+                                List.of(new CommandExecutorService.Pending(pc.commandsOnDiscover(), placeholders)));
+                    }
+                    sendGlobalMessage(player, pc.globalMessageOnDiscover(), placeholders);
+                    sendPlayerMessage(player, pc.playerMessageOnDiscover(), placeholders);
+                }
+            });
+            return true;
         }).exceptionally(ex -> {
             plugin.getLogger().severe("[Collectables] Unlock failed for " + uuid +
                     " " + ns + ":" + id + " - " + ex);
@@ -180,38 +250,195 @@ public class DefaultCollectableManager implements CollectableManager, Listener {
         });
     }
 
-    private CompletableFuture<Boolean> performReplay(
+    /**
+     * Checks the replay cooldown against memory only, the player's recent activity here or their cached session
+     */
+    private boolean coolingDown(@NotNull UUID playerId, @NotNull NamespacedKey key, long cooldown, long now) {
+        Map<NamespacedKey, Long> recent = lastActivity.get(playerId);
+        Long last = recent != null ? recent.get(key) : null;
+        if (last == null) {
+            SessionCachedCollectableStorage cache = storageLayers.find(SessionCachedCollectableStorage.class).orElse(null);
+            if (cache != null) last = cache.lastActivity(playerId, key);
+        }
+        return last != null && now - last < cooldown;
+    }
+
+    /**
+     * Remembers an unlock or replay for the cooldown, only for online players as quitting forgets them
+     */
+    private void recordActivity(@NotNull UUID playerId, @NotNull NamespacedKey key, long when) {
+        if (Bukkit.getPlayer(playerId) == null) return;
+        lastActivity.computeIfAbsent(playerId, k -> new ConcurrentHashMap<>()).merge(key, when, Math::max);
+    }
+
+    @Override
+    public CompletableFuture<Map<NamespacedKey, UnlockResult>> unlockAll(
         @NotNull Player player,
-        @NotNull UUID uuid,
-        @NotNull String ns,
-        @NotNull String id,
-        @NotNull Collectable collectable,
-        @NotNull Map<String, String> placeholders
+        @NotNull Collection<NamespacedKey> keys,
+        @NotNull BulkUnlockOptions options
     ) {
-        if (!collectable.allowReplay()) {
-            return CompletableFuture.completedFuture(false);
+        final UUID uuid = player.getUniqueId();
+        final long now = System.currentTimeMillis();
+
+        final Map<NamespacedKey, Collectable> collectables = new LinkedHashMap<>();
+        final Set<NamespacedKey> trackReplays = new HashSet<>();
+        for (NamespacedKey key : keys) {
+            Collectable collectable = get(key);
+            if (collectable == null) continue;
+            // replays still cooling down are left out of the batch, as for single unlocks
+            long cooldown = collectable.replayCooldownMillis();
+            if (cooldown > 0 && coolingDown(uuid, key, cooldown, now)) continue;
+            collectables.put(key, collectable);
+            if (collectable.allowReplay() && collectable.trackReplays()) trackReplays.add(key);
         }
+        if (collectables.isEmpty()) return CompletableFuture.completedFuture(Map.of());
+
+        // player tags resolved once for the whole batch
+        final PlaceholderContext playerTags = PlaceholderContext.of(player).pin();
+
+        return storageProvider.get().unlockOrReplayAll(uuid, collectables.keySet(), now, trackReplays).thenApply(results -> {
+            results.forEach((key, result) -> {
+                if (result == UnlockResult.UNLOCKED) discoveryStats.recordUnlock(key);
+                Collectable collectable = collectables.get(key);
+                if (collectable.replayCooldownMillis() > 0 && (result == UnlockResult.UNLOCKED || collectable.allowReplay())) {
+                    recordActivity(uuid, key, now);
+                }
+            });
+            final Map<NamespacedKey, PlaceholderContext> tags = collectableTags(results, collectables, playerTags);
+            effects.dispatch(() -> announce(player, results, collectables, tags, playerTags, options));
+            return results;
+        }).exceptionally(ex -> {
+            plugin.getLogger().severe("[Collectables] Bulk unlock of " + collectables.size()
+                    + " collectables failed for " + uuid + " - " + ex);
+            return Map.of();
+        });
+    }
 
+    @Override
+    public CompletableFuture<Boolean> unlock(@NotNull UUID playerId, @NotNull NamespacedKey key) {
+        final Player online = Bukkit.getPlayer(playerId);
+        if (online != null) return unlock(online, key);
+
+        Collectable collectable = get(key);
+        if (collectable == null) return CompletableFuture.completedFuture(false);
+
+        final boolean trackReplay = collectable.allowReplay() && collectable.trackReplays();
+        final long cooldown = collectable.replayCooldownMillis();
         final long now = System.currentTimeMillis();
 
-        CompletableFuture<Void> storeStage;
-        if (collectable.trackReplays()) {
-            storeStage = storageProvider.get().recordReplay(uuid, ns, id, now);
-        } else {
-            storeStage = CompletableFuture.completedFuture(null);
+        // their cached session may still be around right after quitting
+        if (cooldown > 0 && coolingDown(playerId, key, cooldown, now)) return CompletableFuture.completedFuture(false);
+
+        return storageProvider.get().unlockOrReplay(playerId, key.namespace(), key.getKey(), now, trackReplay).thenCompose(result -> {
+            if (result != UnlockResult.UNLOCKED) return CompletableFuture.completedFuture(false);
+
+            discoveryStats.recordUnlock(key);
+            // the unlock is stored at this point, failing to queue its effects does not undo it
+            return pendingUnlocks.get().add(playerId, key, now).handle((v, ex) -> {
+                if (ex != null) {
+                    plugin.getLogger().severe("[Collectables] Stored offline unlock " + key + " for " + playerId
+                            + " but could not queue its effects, they will not run - " + ex);
+                    return true;
+                }
+                // joined while the unlock was being stored, the join check may have missed it
+                final Player joined = Bukkit.getPlayer(playerId);
+                if (joined != null) deliverPending(joined);
+                return true;
+            });
+        }).exceptionally(ex -> {
+            plugin.getLogger().severe("[Collectables] Offline unlock failed for " + playerId +
+                    " " + key + " - " + ex);
+            return false;
+        });
+    }
+
+    /**
+     * Placeholders of each collectable in a batch, with the discovery tags as of now
+     */
+    private Map<NamespacedKey, PlaceholderContext> collectableTags(
+        @NotNull Map<NamespacedKey, UnlockResult> results,
+        @NotNull Map<NamespacedKey, Collectable> collectables,
+        @NotNull PlaceholderContext playerTags
+    ) {
+        final Map<NamespacedKey, PlaceholderContext> tags = new HashMap<>();
+        for (NamespacedKey key : results.keySet()) {
+            tags.put(key, PlaceholderContext.of(key, collectables.get(key), playerTags)
+                    .capture(PlaceholderContext.Group.DISCOVERY));
         }
+        return tags;
+    }
 
-        return storeStage.thenApply(v -> {
-           if (collectable instanceof Discoverable d) d.onReplay(player);
-           if (collectable instanceof PlayerCollectable pc) {
-               if (pc.commandsOnReplay() != null && !pc.commandsOnReplay().isEmpty()) {
-                   this.commandExecutor.execute(pc.commandsOnReplay(), player, placeholders);
-               }
-               sendGlobalMessage(player, pc.globalMessageOnReplay(), placeholders);
-               sendPlayerMessage(player, pc.playerMessageOnReplay(), placeholders);
-           }
-           return true;
-        });
+    /**
+     * Runs the effects of a batch of unlocks, must run on the main thread
+     */
+    private void announce(
+        @NotNull Player player,
+        @NotNull Map<NamespacedKey, UnlockResult> results,
+        @NotNull Map<NamespacedKey, Collectable> collectables,
+        @NotNull Map<NamespacedKey, PlaceholderContext> tags,
+        @NotNull PlaceholderContext playerTags,
+        @NotNull BulkUnlockOptions options
+    ) {
+        final List<CommandExecutorService.Pending> rewards = new ArrayList<>();
+        final List<Collectable> unlocked = new ArrayList<>();
+        int replayed = 0;
+
+        for (Map.Entry<NamespacedKey, UnlockResult> entry : results.entrySet()) {
+            final NamespacedKey key = entry.getKey();
+            final Collectable collectable = collectables.get(key);
+            final boolean first = entry.getValue() == UnlockResult.UNLOCKED;
+            if (first) {
+                unlocked.add(collectable);
+            } else if (collectable.allowReplay()) {
+                replayed++;
+            } else {
+                continue;
+            }
+
+            if (collectable instanceof Discoverable d) {
+                if (first) d.onDiscover(player);
+                else d.onReplay(player);
+            }
+            if (!(collectable instanceof PlayerCollectable pc)) continue;
+
+            final PlaceholderContext placeholders = tags.get(key);
+            var commands = first ? pc.commandsOnDiscover() : pc.commandsOnReplay();
+            if (commands != null) rewards.add(new CommandExecutorService.Pending(commands, placeholders));
+            if (options.globalSummary() == null) {
+                sendGlobalMessage(player, first ? pc.globalMessageOnDiscover() : pc.globalMessageOnReplay(), placeholders);
+            }
+            if (options.playerSummary() == null) {
+                sendPlayerMessage(player, first ? pc.playerMessageOnDiscover() : pc.playerMessageOnReplay(), placeholders);
+            }
+        }
+
+        commandExecutor.executeAllNow(player, rewards);
+
+        if (!unlocked.isEmpty() || replayed > 0) {
+            final Map<String, String> summary = new HashMap<>(playerTags);
+            summary.put("unlocked_count", String.valueOf(unlocked.size()));
+            summary.put("replayed_count", String.valueOf(replayed));
+            summary.put("collectables_formatted", String.join(", ", unlocked.stream().map(Collectable::rawDisplayName).toList()));
+            summary.put("collectables_plain", String.join(", ", unlocked.stream().map(Collectable::plainDisplayName).toList()));
+            sendGlobalMessage(player, options.globalSummary(), summary);
+            sendPlayerMessage(player, options.playerSummary(), summary);
+        }
+    }
+
+    private void performReplay(
+        @NotNull Player player,
+        @NotNull Collectable collectable,
+        @NotNull Map<String, String> placeholders
+    ) {
+        if (collectable instanceof Discoverable d) d.onReplay(player);
+        if (collectable instanceof PlayerCollectable pc) {
+            if (pc.commandsOnReplay() != null && !pc.commandsOnReplay().isEmpty()) {
+                this.commandExecutor.executeAllNow(player,
+                        List.of(new CommandExecutorService.Pending(pc.commandsOnReplay(), placeholders)));
+            }
+            sendGlobalMessage(player, pc.globalMessageOnReplay(), placeholders);
+            sendPlayerMessage(player, pc.playerMessageOnReplay(), placeholders);
+        }
     }
 
     private void sendPlayerMessage(
@@ -249,17 +476,43 @@ public class DefaultCollectableManager implements CollectableManager, Listener {
 
     @Override
     public CompletableFuture<Boolean> relock(@NotNull Player player, @NotNull NamespacedKey key) {
-        return storageProvider.get().deleteUnlock(player.getUniqueId(), key.getNamespace(), key.getKey());
+        return storageProvider.get().deleteUnlock(player.getUniqueId(), key.getNamespace(), key.getKey())
+                .thenApply(removed -> {
+                    if (removed) {
+                        discoveryStats.recordRelock(key);
+                        forgetActivity(player.getUniqueId(), k -> k.equals(key));
+                    }
+                    return removed;
+                });
     }
 
     @Override
     public CompletableFuture<Integer> clearRepo(@NotNull Player player, @NotNull String namespace) {
-        return storageProvider.get().clearNamespace(player.getUniqueId(), namespace);
+        var storage = storageProvider.get();
+        final UUID uuid = player.getUniqueId();
+        // the cleared ids are needed for the discovery stats, clears are rare admin actions
+        return storage.loadUnlockedIds(uuid, namespace).thenCompose(ids ->
+                storage.clearNamespace(uuid, namespace).thenApply(removed -> {
+                    if (removed > 0) discoveryStats.recordCleared(namespace, ids);
+                    forgetActivity(uuid, key -> key.namespace().equals(namespace));
+                    return removed;
+                }));
     }
 
     @Override
     public CompletableFuture<Void> clearAll(@NotNull Player player) {
-        return storageProvider.get().clearAll(player.getUniqueId());
+        var storage = storageProvider.get();
+        final UUID uuid = player.getUniqueId();
+        return storage.loadSnapshot(uuid).thenCompose(snapshot ->
+                storage.clearAll(uuid).thenRun(() -> {
+                    snapshot.unlocks().forEach(discoveryStats::recordCleared);
+                    lastActivity.remove(uuid);
+                }));
+    }
+
+    private void forgetActivity(@NotNull UUID playerId, @NotNull Predicate<NamespacedKey> keys) {
+        Map<NamespacedKey, Long> recent = lastActivity.get(playerId);
+        if (recent != null) recent.keySet().removeIf(keys);
     }
 
     private void clear() {
@@ -271,6 +524,69 @@ public class DefaultCollectableManager implements CollectableManager, Listener {
         this.clear();
     }
 
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onQuit(PlayerQuitEvent event) {
+        lastActivity.remove(event.getPlayer().getUniqueId());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onJoin(PlayerJoinEvent event) {
+        // drained off the main thread, one lookup of the player in the pending store
+        deliverPending(event.getPlayer());
+    }
+
+    /**
+     * Runs the discover effects of unlocks granted while the player was offline, as one batch
+     * <p>
+     * They were counted in the discovery stats when stored, so they are not counted again
+     */
+    private void deliverPending(@NotNull Player player) {
+        if (!player.isOnline()) return;
+        final UUID uuid = player.getUniqueId();
+        pendingUnlocks.get().drain(uuid).thenAccept(entries -> {
+            if (entries.isEmpty()) return;
+            // left between the join and the drain, keep them for the next join
+            if (!player.isOnline()) {
+                requeue(uuid, entries);
+                return;
+            }
+
+            final Map<NamespacedKey, UnlockResult> results = new LinkedHashMap<>();
+            final Map<NamespacedKey, Collectable> collectables = new HashMap<>();
+            for (PendingUnlockStore.Entry entry : entries) {
+                NamespacedKey key = NamespacedKey.fromString(entry.namespace + ":" + entry.id);
+                Collectable collectable = key != null ? get(key) : null;
+                if (collectable == null) continue;
+                results.put(key, UnlockResult.UNLOCKED);
+                collectables.put(key, collectable);
+                // the unlock happened when it was queued, its replays cool down from then
+                if (collectable.replayCooldownMillis() > 0) recordActivity(uuid, key, entry.queuedAt);
+            }
+            if (results.isEmpty()) return;
+
+            final PlaceholderContext playerTags = PlaceholderContext.of(player);
+            final Map<NamespacedKey, PlaceholderContext> tags = collectableTags(results, collectables, playerTags);
+            effects.dispatch(() -> {
+                if (!player.isOnline()) {
+                    requeue(uuid, entries);
+                    return;
+                }
+                announce(player, results, collectables, tags, playerTags, BulkUnlockOptions.PER_COLLECTABLE);
+            });
+        }).exceptionally(ex -> {
+            plugin.getLogger().severe("[Collectables] Failed to deliver pending unlocks to " + uuid + " - " + ex);
+            return null;
+        });
+    }
+
+    private void requeue(@NotNull UUID playerId, @NotNull List<PendingUnlockStore.Entry> entries) {
+        pendingUnlocks.get().requeue(playerId, entries).exceptionally(ex -> {
+            plugin.getLogger().severe("[Collectables] Lost " + entries.size() + " pending unlocks of "
+                    + playerId + " while putting them back - " + ex);
+            return null;
+        });
+    }
+
     @EventHandler
     public void onRepositoriesReloaded(ConfigClassReloadEvent event) {
         if (!CollectableRepositoryConfig.class.isAssignableFrom(event.configClass())) return;
@@ -283,4 +599,6 @@ public class DefaultCollectableManager implements CollectableManager, Listener {
         repoConfigs.forEach(this::loadFromConfig);
     }
 
+    private record InFlight(@NotNull UUID playerId, @NotNull NamespacedKey key) {}
+
 }
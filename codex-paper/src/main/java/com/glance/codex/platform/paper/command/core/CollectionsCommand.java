@@ -9,6 +9,7 @@ import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import lombok.extern.slf4j.Slf4j;
 import org.bukkit.NamespacedKey;
+import org.bukkit.OfflinePlayer;
 import org.bukkit.command.CommandSender;
 import org.bukkit.entity.Player;
 import org.bukkit.plugin.Plugin;
@@ -102,6 +103,40 @@ public class CollectionsCommand implements CommandHandler {
 
     }
 
+    @Command("collectables grant <player> <namespace> <id>")
+    @Permission("collectables.admin")
+    public void grant(
+        @NotNull CommandSender sender,
+        @Argument("player") OfflinePlayer target,
+        @Argument(value = "namespace", suggestions = "namespaces") String namespace,
+        @Argument(value = "id", suggestions = "entries") String id
+    ) {
+        final NamespacedKey key = NamespacedKey.fromString(namespace + ":" + id);
+        if (key == null) {
+            sender.sendMessage("Invalid key " + namespace + ":" + id);
+            return;
+        }
+        if (manager.get(key) == null) {
+            sender.sendMessage("Unknown collectable " + key.asString());
+            return;
+        }
+
+        final String name = target.getName() != null ? target.getName() : target.getUniqueId().toString();
+        manager.unlock(target.getUniqueId(), key).thenAccept(success -> {
+            if (!success) {
+                sender.sendMessage(name + " already unlocked (and did not replay) " + key.asString());
+            } else if (target.isOnline()) {
+                sender.sendMessage("Unlocked " + key.asString() + " for " + name);
+            } else {
+                sender.sendMessage("Unlocked " + key.asString() + " for " + name + ", effects run when they next join");
+            }
+        }).exceptionally(ex -> {
+            sender.sendMessage("Grant failed: " + ex.getMessage());
+            log.error("Grant failed for '{}' key '{}' due to: ", name, key.asString(), ex);
+            return null;
+        });
+    }
+
     @Command("collectables")
     @Permission("collectables.menu")
     public void openMenu(@NotNull Player sender) {
@@ -0,0 +1,107 @@
+package com.glance.codex.platform.paper.command.core;
+
+import com.glance.codex.platform.paper.command.engine.CommandHandler;
+import com.glance.codex.platform.paper.persistence.config.CollectableStorageConfig;
+import com.glance.codex.platform.paper.persistence.metrics.StorageMetricsService;
+import com.glance.codex.platform.paper.persistence.migration.StorageMigrationService;
+import com.google.auto.service.AutoService;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import org.bukkit.command.CommandSender;
+import org.incendo.cloud.annotations.Argument;
+import org.incendo.cloud.annotations.Command;
+import org.incendo.cloud.annotations.Flag;
+import org.incendo.cloud.annotations.Permission;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Admin commands for moving player data between storage backends, see {@link StorageMigrationService},
+ * and for inspecting storage latency, see {@link StorageMetricsService}
+ *
+ * @author Cammy
+ */
+@Singleton
+@AutoService(CommandHandler.class)
+public class StorageCommand implements CommandHandler {
+
+    private final StorageMigrationService migrations;
+    private final StorageMetricsService metrics;
+
+    @Inject
+    public StorageCommand(
+        @NotNull final StorageMigrationService migrations,
+        @NotNull final StorageMetricsService metrics
+    ) {
+        this.migrations = migrations;
+        this.metrics = metrics;
+    }
+
+    @Command("collectables storage migrate <from> <to>")
+    @Permission("collectables.admin.storage")
+    public void migrate(
+        @NotNull CommandSender sender,
+        @Argument("from") CollectableStorageConfig.Backend from,
+        @Argument("to") CollectableStorageConfig.Backend to,
+        @Flag("fresh") boolean fresh
+    ) {
+        sender.sendMessage("Migrating collectables storage " + from + " -> " + to + (fresh ? " from scratch" : "") + "...");
+        report(sender, migrations.migrate(from, to, fresh, progress -> sender.sendMessage(progress.describe())));
+    }
+
+    @Command("collectables storage verify <from> <to>")
+    @Permission("collectables.admin.storage")
+    public void verify(
+        @NotNull CommandSender sender,
+        @Argument("from") CollectableStorageConfig.Backend from,
+        @Argument("to") CollectableStorageConfig.Backend to
+    ) {
+        sender.sendMessage("Verifying collectables storage " + from + " against " + to + "...");
+        report(sender, migrations.verify(from, to, progress -> sender.sendMessage(progress.describe())));
+    }
+
+    @Command("collectables storage status")
+    @Permission("collectables.admin.storage")
+    public void status(@NotNull CommandSender sender) {
+        StorageMigrationService.Progress progress = migrations.status();
+        sender.sendMessage(progress != null ? progress.describe() : "No storage migration is running");
+    }
+
+    @Command("collectables storage cancel")
+    @Permission("collectables.admin.storage")
+    public void cancel(@NotNull CommandSender sender) {
+        sender.sendMessage(migrations.cancel()
+                ? "Cancelling storage migration after the chunks in flight, run it again to resume"
+                : "No storage migration is running");
+    }
+
+    @Command("collectables storage metrics")
+    @Permission("collectables.admin.storage")
+    public void metrics(@NotNull CommandSender sender) {
+        if (!metrics.enabled()) sender.sendMessage("Storage call metrics are disabled (storage.metrics.enabled)");
+        metrics.summary().forEach(sender::sendMessage);
+    }
+
+    private void report(@NotNull CommandSender sender, @NotNull CompletableFuture<StorageMigrationService.Result> run) {
+        run.whenComplete((result, ex) -> {
+            if (ex != null) {
+                sender.sendMessage("Storage migration failed: " + ex.getMessage());
+                return;
+            }
+
+            String summary = result.from() + " -> " + result.to() + ": " + result.players() + " players"
+                    + (result.resumed() > 0 ? " (" + result.resumed() + " copied by an earlier run)" : "")
+                    + " in " + result.elapsedMillis() / 1000 + "s";
+            if (result.cancelled()) {
+                sender.sendMessage("Storage migration cancelled, " + summary);
+            } else if (result.mismatched() > 0) {
+                sender.sendMessage("Storage migration finished with " + result.mismatched()
+                        + " mismatched players, " + summary + ". First mismatches: " + result.mismatchSamples());
+            } else {
+                sender.sendMessage("Storage migration verified, " + summary);
+            }
+        });
+    }
+
+}
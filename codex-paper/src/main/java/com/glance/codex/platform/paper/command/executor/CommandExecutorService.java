@@ -19,6 +19,7 @@ import org.jetbrains.annotations.Nullable;
 
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @Singleton
@@ -74,13 +75,36 @@ public class CommandExecutorService implements Manager {
         @Nullable Player player,
         @Nullable Map<String, String> placeholders
     ) {
+        // only read from here on, no defensive copy
         Map<String, String> full = (player != null)
                 ? PlaceholderUtils.appendPlayerTags(player, placeholders)
-                : (placeholders != null ? new HashMap<>(placeholders) : Collections.emptyMap());
+                : (placeholders != null ? placeholders : Collections.emptyMap());
 
         executeCommand(null, command, player, full);
     }
 
+    /**
+     * Executes several entries, each with its own placeholders, right away without a scheduler task
+     * <p>
+     * Must be called on the main thread, e.g. from an unlock effect already scheduled there, so a batch
+     * (e.g. bulk unlocks) costs no scheduler hop at all
+     *
+     * @param player the player context (used for PLAYER mode)
+     * @param batch entries in the order they should run
+     */
+    public void executeAllNow(@Nullable Player player, @NotNull List<Pending> batch) {
+        for (Pending pending : prepare(player, batch)) dispatch(null, pending.command(), player, pending.placeholders());
+    }
+
+    private List<Pending> prepare(@Nullable Player player, @NotNull List<Pending> batch) {
+        return batch.stream()
+                .filter(pending -> pending.command().enabled() && !pending.command().commands().isEmpty())
+                .map(pending -> new Pending(pending.command(), player != null
+                        ? PlaceholderUtils.appendPlayerTags(player, pending.placeholders())
+                        : pending.placeholders()))
+                .toList();
+    }
+
     /**
      * Executes all commands in this entry explicitly as the player (ignores per-line runAs)
      *
@@ -148,19 +172,40 @@ public class CommandExecutorService implements Manager {
     ) {
         if (!entry.enabled() || entry.commands().isEmpty()) return;
 
-        this.plugin.getServer().getScheduler().runTask(this.plugin, () -> {
-            for (CommandInfo line : entry.commands()) {
-                String resolved = placeholderService.apply(line.command(), player, placeholders);
+        this.plugin.getServer().getScheduler().runTask(this.plugin, () -> dispatch(forceMode, entry, player, placeholders));
+    }
+
+    /**
+     * Resolves and dispatches every line of the entry, must run on the main thread
+     */
+    private void dispatch(
+            @Nullable CommandInfo.Target forceMode,
+            @NotNull CommandConfig<? extends CommandInfo> entry,
+            @Nullable Player player,
+            @Nullable Map<String, String> placeholders
+    ) {
+        for (CommandInfo line : entry.commands()) {
+            String resolved = placeholderService.apply(line.command(), player, placeholders);
 
-                CommandLine.Target mode = (forceMode != null) ? forceMode : line.runAs();
-                CommandSender sender = switch (mode) {
-                    case CommandLine.Target.PLAYER -> player != null ? player : Bukkit.getConsoleSender();
-                    case CommandLine.Target.CONSOLE -> Bukkit.getConsoleSender();
-                };
+            CommandLine.Target mode = (forceMode != null) ? forceMode : line.runAs();
+            CommandSender sender = switch (mode) {
+                case CommandLine.Target.PLAYER -> player != null ? player : Bukkit.getConsoleSender();
+                case CommandLine.Target.CONSOLE -> Bukkit.getConsoleSender();
+            };
 
-                Bukkit.dispatchCommand(sender, resolved);
-            }
-        });
+            Bukkit.dispatchCommand(sender, resolved);
+        }
     }
 
+    /**
+     * A command entry waiting to run as part of {@link #executeAllNow}
+     *
+     * @param command the entry to run
+     * @param placeholders placeholder values for this entry
+     */
+    public record Pending(
+        @NotNull CommandConfig<? extends CommandInfo> command,
+        @Nullable Map<String, String> placeholders
+    ) {}
+
 }
@@ -14,6 +14,8 @@ import com.glance.codex.platform.paper.config.engine.reload.DefaultConfigReloade
 import com.glance.codex.platform.paper.notebooks.NotebookRegistry;
 import com.glance.codex.platform.paper.notebooks.book.DefaultNotebookRegistry;
 import com.glance.codex.platform.paper.persistence.config.CollectableStorageProvider;
+import com.glance.codex.platform.paper.persistence.pending.PendingUnlockStore;
+import com.glance.codex.platform.paper.persistence.pending.PendingUnlockStoreProvider;
 import com.glance.codex.platform.paper.text.DefaultPlaceholderService;
 import com.glance.codex.platform.paper.text.PapiPlaceholderService;
 import com.google.inject.AbstractModule;
@@ -43,6 +45,7 @@ public class CodexModule extends AbstractModule {
         this.bind(NotebookRegistry.class).to(DefaultNotebookRegistry.class).asEagerSingleton();
 
         this.bind(CollectableStorage.class).toProvider(CollectableStorageProvider.class).in(Singleton.class);
+        this.bind(PendingUnlockStore.class).toProvider(PendingUnlockStoreProvider.class).in(Singleton.class);
 
         if (isPapiPresent()) {
             this.bind(PlaceholderService.class).to(PapiPlaceholderService.class).asEagerSingleton();
@@ -13,7 +13,7 @@ import com.glance.codex.platform.paper.item.ItemBuilder;
 import com.glance.codex.platform.paper.menu.config.CollectableMenuConfig;
 import com.glance.codex.platform.paper.menu.config.codec.SlotSpec;
 import com.glance.codex.platform.paper.menu.util.CollectableClick;
-import com.glance.codex.platform.paper.text.PlaceholderUtils;
+import com.glance.codex.platform.paper.text.PlaceholderContext;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import dev.triumphteam.gui.container.GuiContainer;
@@ -210,9 +210,7 @@ public class CollectablesMenu {
                         });
             }
 
-            var placeholderBuild = PlaceholderUtils.appendCollectableTags(key, pc, null);
-            placeholderBuild = PlaceholderUtils.appendPlayerTags(player, placeholderBuild);
-            final Map<String, String> placeholders = placeholderBuild;
+            final Map<String, String> placeholders = PlaceholderContext.of(key, pc, player);
 
             CommandConfig<? extends CommandInfo> runCommand = switch (click.ctx().guiClick()) {
                 case LEFT -> pc.commandsOnMenuLeftClick();
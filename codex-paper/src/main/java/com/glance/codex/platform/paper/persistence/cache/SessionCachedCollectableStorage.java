@@ -0,0 +1,531 @@
+package com.glance.codex.platform.paper.persistence.cache;
+
+import com.glance.codex.api.data.PlayerCollectables;
+import com.glance.codex.api.data.storage.CollectableStorage;
+import com.glance.codex.api.data.storage.UnlockResult;
+import lombok.extern.slf4j.Slf4j;
+import org.bukkit.NamespacedKey;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write-behind session cache in front of any {@link CollectableStorage}
+ * <p>
+ * A player's {@link PlayerCollectables} snapshot is loaded once when they log in
+ * (see {@link StorageSessionListener}) and every read for that player is answered from memory.
+ * Writes are applied to the in-memory snapshot immediately and logged as the operation they were
+ * (unlock, replay, relock, clear), then flushed to the delegate in the background via {@link #flushAll()},
+ * and once more when the player quits
+ * <p>
+ * A flush replays the logged operations through the delegate's own incremental writes rather than saving
+ * the whole snapshot, so rows another server sharing the database wrote meanwhile are neither deleted nor
+ * brought back. Operations of a flush that fails are put back in front of the log and replayed in full
+ * on the next one, each of them gives the same result when repeated
+ * <p>
+ * Players without an open session (offline lookups, admin tooling) fall straight through to the delegate
+ *
+ * <p><b>Threading note:</b> each session is guarded by its own monitor, flushes for a single
+ * player are chained so a later batch of operations never reaches the delegate before an earlier one</p>
+ *
+ * @author Cammy
+ */
+@Slf4j
+public class SessionCachedCollectableStorage implements CollectableStorage, AutoCloseable {
+
+    /** Sessions opened at pre-login that never joined are dropped after this long */
+    private static final long ABANDONED_SESSION_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    private final CollectableStorage delegate;
+    private final Map<UUID, Session> sessions = new ConcurrentHashMap<>();
+
+    public SessionCachedCollectableStorage(@NotNull CollectableStorage delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * @return the wrapped storage backend
+     */
+    public @NotNull CollectableStorage delegate() {
+        return delegate;
+    }
+
+    /**
+     * Closes the storage below, call {@link #flushAll()} first as nothing is flushed here
+     */
+    @Override
+    public void close() throws Exception {
+        if (delegate instanceof AutoCloseable closeable) closeable.close();
+    }
+
+    /*
+     * ================
+     * Session Handling
+     * ================
+     */
+
+    /**
+     * Loads and caches the snapshot for a player, reusing a live session if one still exists
+     * (e.g. a quick rejoin while the quit flush is in flight)
+     *
+     * @param playerId UUID of the player
+     * @return future completing once the session is ready
+     */
+    public CompletableFuture<Void> open(@NotNull UUID playerId) {
+        Session existing = sessions.get(playerId);
+        if (existing != null) {
+            synchronized (existing) {
+                // eviction happens under the same monitor, so this check is stable
+                if (sessions.get(playerId) == existing) {
+                    existing.closed = false;
+                    existing.joined = false;
+                    existing.openedAt = System.currentTimeMillis();
+                    return CompletableFuture.completedFuture(null);
+                }
+            }
+        }
+
+        return delegate.loadSnapshot(playerId).thenAccept(snapshot ->
+                sessions.putIfAbsent(playerId, new Session(snapshot)));
+    }
+
+    /**
+     * Opens sessions for many players at once, loading everyone without a live session
+     * through a single {@link CollectableStorage#loadSnapshots(Collection)} call
+     *
+     * @param playerIds UUIDs of the players
+     * @return future completing once every session is ready
+     */
+    public CompletableFuture<Void> openAll(@NotNull Collection<UUID> playerIds) {
+        List<CompletableFuture<Void>> pending = new ArrayList<>();
+        List<UUID> missing = new ArrayList<>();
+        for (UUID playerId : playerIds) {
+            if (sessions.containsKey(playerId)) {
+                pending.add(open(playerId));
+            } else {
+                missing.add(playerId);
+            }
+        }
+
+        if (!missing.isEmpty()) {
+            pending.add(delegate.loadSnapshots(missing).thenAccept(snapshots ->
+                    snapshots.forEach((playerId, snapshot) -> sessions.putIfAbsent(playerId, new Session(snapshot)))));
+        }
+        return CompletableFuture.allOf(pending.toArray(new CompletableFuture[0]));
+    }
+
+    /**
+     * Marks the session as joined, so it is no longer treated as abandoned
+     */
+    public void markJoined(@NotNull UUID playerId) {
+        Session session = sessions.get(playerId);
+        if (session == null) return;
+        synchronized (session) {
+            session.joined = true;
+        }
+    }
+
+    /**
+     * Flushes the player's pending changes and evicts the session once the flush is done,
+     * unless the player opened a new session in the meantime
+     *
+     * @param playerId UUID of the player
+     * @return future completing when the final flush is written
+     */
+    public CompletableFuture<Void> close(@NotNull UUID playerId) {
+        Session session = sessions.get(playerId);
+        if (session == null) return CompletableFuture.completedFuture(null);
+
+        synchronized (session) {
+            session.closed = true;
+        }
+
+        return flush(playerId, session).whenComplete((v, ex) -> {
+            synchronized (session) {
+                if (session.closed && session.ops.isEmpty()) sessions.remove(playerId, session);
+            }
+        });
+    }
+
+    /**
+     * @return true if the player currently has a cached session
+     */
+    public boolean isCached(@NotNull UUID playerId) {
+        return sessions.containsKey(playerId);
+    }
+
+    /**
+     * Flushes every session with logged changes to the delegate and drops sessions that were opened but never joined
+     *
+     * @return future completing when all flushes started by this call are written
+     */
+    public CompletableFuture<Void> flushAll() {
+        final long now = System.currentTimeMillis();
+        List<CompletableFuture<Void>> pending = new ArrayList<>();
+
+        sessions.forEach((playerId, session) -> {
+            boolean evict;
+            synchronized (session) {
+                boolean abandoned = !session.joined && now - session.openedAt > ABANDONED_SESSION_MILLIS;
+                evict = session.closed || abandoned;
+            }
+            pending.add(evict ? close(playerId) : flush(playerId, session));
+        });
+
+        return CompletableFuture.allOf(pending.toArray(new CompletableFuture[0]));
+    }
+
+    private CompletableFuture<Void> flush(@NotNull UUID playerId, @NotNull Session session) {
+        synchronized (session) {
+            if (session.ops.isEmpty()) return session.flushing;
+
+            session.flushing = session.flushing
+                    .exceptionally(ex -> null)
+                    .thenCompose(v -> replay(playerId, session));
+            return session.flushing;
+        }
+    }
+
+    /**
+     * Hands everything logged so far to the delegate in log order, the backends keep a player's writes
+     * in submission order so they are not waited on one by one
+     * <p>
+     * The log is taken when this step of the flush chain runs, so operations put back by a failed flush
+     * are always included ahead of anything logged since
+     */
+    private CompletableFuture<Void> replay(@NotNull UUID playerId, @NotNull Session session) {
+        final List<Op> batch;
+        synchronized (session) {
+            if (session.ops.isEmpty()) return CompletableFuture.completedFuture(null);
+            batch = session.ops;
+            session.ops = new ArrayList<>();
+        }
+
+        List<CompletableFuture<?>> writes = new ArrayList<>(batch.size());
+        for (Op op : batch) writes.add(op.apply(delegate, playerId));
+        return CompletableFuture.allOf(writes.toArray(new CompletableFuture[0])).whenComplete((v, ex) -> {
+            if (ex == null) return;
+            log.error("Failed to flush cached collectables for {}, will retry", playerId, ex);
+            synchronized (session) {
+                batch.addAll(session.ops);
+                session.ops = batch;
+            }
+        });
+    }
+
+    /**
+     * Reads the last unlock or recorded replay of a collectable from the cached session only
+     *
+     * @return the later of its first unlock and last replay, null if the player is not cached or lacks the unlock
+     */
+    public @Nullable Long lastActivity(@NotNull UUID playerId, @NotNull NamespacedKey key) {
+        Session session = session(playerId);
+        if (session == null) return null;
+
+        synchronized (session) {
+            if (!session.data.isUnlocked(key)) return null;
+            Long unlocked = session.data.firstUnlockedAt().getOrDefault(key.namespace(), Map.of()).get(key.getKey());
+            Long replayed = session.data.lastReplayedAt().getOrDefault(key.namespace(), Map.of()).get(key.getKey());
+            if (unlocked == null) return replayed;
+            return replayed == null ? unlocked : Math.max(unlocked, replayed);
+        }
+    }
+
+    private @Nullable Session session(@NotNull UUID playerId) {
+        return sessions.get(playerId);
+    }
+
+    /*
+     * ==================
+     * CollectableStorage
+     * ==================
+     */
+
+    @Override
+    public CompletableFuture<Set<String>> loadUnlockedIds(@NotNull UUID playerId, @NotNull String namespace) {
+        Session session = session(playerId);
+        if (session == null) return delegate.loadUnlockedIds(playerId, namespace);
+
+        synchronized (session) {
+            return CompletableFuture.completedFuture(
+                    Set.copyOf(session.data.unlocks().getOrDefault(namespace, Set.of())));
+        }
+    }
+
+    @Override
+    public CompletableFuture<Boolean> putUnlock(@NotNull UUID playerId, @NotNull String namespace, @NotNull String id, long whenMillis) {
+        Session session = session(playerId);
+        if (session == null) return delegate.putUnlock(playerId, namespace, id, whenMillis);
+
+        synchronized (session) {
+            boolean added = session.data.markUnlock(namespace, id, whenMillis);
+            if (added) session.log(new Op.Unlock(namespace, id, whenMillis));
+            return CompletableFuture.completedFuture(added);
+        }
+    }
+
+    @Override
+    public CompletableFuture<UnlockResult> unlockOrReplay(
+        @NotNull UUID playerId, @NotNull String namespace,
+        @NotNull String id, long whenMillis, boolean recordReplay
+    ) {
+        Session session = session(playerId);
+        if (session == null) return delegate.unlockOrReplay(playerId, namespace, id, whenMillis, recordReplay);
+
+        synchronized (session) {
+            if (session.data.markUnlock(namespace, id, whenMillis)) {
+                session.log(new Op.Unlock(namespace, id, whenMillis));
+                return CompletableFuture.completedFuture(UnlockResult.UNLOCKED);
+            }
+            if (recordReplay) {
+                session.data.markReplay(namespace, id, whenMillis);
+                session.log(new Op.Replay(namespace, id, whenMillis));
+            }
+            return CompletableFuture.completedFuture(UnlockResult.REPLAYED);
+        }
+    }
+
+    @Override
+    public CompletableFuture<Map<NamespacedKey, UnlockResult>> unlockOrReplayAll(
+        @NotNull UUID playerId, @NotNull Collection<NamespacedKey> keys,
+        long whenMillis, @NotNull Set<NamespacedKey> recordReplays
+    ) {
+        Session session = session(playerId);
+        if (session == null) return delegate.unlockOrReplayAll(playerId, keys, whenMillis, recordReplays);
+
+        synchronized (session) {
+            Map<NamespacedKey, UnlockResult> results = new LinkedHashMap<>();
+            for (NamespacedKey key : new LinkedHashSet<>(keys)) {
+                if (session.data.markUnlock(key, whenMillis)) {
+                    session.log(new Op.Unlock(key.getNamespace(), key.getKey(), whenMillis));
+                    results.put(key, UnlockResult.UNLOCKED);
+                    continue;
+                }
+                if (recordReplays.contains(key)) {
+                    session.data.markReplay(key, whenMillis);
+                    session.log(new Op.Replay(key.getNamespace(), key.getKey(), whenMillis));
+                }
+                results.put(key, UnlockResult.REPLAYED);
+            }
+            return CompletableFuture.completedFuture(results);
+        }
+    }
+
+    @Override
+    public CompletableFuture<Void> recordReplay(@NotNull UUID playerId, @NotNull String namespace, @NotNull String id, long whenMillis) {
+        Session session = session(playerId);
+        if (session == null) return delegate.recordReplay(playerId, namespace, id, whenMillis);
+
+        synchronized (session) {
+            // mirror the backends, replays are only recorded against existing unlocks
+            if (session.data.isUnlocked(namespace, id)) {
+                session.data.markReplay(namespace, id, whenMillis);
+                session.log(new Op.Replay(namespace, id, whenMillis));
+            }
+            return CompletableFuture.completedFuture(null);
+        }
+    }
+
+    @Override
+    public CompletableFuture<Boolean> deleteUnlock(@NotNull UUID playerId, @NotNull String namespace, @NotNull String id) {
+        Session session = session(playerId);
+        if (session == null) return delegate.deleteUnlock(playerId, namespace, id);
+
+        synchronized (session) {
+            boolean removed = session.data.removeUnlock(namespace, id);
+            if (removed) session.log(new Op.Relock(namespace, id));
+            return CompletableFuture.completedFuture(removed);
+        }
+    }
+
+    @Override
+    public CompletableFuture<Integer> clearNamespace(@NotNull UUID playerId, @NotNull String namespace) {
+        Session session = session(playerId);
+        if (session == null) return delegate.clearNamespace(playerId, namespace);
+
+        synchronized (session) {
+            int removed = session.data.clearNamespace(namespace);
+            if (removed > 0) session.log(new Op.ClearNamespace(namespace));
+            return CompletableFuture.completedFuture(removed);
+        }
+    }
+
+    @Override
+    public CompletableFuture<Void> clearAll(@NotNull UUID playerId) {
+        Session session = session(playerId);
+        if (session == null) return delegate.clearAll(playerId);
+
+        synchronized (session) {
+            session.data.clear();
+            // nothing logged before it matters anymore, and rows stored by other servers go too
+            session.ops.clear();
+            session.log(new Op.ClearAll());
+        }
+        return flush(playerId, session);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> isUnlocked(@NotNull UUID playerId, @NotNull String namespace, @NotNull String id) {
+        Session session = session(playerId);
+        if (session == null) return delegate.isUnlocked(playerId, namespace, id);
+
+        synchronized (session) {
+            return CompletableFuture.completedFuture(session.data.isUnlocked(namespace, id));
+        }
+    }
+
+    @Override
+    public CompletableFuture<PlayerCollectables> loadSnapshot(@NotNull UUID playerId) {
+        Session session = session(playerId);
+        if (session == null) return delegate.loadSnapshot(playerId);
+
+        synchronized (session) {
+            return CompletableFuture.completedFuture(session.data.copy());
+        }
+    }
+
+    /**
+     * Answers cached players from memory and loads the rest from the delegate in one bulk call
+     */
+    @Override
+    public CompletableFuture<Map<UUID, PlayerCollectables>> loadSnapshots(@NotNull Collection<UUID> playerIds) {
+        Map<UUID, PlayerCollectables> result = new HashMap<>();
+        List<UUID> missing = new ArrayList<>();
+        for (UUID playerId : playerIds) {
+            Session session = session(playerId);
+            if (session == null) {
+                missing.add(playerId);
+                continue;
+            }
+            synchronized (session) {
+                result.put(playerId, session.data.copy());
+            }
+        }
+
+        if (missing.isEmpty()) return CompletableFuture.completedFuture(result);
+        return delegate.loadSnapshots(missing).thenApply(loaded -> {
+            result.putAll(loaded);
+            return result;
+        });
+    }
+
+    @Override
+    public CompletableFuture<Void> saveSnapshot(@NotNull UUID playerId, @NotNull PlayerCollectables snapshot) {
+        Session session = session(playerId);
+        if (session == null) return delegate.saveSnapshot(playerId, snapshot);
+
+        synchronized (session) {
+            session.data = snapshot.copy();
+            // an explicit save replaces everything, as it would without the cache
+            session.ops.clear();
+            session.log(new Op.Snapshot(session.data.copy()));
+        }
+        return flush(playerId, session);
+    }
+
+    /**
+     * Cached players go through {@link #saveSnapshot(UUID, PlayerCollectables)}, the rest are handed
+     * to the delegate in one bulk call
+     */
+    @Override
+    public CompletableFuture<Void> saveSnapshots(@NotNull Map<UUID, PlayerCollectables> snapshots) {
+        Map<UUID, PlayerCollectables> uncached = new HashMap<>();
+        List<CompletableFuture<Void>> pending = new ArrayList<>();
+        snapshots.forEach((playerId, snapshot) -> {
+            if (session(playerId) != null) pending.add(saveSnapshot(playerId, snapshot));
+            else uncached.put(playerId, snapshot);
+        });
+
+        if (!uncached.isEmpty()) pending.add(delegate.saveSnapshots(uncached));
+        return CompletableFuture.allOf(pending.toArray(new CompletableFuture[0]));
+    }
+
+    /**
+     * Cached state for a single player
+     */
+    private static final class Session {
+        PlayerCollectables data;
+        /** changes to {@link #data} not yet handed to the delegate, oldest first */
+        List<Op> ops = new ArrayList<>();
+        /** true once the player actually joined (pre-login alone does not count) */
+        boolean joined;
+        /** true after quit, the session is evicted once its last flush completes */
+        boolean closed;
+        long openedAt = System.currentTimeMillis();
+        /** tail of this player's flush chain */
+        CompletableFuture<Void> flushing = CompletableFuture.completedFuture(null);
+
+        Session(@NotNull PlayerCollectables data) {
+            this.data = data;
+        }
+
+        /**
+         * Logs a change, a replay straight after a replay of the same collectable replaces it
+         */
+        void log(@NotNull Op op) {
+            if (op instanceof Op.Replay replay && !ops.isEmpty()
+                    && ops.get(ops.size() - 1) instanceof Op.Replay last
+                    && last.namespace().equals(replay.namespace()) && last.id().equals(replay.id())) {
+                ops.set(ops.size() - 1, op);
+                return;
+            }
+            ops.add(op);
+        }
+    }
+
+    /**
+     * A logged change of a session, replayed through the matching delegate write on flush
+     */
+    private sealed interface Op {
+        CompletableFuture<?> apply(@NotNull CollectableStorage delegate, @NotNull UUID playerId);
+
+        record Unlock(@NotNull String namespace, @NotNull String id, long when) implements Op {
+            public CompletableFuture<?> apply(@NotNull CollectableStorage delegate, @NotNull UUID playerId) {
+                return delegate.putUnlock(playerId, namespace, id, when);
+            }
+        }
+
+        record Replay(@NotNull String namespace, @NotNull String id, long when) implements Op {
+            public CompletableFuture<?> apply(@NotNull CollectableStorage delegate, @NotNull UUID playerId) {
+                return delegate.recordReplay(playerId, namespace, id, when);
+            }
+        }
+
+        record Relock(@NotNull String namespace, @NotNull String id) implements Op {
+            public CompletableFuture<?> apply(@NotNull CollectableStorage delegate, @NotNull UUID playerId) {
+                return delegate.deleteUnlock(playerId, namespace, id);
+            }
+        }
+
+        record ClearNamespace(@NotNull String namespace) implements Op {
+            public CompletableFuture<?> apply(@NotNull CollectableStorage delegate, @NotNull UUID playerId) {
+                return delegate.clearNamespace(playerId, namespace);
+            }
+        }
+
+        record ClearAll() implements Op {
+            public CompletableFuture<?> apply(@NotNull CollectableStorage delegate, @NotNull UUID playerId) {
+                return delegate.clearAll(playerId);
+            }
+        }
+
+        record Snapshot(@NotNull PlayerCollectables data) implements Op {
+            public CompletableFuture<?> apply(@NotNull CollectableStorage delegate, @NotNull UUID playerId) {
+                return delegate.saveSnapshot(playerId, data);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,159 @@
+package com.glance.codex.platform.paper.persistence.cache;
+
+import com.glance.codex.api.data.storage.CollectableStorage;
+import com.glance.codex.platform.paper.persistence.config.CollectableStorageConfig;
+import com.glance.codex.platform.paper.persistence.config.CollectableStorageProvider;
+import com.glance.codex.platform.paper.persistence.executor.StorageExecutor;
+import com.glance.codex.utils.lifecycle.Manager;
+import com.google.auto.service.AutoService;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import lombok.extern.slf4j.Slf4j;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.AsyncPlayerPreLoginEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drives the {@link SessionCachedCollectableStorage} lifecycle
+ * <p>
+ * Opens a session during {@link AsyncPlayerPreLoginEvent} (already off the main thread, so
+ * blocking on the load is fine), flushes dirty sessions on a timer and closes the session on quit
+ * <p>
+ * Does nothing when the session cache is disabled in {@link CollectableStorageConfig}, apart from
+ * closing the storage backend and {@link StorageExecutor} on shutdown
+ *
+ * @author Cammy
+ */
+@Slf4j
+@Singleton
+@AutoService({Manager.class, Listener.class})
+public class StorageSessionListener implements Manager, Listener {
+
+    /** Upper bound for blocking a pre-login on the snapshot load */
+    private static final long LOAD_TIMEOUT_SECONDS = 10;
+
+    private final Plugin plugin;
+    private final CollectableStorageConfig config;
+    private final CollectableStorageProvider storageProvider;
+    private final StorageExecutor executor;
+
+    private @Nullable BukkitTask flushTask;
+
+    @Inject
+    public StorageSessionListener(
+        @NotNull final Plugin plugin,
+        @NotNull final CollectableStorageConfig config,
+        @NotNull final CollectableStorageProvider storageProvider,
+        @NotNull final StorageExecutor executor
+    ) {
+        this.plugin = plugin;
+        this.config = config;
+        this.storageProvider = storageProvider;
+        this.executor = executor;
+    }
+
+    private @Nullable SessionCachedCollectableStorage cache() {
+        return storageProvider.find(SessionCachedCollectableStorage.class).orElse(null);
+    }
+
+    @Override
+    public void onEnable() {
+        SessionCachedCollectableStorage cache = cache();
+        if (cache == null) return;
+
+        long period = Math.max(1, config.cacheFlushIntervalSeconds()) * 20L;
+        this.flushTask = Bukkit.getScheduler().runTaskTimerAsynchronously(plugin, () ->
+                cache.flushAll().exceptionally(ex -> {
+                    log.error("Periodic collectables flush failed", ex);
+                    return null;
+                }), period, period);
+
+        // Players already online (plugin reload) never passed through pre-login
+        final List<UUID> online = Bukkit.getOnlinePlayers().stream().map(Player::getUniqueId).toList();
+        if (!online.isEmpty()) {
+            cache.openAll(online)
+                    .thenRun(() -> online.forEach(cache::markJoined))
+                    .exceptionally(ex -> {
+                        log.error("Failed to preload collectables for online players", ex);
+                        return null;
+                    });
+        }
+    }
+
+    @Override
+    public void onDisable() {
+        if (this.flushTask != null) {
+            this.flushTask.cancel();
+            this.flushTask = null;
+        }
+
+        SessionCachedCollectableStorage cache = cache();
+        if (cache != null) {
+            try {
+                cache.flushAll().get(30, TimeUnit.SECONDS);
+            } catch (Exception e) {
+                log.error("Failed to flush cached collectables on shutdown", e);
+            }
+        }
+
+        // backends may still buffer writes (group commit), drain them before the plugin unloads,
+        // closing the outermost layer closes every layer below it
+        CollectableStorage storage = storageProvider.get();
+        if (storage instanceof AutoCloseable closeable) {
+            try {
+                closeable.close();
+            } catch (Exception e) {
+                log.error("Failed to close collectables storage on shutdown", e);
+            }
+        }
+
+        executor.close();
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPreLogin(AsyncPlayerPreLoginEvent event) {
+        if (event.getLoginResult() != AsyncPlayerPreLoginEvent.Result.ALLOWED) return;
+
+        SessionCachedCollectableStorage cache = cache();
+        if (cache == null) return;
+
+        try {
+            cache.open(event.getUniqueId()).get(LOAD_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            // Not fatal, reads/writes fall through to the backend for this player
+            log.warn("Failed to preload collectables for {}", event.getUniqueId(), e);
+        }
+    }
+
+    @EventHandler(priority = EventPriority.LOWEST)
+    public void onJoin(PlayerJoinEvent event) {
+        SessionCachedCollectableStorage cache = cache();
+        if (cache != null) cache.markJoined(event.getPlayer().getUniqueId());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onQuit(PlayerQuitEvent event) {
+        SessionCachedCollectableStorage cache = cache();
+        if (cache == null) return;
+
+        final UUID uuid = event.getPlayer().getUniqueId();
+        cache.close(uuid).exceptionally(ex -> {
+            log.error("Failed to flush collectables for {} on quit", uuid, ex);
+            return null;
+        });
+    }
+
+}
@@ -20,13 +20,90 @@ public class CollectableStorageConfig implements Config.Handler {
 
     @ConfigPath(value = "flatfile.dir", comments = "Used when backend = 'FLATFILE'")
     private String flatFileDir = "playerdata/collectables";
+    @ConfigPath(value = "flatfile.format", comments = "JSON or BINARY, existing files are converted when first loaded")
+    private FileFormat flatFileFormat = FileFormat.JSON;
+    @ConfigPath(value = "flatfile.compress", comments = "Deflate BINARY files")
+    private boolean flatFileCompress = true;
 
-    @ConfigPath("sql.jdbcUrl") private String jdbcUrl = "jdbc:sqlite:${plugin.data}/collectables.db";
+    @ConfigPath(value = "journal.dir", comments = "Used when backend = 'JOURNAL'")
+    private String journalDir = "playerdata/collectables-journal";
+    @ConfigPath(value = "journal.compactThresholdKb", comments = "A player's log is folded into a snapshot once it grows past this")
+    private int journalCompactThresholdKb = 64;
+    @ConfigPath(value = "journal.syncWrites", comments = "fsync every append, disable to trade crash durability for throughput")
+    private boolean journalSyncWrites = true;
+    @ConfigPath(value = "journal.cacheSize", comments = "How many players' rebuilt state is kept in memory")
+    private int journalCacheSize = 512;
+
+    @ConfigPath(value = "mmap.dir", comments = "Used when backend = 'MMAP'")
+    private String mmapDir = "playerdata/collectables-mmap";
+
+    @ConfigPath(value = "pending.dir", comments = "Unlocks granted to offline players, their effects run on the next join (SQL backends use the collectable_pending table instead)")
+    private String pendingDir = "playerdata/collectables-pending";
+
+    @ConfigPath(value = "sql.jdbcUrl", comments = "jdbc:sqlite:<file>, jdbc:mysql://<host>/<db> or jdbc:mariadb://<host>/<db>")
+    private String jdbcUrl = "jdbc:sqlite:${plugin.data}/collectables.db";
     @ConfigPath("sql.username") private String username = "";
     @ConfigPath("sql.password") private String password = "";
-    @ConfigPath("sql.pool.maxSize") private int maxPool = 6;
+    @ConfigPath(value = "sql.pool.maxSize", comments = "For SQLite this sizes the read-only pool, writes always use one connection")
+    private int maxPool = 6;
     @ConfigPath("sql.pool.minIdle") private int minIdle = 2;
 
-    public enum Backend { FLATFILE, SQLITE, MYSQL }
+    @ConfigPath(value = "sql.sqlite.journalMode", comments = "WAL lets reads run alongside the single writer connection")
+    private String sqliteJournalMode = "WAL";
+    @ConfigPath(value = "sql.sqlite.synchronous", comments = "NORMAL is durable against crashes of the server in WAL mode, FULL also against power loss")
+    private String sqliteSynchronous = "NORMAL";
+    @ConfigPath(value = "sql.sqlite.busyTimeoutMillis", comments = "How long a connection waits on a locked database before failing")
+    private int sqliteBusyTimeoutMillis = 5000;
+    @ConfigPath(value = "sql.sqlite.compactSchema", comments = "Stores keys in a dictionary table and UUIDs as 16 byte blobs, existing data is migrated on startup")
+    private boolean sqliteCompactSchema = false;
+
+    @ConfigPath(value = "sql.groupCommit.enabled", comments = "Commits writes from all players together in shared transactions")
+    private boolean groupCommit = true;
+    @ConfigPath(value = "sql.groupCommit.windowMillis", comments = "How long the writer waits to gather a batch")
+    private int groupCommitWindowMillis = 5;
+    @ConfigPath("sql.groupCommit.maxBatch") private int groupCommitMaxBatch = 256;
+
+    @ConfigPath(value = "executor.threads", comments = "Maximum storage operations running at once")
+    private int executorThreads = 4;
+    @ConfigPath(value = "executor.virtualThreads", comments = "Run storage operations on virtual threads (still capped by 'threads')")
+    private boolean executorVirtualThreads = false;
+    @ConfigPath(value = "executor.queueCapacity", comments = "Operations waiting beyond this are rejected")
+    private int executorQueueCapacity = 10000;
+
+    @ConfigPath(value = "counts.enabled", comments = "Per-player unlock counts for leaderboards, non-SQL backends index every player in memory on startup")
+    private boolean counts = true;
+
+    @ConfigPath(value = "migration.chunkSize", comments = "Players read and written per chunk by '/collectables storage migrate'")
+    private int migrationChunkSize = 500;
+    @ConfigPath(value = "migration.parallelChunks", comments = "Chunks in flight at once, each one occupies storage executor threads")
+    private int migrationParallelChunks = 4;
+
+    @ConfigPath(value = "metrics.enabled", comments = "Latency histograms, error and in-flight counts of every storage call, see '/collectables storage metrics'")
+    private boolean metrics = true;
+    @ConfigPath(value = "metrics.exportIntervalSeconds", comments = "How often the Prometheus text file is rewritten, 0 to disable")
+    private int metricsExportIntervalSeconds = 60;
+    @ConfigPath(value = "metrics.file", comments = "Relative to the plugin folder, point a node_exporter textfile collector at it")
+    private String metricsFile = "metrics/storage.prom";
+
+    @ConfigPath(value = "cache.enabled", comments = "Keeps online players' progress in memory and writes it behind")
+    private boolean sessionCache = true;
+    @ConfigPath("cache.flushIntervalSeconds") private int cacheFlushIntervalSeconds = 30;
+
+    public enum Backend { FLATFILE, SQLITE, MYSQL, JOURNAL, MMAP }
+
+    public enum FileFormat {
+        JSON(".json"),
+        BINARY(".bin");
+
+        private final String extension;
+
+        FileFormat(String extension) {
+            this.extension = extension;
+        }
+
+        public String extension() {
+            return extension;
+        }
+    }
 
 }
@@ -1,7 +1,16 @@
 package com.glance.codex.platform.paper.persistence.config;
 
+import com.glance.codex.api.data.storage.CollectableCounts;
 import com.glance.codex.api.data.storage.CollectableStorage;
+import com.glance.codex.platform.paper.persistence.cache.SessionCachedCollectableStorage;
+import com.glance.codex.platform.paper.persistence.counts.CountingCollectableStorage;
+import com.glance.codex.platform.paper.persistence.executor.StorageExecutor;
 import com.glance.codex.platform.paper.persistence.file.FlatFileCollectableStorage;
+import com.glance.codex.platform.paper.persistence.journal.JournalCollectableStorage;
+import com.glance.codex.platform.paper.persistence.metrics.InstrumentedCollectableStorage;
+import com.glance.codex.platform.paper.persistence.metrics.StorageMetrics;
+import com.glance.codex.platform.paper.persistence.migration.EnumerableCollectableStorage;
+import com.glance.codex.platform.paper.persistence.mmap.MappedCollectableStorage;
 import com.glance.codex.platform.paper.persistence.sql.JdbiCollectableStorage;
 import com.google.inject.Inject;
 import com.google.inject.Provider;
@@ -10,6 +19,10 @@ import org.bukkit.plugin.Plugin;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+
 @Singleton
 public class CollectableStorageProvider implements Provider<CollectableStorage> {
 
@@ -17,45 +30,152 @@ public class CollectableStorageProvider implements Provider<CollectableStorage>
     private final CollectableStorageConfig cfg;
     private final Provider<FlatFileCollectableStorage> flat;
     private final Provider<JdbiCollectableStorage> sql;
-    private @Nullable CollectableStorage cached;
+    private final Provider<JournalCollectableStorage> journal;
+    private final Provider<MappedCollectableStorage> mapped;
+    private final StorageExecutor executor;
+    private final StorageMetrics metrics;
+    /** published once the whole stack is built, see {@link #get()} */
+    private volatile @Nullable CollectableStorage cached;
+    /** every layer of the storage stack, outermost first */
+    private final List<CollectableStorage> layers = new CopyOnWriteArrayList<>();
+    private @Nullable CollectableCounts counts;
+    private @Nullable CollectableStorageConfig.Backend active;
 
     @Inject
     public CollectableStorageProvider(
         @NotNull final Plugin plugin,
         @NotNull final CollectableStorageConfig cfg,
         @NotNull final Provider<FlatFileCollectableStorage> flat,
-        @NotNull final Provider<JdbiCollectableStorage> sql
+        @NotNull final Provider<JdbiCollectableStorage> sql,
+        @NotNull final Provider<JournalCollectableStorage> journal,
+        @NotNull final Provider<MappedCollectableStorage> mapped,
+        @NotNull final StorageExecutor executor,
+        @NotNull final StorageMetrics metrics
     ) {
         this.plugin = plugin;
         this.cfg = cfg;
         this.flat = flat;
         this.sql = sql;
+        this.journal = journal;
+        this.mapped = mapped;
+        this.executor = executor;
+        this.metrics = metrics;
     }
 
     @Override
     public CollectableStorage get() {
-        if (this.cached != null) return cached;
+        CollectableStorage storage = this.cached;
+        if (storage != null) return storage;
+
+        synchronized (this) {
+            // double checked, racing first calls must not each build a stack with its own caches
+            if (this.cached == null) this.cached = build();
+            return this.cached;
+        }
+    }
 
+    private CollectableStorage build() {
+        final CollectableStorage backend = push(backend());
+        CollectableStorage storage = backend;
+        if (cfg.metrics() && backend instanceof EnumerableCollectableStorage enumerable && active != null) {
+            storage = push(new InstrumentedCollectableStorage(enumerable, active.name(), metrics));
+        }
+        // the counts scan lists players from the backend, bypassing the session cache
+        final EnumerableCollectableStorage listing = storage instanceof EnumerableCollectableStorage e ? e : null;
+        if (cfg.sessionCache()) {
+            plugin.getLogger().info("Session cache enabled (flush every " + cfg.cacheFlushIntervalSeconds() + "s)");
+            storage = push(new SessionCachedCollectableStorage(storage));
+        }
+        if (cfg.counts()) {
+            if (backend instanceof CollectableCounts maintained) {
+                this.counts = maintained;
+            } else if (listing != null) {
+                // above the session cache, so online players' unlocks adjust the counts as they happen
+                CountingCollectableStorage counting = new CountingCollectableStorage(storage, listing, executor);
+                this.counts = counting;
+                storage = push(counting);
+            }
+        }
+        return storage;
+    }
+
+    private CollectableStorage push(@NotNull CollectableStorage layer) {
+        layers.add(0, layer);
+        return layer;
+    }
+
+    /**
+     * Finds a layer of the storage stack by type, e.g. a capability of the backend below the session cache
+     *
+     * @return the outermost layer of that type, empty if there is none
+     */
+    public <T> Optional<T> find(@NotNull Class<T> type) {
+        get();
+        for (CollectableStorage layer : layers) {
+            if (type.isInstance(layer)) return Optional.of(type.cast(layer));
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * @return leaderboard counts of the storage in use, empty if disabled
+     */
+    public Optional<CollectableCounts> counts() {
+        get();
+        return Optional.ofNullable(counts);
+    }
+
+    /**
+     * @return the backend actually in use, which differs from the configured one after a driver fallback,
+     * or null if storage was not created yet
+     */
+    public @Nullable CollectableStorageConfig.Backend activeBackend() {
+        return active;
+    }
+
+    private CollectableStorage backend() {
+        CollectableStorage storage = select();
+        if (active == null) active = cfg.backend();
+        return storage;
+    }
+
+    private CollectableStorage select() {
         var backend = cfg.backend();
         if (backend == CollectableStorageConfig.Backend.FLATFILE) {
             plugin.getLogger().info("Using FlatFile storage (JSON)");
-            return cached = flat.get();
+            return flat.get();
+        }
+
+        if (backend == CollectableStorageConfig.Backend.JOURNAL) {
+            plugin.getLogger().info("Using Journal storage (append-only log)");
+            return journal.get();
+        }
+
+        if (backend == CollectableStorageConfig.Backend.MMAP) {
+            plugin.getLogger().info("Using memory-mapped storage (fixed-width records)");
+            return mapped.get();
         }
 
         if (backend == CollectableStorageConfig.Backend.SQLITE) {
             if (!classPresent("org.sqlite.JDBC")) {
                 plugin.getLogger().warning("SQLite driver missing. Falling back to FlatFile.");
-                return cached = flat.get();
+                active = CollectableStorageConfig.Backend.FLATFILE;
+                return flat.get();
             }
         } else if (backend == CollectableStorageConfig.Backend.MYSQL) {
-            if (!classPresent("com.mysql.cj.jdbc.Driver")) {
-                plugin.getLogger().warning("MySQL driver missing. Falling back to FlatFile.");
-                return cached = flat.get();
+            // MariaDB urls (jdbc:mariadb:) need the MariaDB driver, MySQL urls work with either
+            boolean mariaUrl = SqlBootstrap.Dialect.fromUrl(cfg.jdbcUrl()) == SqlBootstrap.Dialect.MARIADB;
+            boolean driver = classPresent("org.mariadb.jdbc.Driver")
+                    || (!mariaUrl && classPresent("com.mysql.cj.jdbc.Driver"));
+            if (!driver) {
+                plugin.getLogger().warning("MySQL/MariaDB driver missing. Falling back to FlatFile.");
+                active = CollectableStorageConfig.Backend.FLATFILE;
+                return flat.get();
             }
         }
 
         plugin.getLogger().info("Using SQL storage via JDBI (" + backend + ").");
-        return cached = sql.get();
+        return sql.get();
     }
 
     private boolean classPresent(String name) {
@@ -1,5 +1,8 @@
 package com.glance.codex.platform.paper.persistence.config;
 
+import com.glance.codex.platform.paper.persistence.sql.CollectableDao;
+import com.glance.codex.platform.paper.persistence.sql.CollectableKeyCache;
+import com.glance.codex.platform.paper.persistence.sql.MySQLCollectableDao;
 import com.glance.codex.platform.paper.persistence.sql.SqliteCollectableDao;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
@@ -8,22 +11,68 @@ import com.zaxxer.hikari.HikariDataSource;
 import lombok.Getter;
 import lombok.experimental.Accessors;
 import org.bukkit.plugin.Plugin;
+import org.jdbi.v3.core.Handle;
 import org.jdbi.v3.core.Jdbi;
 import org.jdbi.v3.sqlobject.SqlObjectPlugin;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
 
+/**
+ * Owns the connection pools and {@link Jdbi} instances for the SQL backends
+ * <p>
+ * SQLite gets a dedicated layout: exactly one writer connection (so writes never contend for the
+ * database lock) plus a pool of read-only connections, with the journal mode, {@code synchronous}
+ * and {@code busy_timeout} pragmas from {@link CollectableStorageConfig}. Server databases use a
+ * single pool for both, where {@link #readJdbi()} is simply {@link #jdbi()}
+ * <p>
+ * SQLite can optionally use the dictionary-encoded schema ({@code sql.sqlite.compactSchema}), in which case
+ * {@link #dao(Handle)} hands out a {@link CollectableDao} translating through the {@link CollectableKeyCache}
+ *
+ * @author Cammy
+ */
 @Singleton
 @Getter
 @Accessors(fluent = true)
-public final class SqlBootstrap {
+public final class SqlBootstrap implements AutoCloseable {
 
     private final DataSource dataSource;
+    /** Used for every write (and schema creation) */
     private final Jdbi jdbi;
+    /** Used for reads, may share the writer pool */
+    private final Jdbi readJdbi;
     private final Dialect dialect;
+    private final @Nullable HikariDataSource readDataSource;
+    /** Present when the dictionary-encoded SQLite schema is in use */
+    private final @Nullable CollectableKeyCache keyCache;
 
-    public enum Dialect { SQLITE, MYSQL, MARIADB }
+    public enum Dialect {
+        SQLITE(SqliteCollectableDao.class),
+        MYSQL(MySQLCollectableDao.class),
+        MARIADB(MySQLCollectableDao.class);
+
+        private final Class<? extends CollectableDao> daoType;
+
+        Dialect(Class<? extends CollectableDao> daoType) {
+            this.daoType = daoType;
+        }
+
+        /**
+         * @return the SqlObject type providing this dialect's statements
+         */
+        public Class<? extends CollectableDao> daoType() {
+            return daoType;
+        }
+
+        public static Dialect fromUrl(@NotNull String jdbcUrl) {
+            if (jdbcUrl.startsWith("jdbc:sqlite")) return SQLITE;
+            if (jdbcUrl.startsWith("jdbc:mariadb")) return MARIADB;
+            return MYSQL;
+        }
+    }
 
     @Inject
     public SqlBootstrap(
@@ -31,34 +80,103 @@ public final class SqlBootstrap {
         @NotNull CollectableStorageConfig cfg
     ) {
         String url = cfg.jdbcUrl();
+        this.dialect = Dialect.fromUrl(url);
+        this.keyCache = dialect == Dialect.SQLITE && cfg.sqliteCompactSchema() ? new CollectableKeyCache() : null;
+
+        HikariConfig hc = baseConfig(cfg);
+        hc.setPoolName("Codex-SQL");
+        hc.setMaximumPoolSize(cfg.maxPool());
+        hc.setMinimumIdle(cfg.minIdle());
+
+        HikariConfig reader = null;
+
+        if (dialect == Dialect.MYSQL) {
+            // Client side statement cache + multi-row rewrite of JDBC batches
+            hc.addDataSourceProperty("cachePrepStmts", "true");
+            hc.addDataSourceProperty("prepStmtCacheSize", "250");
+            hc.addDataSourceProperty("prepStmtCacheSqlLimit", "2048");
+            hc.addDataSourceProperty("rewriteBatchedStatements", "true");
+        } else if (dialect == Dialect.MARIADB) {
+            hc.addDataSourceProperty("useBulkStmts", "true");
+        } else if (dialect == Dialect.SQLITE) {
+            // A single writer, SQLite only ever allows one anyway and extra writers just spin on SQLITE_BUSY
+            hc.setPoolName("Codex-SQLite-Writer");
+            hc.setMaximumPoolSize(1);
+            hc.setMinimumIdle(1);
+            applySqlitePragmas(hc, cfg);
+
+            reader = baseConfig(cfg);
+            reader.setPoolName("Codex-SQLite-Reader");
+            reader.setMaximumPoolSize(Math.max(1, cfg.maxPool()));
+            reader.setMinimumIdle(Math.min(cfg.minIdle(), Math.max(1, cfg.maxPool())));
+            reader.setConnectionInitSql("PRAGMA query_only = 1");
+            applySqlitePragmas(reader, cfg);
+        }
+
+        this.dataSource = new HikariDataSource(hc);
+        this.jdbi = createJdbi(this.dataSource);
+
+        // Create schema once (this also switches the database file into WAL before readers open it)
+        jdbi.useTransaction(handle -> dao(handle).createSchema());
 
+        if (reader != null) {
+            this.readDataSource = new HikariDataSource(reader);
+            this.readJdbi = createJdbi(this.readDataSource);
+        } else {
+            this.readDataSource = null;
+            this.readJdbi = this.jdbi;
+        }
+    }
+
+    /**
+     * Attaches the DAO for the configured dialect and schema to the given handle
+     */
+    public CollectableDao dao(@NotNull Handle handle) {
+        if (keyCache != null) return keyCache.attach(handle);
+        return handle.attach(dialect.daoType());
+    }
+
+    /**
+     * @return the connection pools, writer first, for pool statistics
+     */
+    public @NotNull List<HikariDataSource> pools() {
+        List<HikariDataSource> pools = new ArrayList<>(2);
+        if (dataSource instanceof HikariDataSource hikari) pools.add(hikari);
+        if (readDataSource != null) pools.add(readDataSource);
+        return pools;
+    }
+
+    private static HikariConfig baseConfig(@NotNull CollectableStorageConfig cfg) {
         HikariConfig hc = new HikariConfig();
-        hc.setJdbcUrl(url);
+        hc.setJdbcUrl(cfg.jdbcUrl());
 
         if (!cfg.username().isEmpty()) hc.setUsername(cfg.username());
         if (!cfg.password().isEmpty()) hc.setPassword(cfg.password());
+        return hc;
+    }
 
-        hc.setMaximumPoolSize(cfg.maxPool());
-        hc.setMinimumIdle(cfg.minIdle());
-
-        this.dataSource = new HikariDataSource(hc);
+    /**
+     * Passed as connection properties, which the SQLite driver applies as pragmas on every new connection
+     */
+    private static void applySqlitePragmas(@NotNull HikariConfig hc, @NotNull CollectableStorageConfig cfg) {
+        hc.addDataSourceProperty("journal_mode", cfg.sqliteJournalMode());
+        hc.addDataSourceProperty("synchronous", cfg.sqliteSynchronous());
+        hc.addDataSourceProperty("busy_timeout", String.valueOf(cfg.sqliteBusyTimeoutMillis()));
+    }
 
-        this.jdbi = Jdbi.create(this.dataSource)
+    private static Jdbi createJdbi(@NotNull DataSource dataSource) {
+        return Jdbi.create(dataSource)
                 .installPlugins()
                 .installPlugin(new SqlObjectPlugin());
+    }
 
-        this.dialect = url.startsWith("jdbc:sqlite") ? Dialect.SQLITE : Dialect.MYSQL;
-
-        // Create schema once
-        if (dialect == Dialect.SQLITE) {
-            jdbi.useExtension(SqliteCollectableDao.class, dao -> {
-                dao.createTable();
-                dao.createIdxPlayer();
-                dao.createIdxPlayerNs();
-            });
-        } else {
-            throw new UnsupportedOperationException();
-        }
+    /**
+     * Closes the connection pools, the writer last so SQLite can checkpoint the WAL on the final close
+     */
+    @Override
+    public void close() {
+        if (readDataSource != null) readDataSource.close();
+        if (dataSource instanceof HikariDataSource hikari) hikari.close();
     }
 
 }
@@ -0,0 +1,117 @@
+package com.glance.codex.platform.paper.persistence.counts;
+
+import com.glance.codex.api.data.storage.CollectableCounts;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+
+/**
+ * Unlock counts of every player for a single ranking (one namespace, or all combined)
+ * <p>
+ * A Fenwick tree over the histogram of counts answers "how many players have more than n" in
+ * {@code O(log maxCount)}, so a player's rank never needs a scan. Players are also bucketed by count
+ * for top-N reads, which walk the buckets from the highest count down
+ * <p>
+ * Players with a count of 0 are not stored. All methods synchronize on the ranking
+ *
+ * @author Cammy
+ */
+final class CountRanking {
+
+    private final Map<UUID, Integer> counts = new HashMap<>();
+    private final NavigableMap<Integer, Set<UUID>> buckets = new TreeMap<>();
+    /** 1-based Fenwick tree, index n holds players with a count of n */
+    private long[] tree = new long[64];
+
+    /**
+     * @return the player's previous count
+     */
+    synchronized int set(@NotNull UUID playerId, int count) {
+        int old = counts.getOrDefault(playerId, 0);
+        int updated = Math.max(0, count);
+        if (old == updated) return old;
+
+        if (old > 0) {
+            histogram(old, -1);
+            Set<UUID> bucket = buckets.get(old);
+            bucket.remove(playerId);
+            if (bucket.isEmpty()) buckets.remove(old);
+        }
+        if (updated > 0) {
+            histogram(updated, 1);
+            buckets.computeIfAbsent(updated, k -> new LinkedHashSet<>()).add(playerId);
+            counts.put(playerId, updated);
+        } else {
+            counts.remove(playerId);
+        }
+        return old;
+    }
+
+    synchronized void adjust(@NotNull UUID playerId, int delta) {
+        set(playerId, counts.getOrDefault(playerId, 0) + delta);
+    }
+
+    synchronized int count(@NotNull UUID playerId) {
+        return counts.getOrDefault(playerId, 0);
+    }
+
+    synchronized @NotNull CollectableCounts.Standing standing(@NotNull UUID playerId) {
+        int count = counts.getOrDefault(playerId, 0);
+        long above = counts.size() - prefix(count);
+        return new CollectableCounts.Standing(playerId, count, above + 1);
+    }
+
+    synchronized @NotNull List<CollectableCounts.Standing> top(int limit) {
+        List<CollectableCounts.Standing> standings = new ArrayList<>(Math.min(limit, counts.size()));
+        for (Map.Entry<Integer, Set<UUID>> bucket : buckets.descendingMap().entrySet()) {
+            // ties share the rank of the first player with that count
+            long rank = standings.size() + 1;
+            for (UUID playerId : bucket.getValue()) {
+                if (standings.size() >= limit) return standings;
+                standings.add(new CollectableCounts.Standing(playerId, bucket.getKey(), rank));
+            }
+        }
+        return standings;
+    }
+
+    /*
+     * ============
+     * Fenwick tree
+     * ============
+     */
+
+    private void histogram(int count, long delta) {
+        if (count >= tree.length) grow(count);
+        for (int i = count; i < tree.length; i += i & -i) tree[i] += delta;
+    }
+
+    /**
+     * @return players with a count in {@code [1, count]}
+     */
+    private long prefix(int count) {
+        long sum = 0;
+        for (int i = Math.min(count, tree.length - 1); i > 0; i -= i & -i) sum += tree[i];
+        return sum;
+    }
+
+    /**
+     * Rebuilds the tree large enough for the count, from the buckets as tree nodes cover ranges that depend on the size
+     */
+    private void grow(int count) {
+        int size = tree.length;
+        while (size <= count) size *= 2;
+        tree = new long[size];
+        for (Map.Entry<Integer, Set<UUID>> bucket : buckets.entrySet()) {
+            for (int i = bucket.getKey(); i < size; i += i & -i) tree[i] += bucket.getValue().size();
+        }
+    }
+
+}
@@ -0,0 +1,320 @@
+package com.glance.codex.platform.paper.persistence.counts;
+
+import com.glance.codex.api.data.PlayerCollectables;
+import com.glance.codex.api.data.storage.CollectableCounts;
+import com.glance.codex.api.data.storage.CollectableStorage;
+import com.glance.codex.api.data.storage.UnlockResult;
+import com.glance.codex.platform.paper.persistence.discovery.DiscoverySource;
+import com.glance.codex.platform.paper.persistence.discovery.DiscoveryTally;
+import com.glance.codex.platform.paper.persistence.executor.StorageExecutor;
+import com.glance.codex.platform.paper.persistence.migration.EnumerableCollectableStorage;
+import lombok.extern.slf4j.Slf4j;
+import org.bukkit.NamespacedKey;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory {@link CollectableCounts} for backends without a counts table (flat files, journal, mmap)
+ * <p>
+ * Wraps the storage and adjusts the counts as writes complete, {@code +1} for a new unlock, {@code -1} for
+ * a relock, the namespace's count for a clear and a full recount from the snapshot for snapshot saves.
+ * The index is built once on startup by scanning every stored player in chunks on the storage executor,
+ * players written to while the scan runs are loaded again once it finishes
+ * <p>
+ * Sits above the session cache, so online players' unlocks move the counts right away instead of at the
+ * next flush. Players are listed from the backend below the cache, their snapshots read through it
+ * <p>
+ * The startup scan also tallies every collectable's unlocks, handed out as the {@link DiscoverySource}
+ * so discovery stats do not need a second pass over every player
+ *
+ * @author Cammy
+ */
+@Slf4j
+public class CountingCollectableStorage implements EnumerableCollectableStorage, CollectableCounts, DiscoverySource, AutoCloseable {
+
+    private static final int SCAN_CHUNK = 500;
+
+    private static final CountRanking EMPTY = new CountRanking();
+
+    private final CollectableStorage delegate;
+    private final EnumerableCollectableStorage listing;
+
+    private final CountRanking total = new CountRanking();
+    private final Map<String, CountRanking> namespaces = new ConcurrentHashMap<>();
+
+    /** players written to while the startup scan runs, null once it finished */
+    private volatile @Nullable Set<UUID> touched = ConcurrentHashMap.newKeySet();
+    /** unlocks per collectable as of the startup scan */
+    private final DiscoveryTally tally = new DiscoveryTally();
+    /** players already in {@link #tally}, so the final pass does not add them twice, null once the scan finished */
+    private volatile @Nullable Set<UUID> tallied = ConcurrentHashMap.newKeySet();
+    private final CompletableFuture<Void> ready;
+    private volatile boolean closed;
+
+    /**
+     * @param delegate the storage to wrap, usually the session cache
+     * @param listing the backend below it, lists the players to index
+     */
+    public CountingCollectableStorage(
+        @NotNull CollectableStorage delegate,
+        @NotNull EnumerableCollectableStorage listing,
+        @NotNull StorageExecutor executor
+    ) {
+        this.delegate = delegate;
+        this.listing = listing;
+        this.ready = executor.submit(this::scan).thenCompose(v -> v).whenComplete((v, ex) -> {
+            if (ex != null) log.error("Failed to build collectable counts", ex);
+        });
+    }
+
+    /**
+     * @return the wrapped storage
+     */
+    public @NotNull CollectableStorage delegate() {
+        return delegate;
+    }
+
+    @Override
+    public void close() throws Exception {
+        closed = true;
+        if (delegate instanceof AutoCloseable closeable) closeable.close();
+    }
+
+    /*
+     * =====
+     * Index
+     * =====
+     */
+
+    private CompletableFuture<Void> scan() {
+        final long started = System.currentTimeMillis();
+        final List<UUID> players = listing.storedPlayers();
+
+        CompletableFuture<Void> chain = CompletableFuture.completedFuture(null);
+        for (int from = 0; from < players.size(); from += SCAN_CHUNK) {
+            final List<UUID> chunk = players.subList(from, Math.min(players.size(), from + SCAN_CHUNK));
+            // one chunk at a time, so player loads keep getting executor threads in between
+            chain = chain.thenCompose(v -> closed
+                    ? CompletableFuture.completedFuture(null)
+                    : delegate.loadSnapshots(chunk).thenAccept(this::index));
+        }
+
+        return chain.thenCompose(v -> {
+            Set<UUID> changed = touched;
+            touched = null;
+            return changed == null || changed.isEmpty()
+                    ? CompletableFuture.completedFuture(null)
+                    : delegate.loadSnapshots(changed).thenAccept(this::index);
+        }).thenRun(() -> tallied = null).thenRun(() -> log.info("Indexed collectable counts of {} players in {}ms",
+                players.size(), System.currentTimeMillis() - started));
+    }
+
+    private void index(@NotNull Map<UUID, PlayerCollectables> snapshots) {
+        Set<UUID> changed = touched;
+        Set<UUID> seen = tallied;
+        snapshots.forEach((playerId, snapshot) -> {
+            // written to since the snapshot may have been read, the final pass loads it again
+            if (changed != null && changed.contains(playerId)) return;
+            recount(playerId, counts(snapshot));
+            // a player may come up again in the final pass, their later unlocks reach the discovery stats directly
+            if (seen != null && seen.add(playerId)) tally.add(snapshot);
+        });
+    }
+
+    private CountRanking ranking(@Nullable String namespace) {
+        return namespace == null ? total : namespaces.computeIfAbsent(namespace, k -> new CountRanking());
+    }
+
+    /**
+     * @return the ranking to read, an empty one for unknown namespaces without registering them
+     */
+    private CountRanking read(@Nullable String namespace) {
+        if (namespace == null) return total;
+        CountRanking ranking = namespaces.get(namespace);
+        return ranking != null ? ranking : EMPTY;
+    }
+
+    private void touch(@NotNull UUID playerId) {
+        Set<UUID> changed = touched;
+        if (changed != null) changed.add(playerId);
+    }
+
+    private void adjust(@NotNull UUID playerId, @NotNull String namespace, int delta) {
+        touch(playerId);
+        ranking(namespace).adjust(playerId, delta);
+        total.adjust(playerId, delta);
+    }
+
+    private static Map<String, Integer> counts(@NotNull PlayerCollectables snapshot) {
+        Map<String, Integer> counts = new HashMap<>();
+        for (String namespace : snapshot.unlocks().keySet()) {
+            counts.put(namespace, snapshot.unlockedCount(namespace));
+        }
+        return counts;
+    }
+
+    private void recount(@NotNull UUID playerId, @NotNull Map<String, Integer> counts) {
+        int sum = 0;
+        for (Map.Entry<String, CountRanking> ranking : namespaces.entrySet()) {
+            if (!counts.containsKey(ranking.getKey())) ranking.getValue().set(playerId, 0);
+        }
+        for (Map.Entry<String, Integer> count : counts.entrySet()) {
+            ranking(count.getKey()).set(playerId, count.getValue());
+            sum += count.getValue();
+        }
+        total.set(playerId, sum);
+    }
+
+    private void forget(@NotNull UUID playerId) {
+        touch(playerId);
+        for (CountRanking ranking : namespaces.values()) ranking.set(playerId, 0);
+        total.set(playerId, 0);
+    }
+
+    /*
+     * ======
+     * Counts
+     * ======
+     */
+
+    @Override
+    public CompletableFuture<List<Standing>> top(@Nullable String namespace, int limit) {
+        if (limit <= 0) return CompletableFuture.completedFuture(List.of());
+        return ready.thenApply(v -> read(namespace).top(limit));
+    }
+
+    @Override
+    public CompletableFuture<Standing> standing(@NotNull UUID playerId, @Nullable String namespace) {
+        return ready.thenApply(v -> read(namespace).standing(playerId));
+    }
+
+    /**
+     * @return the tally of the startup scan, later writes are not included
+     */
+    @Override
+    public CompletableFuture<DiscoveryTally> tallyDiscoveries() {
+        return ready.thenApply(v -> tally);
+    }
+
+    /*
+     * =======
+     * Storage
+     * =======
+     */
+
+    @Override
+    public @NotNull List<UUID> storedPlayers() {
+        return listing.storedPlayers();
+    }
+
+    @Override
+    public CompletableFuture<Set<String>> loadUnlockedIds(@NotNull UUID playerId, @NotNull String namespace) {
+        return delegate.loadUnlockedIds(playerId, namespace);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> putUnlock(@NotNull UUID playerId, @NotNull String namespace, @NotNull String id, long whenMillis) {
+        return delegate.putUnlock(playerId, namespace, id, whenMillis).thenApply(inserted -> {
+            if (inserted) adjust(playerId, namespace, 1);
+            return inserted;
+        });
+    }
+
+    @Override
+    public CompletableFuture<UnlockResult> unlockOrReplay(
+        @NotNull UUID playerId, @NotNull String namespace,
+        @NotNull String id, long whenMillis, boolean recordReplay
+    ) {
+        return delegate.unlockOrReplay(playerId, namespace, id, whenMillis, recordReplay).thenApply(result -> {
+            if (result == UnlockResult.UNLOCKED) adjust(playerId, namespace, 1);
+            return result;
+        });
+    }
+
+    @Override
+    public CompletableFuture<Map<NamespacedKey, UnlockResult>> unlockOrReplayAll(
+        @NotNull UUID playerId, @NotNull Collection<NamespacedKey> keys,
+        long whenMillis, @NotNull Set<NamespacedKey> recordReplays
+    ) {
+        return delegate.unlockOrReplayAll(playerId, keys, whenMillis, recordReplays).thenApply(results -> {
+            results.forEach((key, result) -> {
+                if (result == UnlockResult.UNLOCKED) adjust(playerId, key.getNamespace(), 1);
+            });
+            return results;
+        });
+    }
+
+    @Override
+    public CompletableFuture<Void> recordReplay(@NotNull UUID playerId, @NotNull String namespace, @NotNull String id, long whenMillis) {
+        return delegate.recordReplay(playerId, namespace, id, whenMillis);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> deleteUnlock(@NotNull UUID playerId, @NotNull String namespace, @NotNull String id) {
+        return delegate.deleteUnlock(playerId, namespace, id).thenApply(deleted -> {
+            if (deleted) adjust(playerId, namespace, -1);
+            return deleted;
+        });
+    }
+
+    @Override
+    public CompletableFuture<Integer> clearNamespace(@NotNull UUID playerId, @NotNull String namespace) {
+        return delegate.clearNamespace(playerId, namespace).thenApply(removed -> {
+            if (removed > 0) {
+                touch(playerId);
+                int old = ranking(namespace).set(playerId, 0);
+                total.adjust(playerId, -old);
+            }
+            return removed;
+        });
+    }
+
+    @Override
+    public CompletableFuture<Void> clearAll(@NotNull UUID playerId) {
+        return delegate.clearAll(playerId).thenRun(() -> forget(playerId));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> isUnlocked(@NotNull UUID playerId, @NotNull String namespace, @NotNull String id) {
+        return delegate.isUnlocked(playerId, namespace, id);
+    }
+
+    @Override
+    public CompletableFuture<PlayerCollectables> loadSnapshot(@NotNull UUID playerId) {
+        return delegate.loadSnapshot(playerId);
+    }
+
+    @Override
+    public CompletableFuture<Map<UUID, PlayerCollectables>> loadSnapshots(@NotNull Collection<UUID> playerIds) {
+        return delegate.loadSnapshots(playerIds);
+    }
+
+    @Override
+    public CompletableFuture<Void> saveSnapshot(@NotNull UUID playerId, @NotNull PlayerCollectables snapshot) {
+        final Map<String, Integer> counts = counts(snapshot);
+        return delegate.saveSnapshot(playerId, snapshot).thenRun(() -> {
+            touch(playerId);
+            recount(playerId, counts);
+        });
+    }
+
+    @Override
+    public CompletableFuture<Void> saveSnapshots(@NotNull Map<UUID, PlayerCollectables> snapshots) {
+        final Map<UUID, Map<String, Integer>> counts = new HashMap<>();
+        snapshots.forEach((playerId, snapshot) -> counts.put(playerId, counts(snapshot)));
+        return delegate.saveSnapshots(snapshots).thenRun(() -> counts.forEach((playerId, playerCounts) -> {
+            touch(playerId);
+            recount(playerId, playerCounts);
+        }));
+    }
+
+}
@@ -0,0 +1,22 @@
+package com.glance.codex.platform.paper.persistence.discovery;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A storage backend that can count every collectable's unlocks without the caller loading each player
+ * <p>
+ * SQL backends answer with a grouped query, the in-memory counts index reuses its own startup scan.
+ * Backends without either are scanned by {@link DiscoveryStats} itself
+ *
+ * @author Cammy
+ */
+public interface DiscoverySource {
+
+    /**
+     * Counts the unlocks of every stored collectable, meant to be called once on startup
+     *
+     * @return future with the counts and the number of players with stored unlocks
+     */
+    CompletableFuture<DiscoveryTally> tallyDiscoveries();
+
+}
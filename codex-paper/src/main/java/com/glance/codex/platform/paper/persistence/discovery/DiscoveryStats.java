@@ -0,0 +1,209 @@
+package com.glance.codex.platform.paper.persistence.discovery;
+
+import com.glance.codex.platform.paper.persistence.config.CollectableStorageProvider;
+import com.glance.codex.platform.paper.persistence.executor.StorageExecutor;
+import com.glance.codex.platform.paper.persistence.migration.EnumerableCollectableStorage;
+import com.glance.codex.platform.paper.text.PlaceholderUtils;
+import com.glance.codex.utils.lifecycle.Manager;
+import com.google.auto.service.AutoService;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import lombok.extern.slf4j.Slf4j;
+import org.bukkit.NamespacedKey;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Server-wide discovery statistics, how many players unlocked each collectable
+ * <p>
+ * Counts live in memory per {@link NamespacedKey}. They are seeded once on startup from the storage backend,
+ * with a single grouped query for SQL or from one scan over every stored player otherwise, and from then on
+ * only follow the unlocks and relocks reported by the collectable manager, so reads never touch storage
+ * <p>
+ * The player total, the base of {@code {discovered_percent}}, is every player with a stored unlock at
+ * startup plus every player joining for the first time since. Unlocks racing the startup seed may be off
+ * by one until the next restart
+ *
+ * @author Cammy
+ */
+@Slf4j
+@Singleton
+@AutoService({Manager.class, Listener.class})
+public class DiscoveryStats implements Manager, Listener {
+
+    private static final int SCAN_CHUNK = 500;
+
+    private final CollectableStorageProvider storageProvider;
+    private final StorageExecutor executor;
+
+    private final Map<NamespacedKey, AtomicInteger> unlocks = new ConcurrentHashMap<>();
+    private final AtomicInteger players = new AtomicInteger();
+
+    @Inject
+    public DiscoveryStats(
+        @NotNull final CollectableStorageProvider storageProvider,
+        @NotNull final StorageExecutor executor
+    ) {
+        this.storageProvider = storageProvider;
+        this.executor = executor;
+    }
+
+    @Override
+    public void onEnable() {
+        PlaceholderUtils.registerDiscoveryStats(this);
+        seed();
+    }
+
+    @Override
+    public void onDisable() {
+        PlaceholderUtils.registerDiscoveryStats(null);
+    }
+
+    /*
+     * =====
+     * Reads
+     * =====
+     */
+
+    /**
+     * @return how many players unlocked the collectable
+     */
+    public int discovered(@NotNull NamespacedKey key) {
+        AtomicInteger count = unlocks.get(key);
+        return count != null ? Math.max(0, count.get()) : 0;
+    }
+
+    /**
+     * @return players counted towards the percentage
+     */
+    public int players() {
+        return Math.max(0, players.get());
+    }
+
+    /**
+     * @return share of players that unlocked the collectable, from 0 to 100
+     */
+    public double discoveredPercent(@NotNull NamespacedKey key) {
+        int discovered = discovered(key);
+        int total = Math.max(players(), discovered);
+        return total == 0 ? 0 : discovered * 100D / total;
+    }
+
+    /*
+     * =======
+     * Updates
+     * =======
+     */
+
+    /**
+     * Counts a first unlock of the collectable, replays are not reported
+     */
+    public void recordUnlock(@NotNull NamespacedKey key) {
+        adjust(key, 1);
+    }
+
+    /**
+     * Counts a relock of a previously unlocked collectable
+     */
+    public void recordRelock(@NotNull NamespacedKey key) {
+        adjust(key, -1);
+    }
+
+    /**
+     * Counts a cleared namespace, given the ids the player had unlocked in it
+     */
+    public void recordCleared(@NotNull String namespace, @NotNull Collection<String> ids) {
+        for (String id : ids) {
+            NamespacedKey key = key(namespace, id);
+            if (key != null) adjust(key, -1);
+        }
+    }
+
+    @EventHandler
+    public void onFirstJoin(PlayerJoinEvent event) {
+        if (!event.getPlayer().hasPlayedBefore()) players.incrementAndGet();
+    }
+
+    private void adjust(@NotNull NamespacedKey key, int delta) {
+        // may go below zero before the seed is added, reads clamp
+        unlocks.computeIfAbsent(key, k -> new AtomicInteger()).addAndGet(delta);
+    }
+
+    private static @Nullable NamespacedKey key(@NotNull String namespace, @NotNull String id) {
+        try {
+            return new NamespacedKey(namespace, id);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /*
+     * ====
+     * Seed
+     * ====
+     */
+
+    private void seed() {
+        final long started = System.currentTimeMillis();
+        Optional<DiscoverySource> source = storageProvider.find(DiscoverySource.class);
+        Optional<EnumerableCollectableStorage> enumerable = storageProvider.find(EnumerableCollectableStorage.class);
+
+        CompletableFuture<DiscoveryTally> tally;
+        if (source.isPresent()) {
+            tally = source.get().tallyDiscoveries();
+        } else if (enumerable.isPresent()) {
+            tally = scan(enumerable.get());
+        } else {
+            log.warn("Storage cannot list its players, discovery stats only count unlocks from now on");
+            return;
+        }
+
+        tally.whenComplete((result, ex) -> {
+            if (ex != null) {
+                log.error("Failed to seed collectable discovery stats", ex);
+                return;
+            }
+
+            // merged rather than replaced, unlocks counted while the seed ran are kept
+            int keys = 0;
+            for (Map.Entry<String, Map<String, Integer>> namespace : result.unlocks().entrySet()) {
+                for (Map.Entry<String, Integer> id : namespace.getValue().entrySet()) {
+                    NamespacedKey key = key(namespace.getKey(), id.getKey());
+                    if (key == null) continue;
+                    adjust(key, id.getValue());
+                    keys++;
+                }
+            }
+            players.addAndGet(result.players());
+            log.info("Seeded discovery stats of {} collectables across {} players in {}ms",
+                    keys, result.players(), System.currentTimeMillis() - started);
+        });
+    }
+
+    private CompletableFuture<DiscoveryTally> scan(@NotNull EnumerableCollectableStorage storage) {
+        final DiscoveryTally tally = new DiscoveryTally();
+        return executor.submit(storage::storedPlayers).thenCompose(stored -> {
+            CompletableFuture<Void> chain = CompletableFuture.completedFuture(null);
+            for (int from = 0; from < stored.size(); from += SCAN_CHUNK) {
+                final List<UUID> chunk = stored.subList(from, Math.min(stored.size(), from + SCAN_CHUNK));
+                // one chunk at a time, like the counts index, so player loads are not starved
+                chain = chain.thenCompose(v -> storage.loadSnapshots(chunk)
+                        .thenAccept(snapshots -> snapshots.values().forEach(tally::add)));
+            }
+            return chain;
+        }).thenApply(v -> tally);
+    }
+
+}
@@ -0,0 +1,61 @@
+package com.glance.codex.platform.paper.persistence.discovery;
+
+import com.glance.codex.api.data.PlayerCollectables;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Unlock counts per collectable across all players, as read from storage in one pass
+ *
+ * @author Cammy
+ */
+public final class DiscoveryTally {
+
+    private final Map<String, Map<String, Integer>> unlocks = new HashMap<>();
+    private int players;
+
+    /**
+     * Adds already grouped counts, e.g. a row of a {@code GROUP BY} query
+     */
+    public synchronized void add(@NotNull String namespace, @NotNull String id, int unlocked) {
+        if (unlocked <= 0) return;
+        unlocks.computeIfAbsent(namespace, k -> new HashMap<>()).merge(id, unlocked, Integer::sum);
+    }
+
+    /**
+     * Adds every unlock of a single player and counts the player if they have any
+     */
+    public synchronized void add(@NotNull PlayerCollectables snapshot) {
+        boolean any = false;
+        for (Map.Entry<String, Set<String>> namespace : snapshot.unlocks().entrySet()) {
+            Map<String, Integer> ids = unlocks.computeIfAbsent(namespace.getKey(), k -> new HashMap<>());
+            for (String id : namespace.getValue()) {
+                ids.merge(id, 1, Integer::sum);
+                any = true;
+            }
+        }
+        if (any) players++;
+    }
+
+    public synchronized void players(int players) {
+        this.players = players;
+    }
+
+    /**
+     * @return players with at least one unlock
+     */
+    public synchronized int players() {
+        return players;
+    }
+
+    /**
+     * @return unlock counts by namespace then id, not a copy so only read once the tally is complete
+     */
+    public synchronized @NotNull Map<String, Map<String, Integer>> unlocks() {
+        return unlocks;
+    }
+
+}
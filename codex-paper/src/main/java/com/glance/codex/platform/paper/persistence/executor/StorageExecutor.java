@@ -0,0 +1,308 @@
+package com.glance.codex.platform.paper.persistence.executor;
+
+import com.glance.codex.platform.paper.persistence.config.CollectableStorageConfig;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import lombok.extern.slf4j.Slf4j;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Executor for blocking storage I/O, kept off the shared ForkJoinPool common pool
+ * <p>
+ * Work submitted for a player UUID runs in strict submission order: each player has a lane, a chain of
+ * futures where every task starts only after the previous one finished. Different players run in parallel
+ * on either a fixed platform thread pool or virtual threads, in both cases capped at
+ * {@link CollectableStorageConfig#executorThreads()} concurrent tasks. At most
+ * {@link CollectableStorageConfig#executorQueueCapacity()} tasks wait for a thread (or, on virtual threads,
+ * for a permit), further tasks are rejected
+ * <p>
+ * Queue depth and how long tasks waited before starting are tracked, see {@link #stats()}
+ *
+ * @author Cammy
+ */
+@Slf4j
+@Singleton
+public class StorageExecutor implements Executor, AutoCloseable {
+
+    private static final CompletableFuture<Void> IDLE = CompletableFuture.completedFuture(null);
+
+    private final ExecutorService executor;
+    /** Where tasks are handed off, bounded by the queue capacity on virtual threads as the fixed pool's queue is */
+    private final Executor dispatch;
+    /** Caps concurrency when running on virtual threads, null for the fixed pool */
+    private final @Nullable Semaphore permits;
+    /** Virtual thread tasks started but still waiting for a permit */
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final Map<UUID, CompletableFuture<Void>> lanes = new ConcurrentHashMap<>();
+
+    private final LongAdder queued = new LongAdder();
+    private final LongAdder executed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder totalWaitNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    @Inject
+    public StorageExecutor(@NotNull CollectableStorageConfig config) {
+        final int threads = Math.max(1, config.executorThreads());
+        final int capacity = Math.max(1, config.executorQueueCapacity());
+
+        if (config.executorVirtualThreads()) {
+            this.executor = Executors.newThreadPerTaskExecutor(
+                    Thread.ofVirtual().name("Codex-Storage-", 0).factory());
+            this.permits = new Semaphore(threads);
+            this.dispatch = task -> {
+                if (waiting.incrementAndGet() > capacity) {
+                    waiting.decrementAndGet();
+                    throw new RejectedExecutionException("Storage queue is full (" + capacity + " waiting)");
+                }
+                try {
+                    executor.execute(task);
+                } catch (RejectedExecutionException e) {
+                    waiting.decrementAndGet();
+                    throw e;
+                }
+            };
+        } else {
+            AtomicInteger counter = new AtomicInteger();
+            this.executor = new ThreadPoolExecutor(
+                    threads, threads,
+                    60, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(capacity),
+                    r -> {
+                        Thread t = new Thread(r, "Codex-Storage-" + counter.getAndIncrement());
+                        t.setDaemon(true);
+                        return t;
+                    });
+            ((ThreadPoolExecutor) this.executor).allowCoreThreadTimeOut(true);
+            this.permits = null;
+            this.dispatch = this.executor;
+        }
+    }
+
+    /**
+     * Runs the task after every task previously submitted for the same player
+     *
+     * @param playerId lane to run on
+     * @param task blocking work
+     * @return future completing with the task's result
+     */
+    public <T> CompletableFuture<T> submit(@NotNull UUID playerId, @NotNull Supplier<T> task) {
+        final Task<T> t = new Task<>(task);
+        queued.increment();
+
+        final CompletableFuture<Void> tail = lanes.compute(playerId, (id, previous) ->
+                after(previous).thenRunAsync(t, dispatch));
+
+        tail.whenComplete((v, ex) -> {
+            lanes.remove(playerId, tail);
+            // tasks never throw, so a failed tail means the executor rejected it
+            if (ex != null) t.reject(ex);
+        });
+        return t.future;
+    }
+
+    /**
+     * Starts asynchronous work in the player's lane, the lane then waits for the returned future to complete
+     * <p>
+     * For work handed on to another thread (e.g. a group commit), so later tasks of the player still run
+     * after it. No storage thread is held while waiting
+     *
+     * @param playerId lane to run on
+     * @param task hands the work on and returns its future, must not block
+     * @return future completing with the work's result
+     */
+    public <T> CompletableFuture<T> submitAsync(@NotNull UUID playerId, @NotNull Supplier<CompletableFuture<T>> task) {
+        final CompletableFuture<T> result = new CompletableFuture<>();
+
+        final CompletableFuture<Void> tail = lanes.compute(playerId, (id, previous) ->
+                after(previous).thenComposeAsync(v -> {
+                    // takes no permit, it only hands the work on
+                    if (permits != null) waiting.decrementAndGet();
+                    CompletableFuture<T> started;
+                    try {
+                        started = task.get();
+                    } catch (Throwable t) {
+                        started = CompletableFuture.failedFuture(t);
+                    }
+                    return started.handle((value, ex) -> {
+                        if (ex != null) result.completeExceptionally(ex);
+                        else result.complete(value);
+                        return null;
+                    });
+                }, dispatch));
+
+        tail.whenComplete((v, ex) -> {
+            lanes.remove(playerId, tail);
+            if (ex != null && !result.isDone()) {
+                rejected.increment();
+                log.warn("Storage task rejected", ex);
+                result.completeExceptionally(ex);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * @return a future completing once the previous task of the lane is done, whether it ran or was rejected,
+     * so one rejection does not fail every task queued behind it
+     */
+    private static CompletableFuture<Void> after(@Nullable CompletableFuture<Void> previous) {
+        return previous == null ? IDLE : previous.exceptionally(ex -> null);
+    }
+
+    /**
+     * Runs the task in submission order for the player
+     */
+    public CompletableFuture<Void> run(@NotNull UUID playerId, @NotNull Runnable task) {
+        return submit(playerId, () -> {
+            task.run();
+            return null;
+        });
+    }
+
+    /**
+     * Runs work that is not tied to a single player (bulk loads, maintenance), without ordering guarantees
+     */
+    public <T> CompletableFuture<T> submit(@NotNull Supplier<T> task) {
+        final Task<T> t = new Task<>(task);
+        queued.increment();
+        try {
+            dispatch.execute(t);
+        } catch (RejectedExecutionException e) {
+            t.reject(e);
+        }
+        return t.future;
+    }
+
+    /**
+     * Runs a short continuation (e.g. completing a caller's future) on the storage threads,
+     * falling back to the calling thread once the executor is closed so nothing is left hanging
+     */
+    @Override
+    public void execute(@NotNull Runnable command) {
+        try {
+            executor.execute(command);
+        } catch (RejectedExecutionException e) {
+            command.run();
+        }
+    }
+
+    /**
+     * @return current queue depth and wait time figures
+     */
+    public @NotNull Stats stats() {
+        long done = executed.sum();
+        return new Stats(
+                queued.sum(),
+                lanes.size(),
+                done,
+                rejected.sum(),
+                done == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(totalWaitNanos.sum() / done) / 1000.0,
+                TimeUnit.NANOSECONDS.toMicros(maxWaitNanos.get()) / 1000.0);
+    }
+
+    /**
+     * Stops accepting work and waits for queued tasks to finish
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+                log.warn("Storage executor did not drain in time, {} tasks still queued", queued.sum());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Point in time executor figures
+     *
+     * @param queueDepth tasks submitted but not yet started
+     * @param activeLanes players with queued or running work
+     * @param executed tasks run since startup
+     * @param rejected tasks refused because the queue was full or the executor was closed
+     * @param averageWaitMillis mean time between submission and start
+     * @param maxWaitMillis longest time between submission and start
+     */
+    public record Stats(
+        long queueDepth,
+        int activeLanes,
+        long executed,
+        long rejected,
+        double averageWaitMillis,
+        double maxWaitMillis
+    ) {}
+
+    /**
+     * Wraps a task with wait time tracking, completing its future instead of throwing
+     */
+    private final class Task<T> implements Runnable {
+        final Supplier<T> supplier;
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        final long submittedAt = System.nanoTime();
+
+        Task(@NotNull Supplier<T> supplier) {
+            this.supplier = supplier;
+        }
+
+        @Override
+        public void run() {
+            boolean acquired = false;
+            boolean started = false;
+            try {
+                if (permits != null) {
+                    try {
+                        permits.acquire();
+                        acquired = true;
+                    } finally {
+                        waiting.decrementAndGet();
+                    }
+                }
+
+                long waited = System.nanoTime() - submittedAt;
+                queued.decrement();
+                started = true;
+                totalWaitNanos.add(waited);
+                maxWaitNanos.accumulateAndGet(waited, Math::max);
+
+                future.complete(supplier.get());
+            } catch (Throwable t) {
+                if (t instanceof InterruptedException) Thread.currentThread().interrupt();
+                if (!started) queued.decrement();
+                future.completeExceptionally(t);
+            } finally {
+                executed.increment();
+                if (acquired) permits.release();
+            }
+        }
+
+        void reject(@NotNull Throwable cause) {
+            if (future.isDone()) return;
+            queued.decrement();
+            rejected.increment();
+            log.warn("Storage task rejected", cause);
+            future.completeExceptionally(cause);
+        }
+    }
+
+}
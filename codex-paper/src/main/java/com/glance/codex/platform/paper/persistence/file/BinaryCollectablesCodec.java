@@ -0,0 +1,239 @@
+package com.glance.codex.platform.paper.persistence.file;
+
+import com.glance.codex.api.data.PlayerCollectables;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Versioned binary encoding of {@link PlayerCollectables}
+ *
+ * <h2>Layout (version 1)</h2>
+ * <pre>
+ * int    magic "CXPC"
+ * byte   version
+ * byte   flags            (bit 0: body is Deflate compressed)
+ * body:
+ *   varint stringCount, then each string as varint length + UTF-8 bytes
+ *   varint namespaceCount, then per namespace:
+ *     varint namespace (string table index)
+ *     varint entryCount, then per entry (ordered by first unlock time):
+ *       varint id (string table index)
+ *       byte   entry flags (bit 0: has first unlock, bit 1: has last replay)
+ *       varint first unlock, zigzag delta from the previous entry's first unlock
+ *       varint last replay, zigzag delta from this entry's first unlock
+ * </pre>
+ * Every namespace and ID string is written once, and timestamps usually shrink to two or three bytes.
+ * Decoding streams straight into the maps, no reflection involved
+ *
+ * @author Cammy
+ */
+final class BinaryCollectablesCodec {
+
+    static final int MAGIC = 0x43585043; // "CXPC"
+    static final byte VERSION = 1;
+
+    private static final int FLAG_DEFLATE = 1;
+    private static final int ENTRY_FIRST = 1;
+    private static final int ENTRY_REPLAY = 1 << 1;
+
+    private BinaryCollectablesCodec() {}
+
+    /**
+     * Encodes the data, the stream is finished but not closed
+     */
+    static void write(@NotNull PlayerCollectables data, @NotNull OutputStream target, boolean compress) throws IOException {
+        DataOutputStream header = new DataOutputStream(target);
+        header.writeInt(MAGIC);
+        header.writeByte(VERSION);
+        header.writeByte(compress ? FLAG_DEFLATE : 0);
+        header.flush();
+
+        Deflater def = compress ? new Deflater(Deflater.BEST_SPEED) : null;
+        try {
+            DeflaterOutputStream deflater = def != null ? new DeflaterOutputStream(target, def, 4096) : null;
+            writeBody(data, new DataOutputStream(deflater != null ? deflater : target));
+            if (deflater != null) deflater.finish();
+        } finally {
+            if (def != null) def.end();
+        }
+    }
+
+    private static void writeBody(@NotNull PlayerCollectables data, @NotNull DataOutputStream out) throws IOException {
+        // string table, namespaces and ids share it
+        Map<String, Integer> strings = new LinkedHashMap<>();
+        data.unlocks().forEach((ns, ids) -> {
+            strings.putIfAbsent(ns, strings.size());
+            for (String id : ids) strings.putIfAbsent(id, strings.size());
+        });
+
+        writeVarInt(out, strings.size());
+        for (String s : strings.keySet()) {
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            writeVarInt(out, bytes.length);
+            out.write(bytes);
+        }
+
+        int namespaces = 0;
+        for (Set<String> ids : data.unlocks().values()) {
+            if (!ids.isEmpty()) namespaces++;
+        }
+        writeVarInt(out, namespaces);
+
+        for (Map.Entry<String, Set<String>> e : data.unlocks().entrySet()) {
+            if (e.getValue().isEmpty()) continue;
+            String ns = e.getKey();
+            Map<String, Long> first = data.firstUnlockedAt().getOrDefault(ns, Map.of());
+            Map<String, Long> replay = data.lastReplayedAt().getOrDefault(ns, Map.of());
+
+            // sorted by unlock time so consecutive deltas stay small
+            List<String> ids = new ArrayList<>(e.getValue());
+            ids.sort((a, b) -> Long.compare(first.getOrDefault(a, 0L), first.getOrDefault(b, 0L)));
+
+            writeVarInt(out, strings.get(ns));
+            writeVarInt(out, ids.size());
+
+            long previous = 0;
+            for (String id : ids) {
+                Long unlockedAt = first.get(id);
+                Long replayedAt = replay.get(id);
+
+                writeVarInt(out, strings.get(id));
+                out.writeByte((unlockedAt != null ? ENTRY_FIRST : 0) | (replayedAt != null ? ENTRY_REPLAY : 0));
+
+                long base = previous;
+                if (unlockedAt != null) {
+                    writeVarLong(out, zigzag(unlockedAt - previous));
+                    previous = unlockedAt;
+                    base = unlockedAt;
+                }
+                if (replayedAt != null) {
+                    writeVarLong(out, zigzag(replayedAt - base));
+                }
+            }
+        }
+
+        out.flush();
+    }
+
+    /**
+     * Decodes data written by {@link #write}
+     *
+     * @throws IOException if the stream is not in this format or is truncated
+     */
+    static @NotNull PlayerCollectables read(@NotNull InputStream source) throws IOException {
+        DataInputStream header = new DataInputStream(source);
+        if (header.readInt() != MAGIC) throw new IOException("Not a binary collectables file");
+        byte version = header.readByte();
+        if (version != VERSION) throw new IOException("Unsupported binary collectables version " + version);
+        int flags = header.readUnsignedByte();
+
+        if ((flags & FLAG_DEFLATE) == 0) return readBody(header);
+
+        Inflater inflater = new Inflater();
+        try {
+            return readBody(new DataInputStream(new InflaterInputStream(source, inflater)));
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static @NotNull PlayerCollectables readBody(@NotNull DataInputStream in) throws IOException {
+        int stringCount = readVarInt(in);
+        String[] strings = new String[stringCount];
+        for (int i = 0; i < stringCount; i++) {
+            byte[] bytes = new byte[readVarInt(in)];
+            in.readFully(bytes);
+            strings[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        PlayerCollectables data = new PlayerCollectables();
+        int namespaces = readVarInt(in);
+        for (int n = 0; n < namespaces; n++) {
+            String ns = string(strings, readVarInt(in));
+            int entries = readVarInt(in);
+
+            long previous = 0;
+            for (int i = 0; i < entries; i++) {
+                String id = string(strings, readVarInt(in));
+                int entryFlags = in.readUnsignedByte();
+
+                Long first = null;
+                Long replay = null;
+                long base = previous;
+                if ((entryFlags & ENTRY_FIRST) != 0) {
+                    previous += unzigzag(readVarLong(in));
+                    first = previous;
+                    base = previous;
+                }
+                if ((entryFlags & ENTRY_REPLAY) != 0) {
+                    replay = base + unzigzag(readVarLong(in));
+                }
+                data.restoreUnlock(ns, id, first, replay);
+            }
+        }
+        return data;
+    }
+
+    private static String string(String[] table, int index) throws IOException {
+        if (index < 0 || index >= table.length) throw new IOException("String index out of range: " + index);
+        return table[index];
+    }
+
+    /*
+     * =======
+     * Varints
+     * =======
+     */
+
+    private static long zigzag(long v) {
+        return (v << 1) ^ (v >> 63);
+    }
+
+    private static long unzigzag(long v) {
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        writeVarLong(out, value & 0xFFFFFFFFL);
+    }
+
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static int readVarInt(DataInputStream in) throws IOException {
+        long value = readVarLong(in);
+        if (value > Integer.MAX_VALUE) throw new IOException("Varint out of range: " + value);
+        return (int) value;
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IOException("Malformed varint");
+    }
+
+}
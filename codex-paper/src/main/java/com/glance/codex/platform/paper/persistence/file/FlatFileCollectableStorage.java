@@ -1,157 +1,335 @@
 package com.glance.codex.platform.paper.persistence.file;
 
 import com.glance.codex.api.data.PlayerCollectables;
-import com.glance.codex.api.data.storage.CollectableStorage;
+import com.glance.codex.api.data.storage.UnlockResult;
 import com.glance.codex.platform.paper.persistence.config.CollectableStorageConfig;
+import com.glance.codex.platform.paper.persistence.executor.StorageExecutor;
+import com.glance.codex.platform.paper.persistence.migration.EnumerableCollectableStorage;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
+import org.bukkit.NamespacedKey;
 import org.bukkit.plugin.Plugin;
 import org.jetbrains.annotations.NotNull;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.Reader;
 import java.io.Writer;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
 
+/**
+ * One file per player, either pretty-printed JSON or the compact binary format of
+ * {@link BinaryCollectablesCodec} depending on {@link CollectableStorageConfig#flatFileFormat()}
+ * <p>
+ * Files in the other format are read transparently and rewritten in the configured one on first access
+ * <p>
+ * Every read-modify-write for a player runs under that player's lock stripe, so operations for the
+ * same player are serialized while different players proceed in parallel. Files are written to a
+ * temp file, synced and then atomically moved over the old one, so a crash mid-write can never
+ * leave a truncated file behind
+ *
+ * @author Cammy
+ */
 @Singleton
-public class FlatFileCollectableStorage implements CollectableStorage {
+public class FlatFileCollectableStorage implements EnumerableCollectableStorage {
+
+    /** Power of two, so a stripe is picked with a mask */
+    private static final int LOCK_STRIPES = 64;
+    private static final String TEMP_SUFFIX = ".tmp";
 
     private final Gson gson = new GsonBuilder().setPrettyPrinting().create();
     private final File baseDir;
-    private final Object fileIOLock = new Object();
+    private final CollectableStorageConfig.FileFormat format;
+    private final boolean compress;
+    private final ReentrantLock[] locks = new ReentrantLock[LOCK_STRIPES];
+    private final StorageExecutor executor;
 
     @Inject
     public FlatFileCollectableStorage(
         @NotNull Plugin plugin,
-        @NotNull CollectableStorageConfig config
+        @NotNull CollectableStorageConfig config,
+        @NotNull StorageExecutor executor
     ) {
-        if (config.backend() != CollectableStorageConfig.Backend.FLATFILE) {
-            throw new IllegalStateException("Configured Storage Backend was '" + config.backend().name() +
-                    "' when attempting to create FlatFileCollectableStorage, this is not allowed. " +
-                    "Please use " + CollectableStorageConfig.Backend.FLATFILE.name());
-        }
+        this.executor = executor;
         this.baseDir = new File(plugin.getDataFolder(), config.flatFileDir());
         this.baseDir.mkdirs();
+        this.format = config.flatFileFormat();
+        this.compress = config.flatFileCompress();
+
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new ReentrantLock();
+        }
+
+        // leftovers of writes interrupted by a crash, the real file is still intact
+        File[] stale = baseDir.listFiles((dir, name) -> name.endsWith(TEMP_SUFFIX));
+        if (stale != null) {
+            for (File f : stale) f.delete();
+        }
     }
 
     private File file(UUID playerId) {
-        return new File(baseDir, playerId + ".json");
+        return file(playerId, format);
+    }
+
+    private File file(UUID playerId, CollectableStorageConfig.FileFormat format) {
+        return new File(baseDir, playerId + format.extension());
+    }
+
+    private CollectableStorageConfig.FileFormat legacyFormat() {
+        return format == CollectableStorageConfig.FileFormat.JSON
+                ? CollectableStorageConfig.FileFormat.BINARY
+                : CollectableStorageConfig.FileFormat.JSON;
+    }
+
+    private ReentrantLock lock(@NotNull UUID playerId) {
+        int h = playerId.hashCode();
+        return locks[(h ^ (h >>> 16)) & (LOCK_STRIPES - 1)];
+    }
+
+    /**
+     * Runs the action while holding the player's lock stripe
+     */
+    private <T> T locked(@NotNull UUID playerId, @NotNull Supplier<T> action) {
+        ReentrantLock lock = lock(playerId);
+        lock.lock();
+        try {
+            return action.get();
+        } finally {
+            lock.unlock();
+        }
     }
 
     private PlayerCollectables loadData(@NotNull UUID playerId) {
         File f = file(playerId);
-        if (!f.exists()) return new PlayerCollectables();
+        if (f.exists()) return read(f, format);
+        if (!file(playerId, legacyFormat()).exists()) return new PlayerCollectables();
+
+        // Migrate under the player's lock, re-checking as another thread may have beaten us to it
+        return locked(playerId, () -> {
+            if (f.exists()) return read(f, format);
+
+            File legacy = file(playerId, legacyFormat());
+            if (!legacy.exists()) return new PlayerCollectables();
+
+            PlayerCollectables data = read(legacy, legacyFormat());
+            saveData(playerId, data);
+            try {
+                Files.deleteIfExists(legacy.toPath());
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            return data;
+        });
+    }
+
+    private PlayerCollectables read(@NotNull File f, @NotNull CollectableStorageConfig.FileFormat format) {
+        if (format == CollectableStorageConfig.FileFormat.BINARY) {
+            try (InputStream in = new BufferedInputStream(new FileInputStream(f))) {
+                return BinaryCollectablesCodec.read(in);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
         try (Reader r = Files.newBufferedReader(f.toPath(), StandardCharsets.UTF_8)) {
-            return gson.fromJson(r, PlayerCollectables.class);
+            PlayerCollectables data = gson.fromJson(r, PlayerCollectables.class);
+            return data != null ? data : new PlayerCollectables();
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
     }
 
+    /**
+     * Writes the data to a temp file, syncs it and moves it over the player's file,
+     * must be called while holding the player's lock
+     */
     private void saveData(@NotNull UUID playerId, @NotNull PlayerCollectables data) {
-        File f = file(playerId);
-        try (Writer w = Files.newBufferedWriter(f.toPath(), StandardCharsets.UTF_8)) {
-            gson.toJson(data, w);
+        Path target = file(playerId).toPath();
+        Path temp = target.resolveSibling(target.getFileName() + TEMP_SUFFIX);
+
+        try {
+            try (FileOutputStream out = new FileOutputStream(temp.toFile())) {
+                if (format == CollectableStorageConfig.FileFormat.BINARY) {
+                    OutputStream buffered = new BufferedOutputStream(out);
+                    BinaryCollectablesCodec.write(data, buffered, compress);
+                    buffered.flush();
+                } else {
+                    Writer w = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+                    gson.toJson(data, w);
+                    w.flush();
+                }
+                out.getFD().sync();
+            }
+
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
         } catch (IOException e) {
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException ignored) {}
             throw new RuntimeException(e);
         }
     }
 
+    /**
+     * Players with a file in either format
+     */
+    @Override
+    public @NotNull List<UUID> storedPlayers() {
+        return EnumerableCollectableStorage.playerFiles(baseDir,
+                CollectableStorageConfig.FileFormat.JSON.extension(),
+                CollectableStorageConfig.FileFormat.BINARY.extension());
+    }
+
     @Override
     public CompletableFuture<Set<String>> loadUnlockedIds(@NotNull UUID playerId, @NotNull String namespace) {
-        return CompletableFuture.supplyAsync(() -> loadData(playerId).unlocks().getOrDefault(namespace, Set.of()));
+        return executor.submit(playerId, () -> loadData(playerId).unlocks().getOrDefault(namespace, Set.of()));
     }
 
     @Override
     public CompletableFuture<Boolean> putUnlock(@NotNull UUID playerId, @NotNull String namespace, @NotNull String id, long whenMillis) {
-        return CompletableFuture.supplyAsync(() -> {
+        return executor.submit(playerId, () -> locked(playerId, () -> {
             PlayerCollectables data = loadData(playerId);
             boolean added = data.markUnlock(namespace, id, whenMillis);
             if (added) saveData(playerId, data);
             return added;
-        });
+        }));
+    }
+
+    @Override
+    public CompletableFuture<UnlockResult> unlockOrReplay(
+        @NotNull UUID playerId, @NotNull String namespace,
+        @NotNull String id, long whenMillis, boolean recordReplay
+    ) {
+        return executor.submit(playerId, () -> locked(playerId, () -> {
+            PlayerCollectables data = loadData(playerId);
+            if (data.markUnlock(namespace, id, whenMillis)) {
+                saveData(playerId, data);
+                return UnlockResult.UNLOCKED;
+            }
+            if (recordReplay) {
+                data.markReplay(namespace, id, whenMillis);
+                saveData(playerId, data);
+            }
+            return UnlockResult.REPLAYED;
+        }));
+    }
+
+    @Override
+    public CompletableFuture<Map<NamespacedKey, UnlockResult>> unlockOrReplayAll(
+        @NotNull UUID playerId, @NotNull Collection<NamespacedKey> keys,
+        long whenMillis, @NotNull Set<NamespacedKey> recordReplays
+    ) {
+        return executor.submit(playerId, () -> locked(playerId, () -> {
+            PlayerCollectables data = loadData(playerId);
+            Map<NamespacedKey, UnlockResult> results = new LinkedHashMap<>();
+            boolean changed = false;
+            for (NamespacedKey key : new LinkedHashSet<>(keys)) {
+                if (data.markUnlock(key, whenMillis)) {
+                    results.put(key, UnlockResult.UNLOCKED);
+                    changed = true;
+                    continue;
+                }
+                if (recordReplays.contains(key)) {
+                    data.markReplay(key, whenMillis);
+                    changed = true;
+                }
+                results.put(key, UnlockResult.REPLAYED);
+            }
+            // one rewrite of the file for the whole batch
+            if (changed) saveData(playerId, data);
+            return results;
+        }));
     }
 
     @Override
     public CompletableFuture<Void> recordReplay(@NotNull UUID playerId, @NotNull String namespace, @NotNull String id, long whenMillis) {
-        return CompletableFuture.runAsync(() -> {
+        return executor.run(playerId, () -> locked(playerId, () -> {
             PlayerCollectables data = loadData(playerId);
+            if (!data.isUnlocked(namespace, id)) return null;
             data.markReplay(namespace, id, whenMillis);
             saveData(playerId, data);
-        });
+            return null;
+        }));
     }
 
     @Override
     public CompletableFuture<Boolean> deleteUnlock(@NotNull UUID playerId, @NotNull String namespace, @NotNull String id) {
-        return CompletableFuture.supplyAsync(() -> {
+        return executor.submit(playerId, () -> locked(playerId, () -> {
             PlayerCollectables data = loadData(playerId);
-            boolean removed = data.unlocks()
-                .getOrDefault(namespace, Set.of())
-                .remove(id);
-
-            var first = data.firstUnlockedAt().get(namespace);
-            if (first != null) first.remove(id);
-            var replay = data.lastReplayedAt().get(namespace);
-            if (replay != null) replay.remove(id);
-
-            data.unlocks().computeIfPresent(namespace, (ns, set) -> set.isEmpty() ? null : set);
-            data.firstUnlockedAt().computeIfPresent(namespace, (ns, map) -> map.isEmpty() ? null : map);
-            data.lastReplayedAt().computeIfPresent(namespace, (ns, map) -> map.isEmpty() ? null : map);
-
+            boolean removed = data.removeUnlock(namespace, id);
             if (removed) saveData(playerId, data);
             return removed;
-        });
+        }));
     }
 
     @Override
     public CompletableFuture<Integer> clearNamespace(@NotNull UUID playerId, @NotNull String namespace) {
-        return CompletableFuture.supplyAsync(() -> {
+        return executor.submit(playerId, () -> locked(playerId, () -> {
             PlayerCollectables data = loadData(playerId);
-            int count = data.unlocks().getOrDefault(namespace, Set.of()).size();
-
-            data.unlocks().remove(namespace);
-            data.firstUnlockedAt().remove(namespace);
-            data.lastReplayedAt().remove(namespace);
+            int count = data.clearNamespace(namespace);
 
             if (count > 0) saveData(playerId, data);
             return count;
-        });
+        }));
     }
 
     @Override
     public CompletableFuture<Void> clearAll(@NotNull UUID playerId) {
-        return CompletableFuture.runAsync(() -> {
-            synchronized (fileIOLock) {
-                File f = file(playerId);
-                try {
-                    Files.deleteIfExists(f.toPath());
-                } catch (IOException e) {
-                    throw new RuntimeException(e);
-                }
+        return executor.run(playerId, () -> locked(playerId, () -> {
+            try {
+                Files.deleteIfExists(file(playerId).toPath());
+                Files.deleteIfExists(file(playerId, legacyFormat()).toPath());
+            } catch (IOException e) {
+                throw new RuntimeException(e);
             }
-        });
+            return null;
+        }));
     }
 
     @Override
     public CompletableFuture<Boolean> isUnlocked(@NotNull UUID playerId, @NotNull String namespace, @NotNull String id) {
-        return CompletableFuture.supplyAsync(() -> loadData(playerId).isUnlocked(namespace, id));
+        return executor.submit(playerId, () -> loadData(playerId).isUnlocked(namespace, id));
     }
 
     @Override
     public CompletableFuture<PlayerCollectables> loadSnapshot(@NotNull UUID playerId) {
-        return CompletableFuture.supplyAsync(() -> loadData(playerId));
+        return executor.submit(playerId, () -> loadData(playerId));
     }
 
     @Override
     public CompletableFuture<Void> saveSnapshot(@NotNull UUID playerId, @NotNull PlayerCollectables snapshot) {
-        return CompletableFuture.runAsync(() -> saveData(playerId, snapshot));
+        return executor.run(playerId, () -> locked(playerId, () -> {
+            saveData(playerId, snapshot);
+            return null;
+        }));
     }
 
 }
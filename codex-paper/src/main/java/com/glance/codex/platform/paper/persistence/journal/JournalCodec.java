@@ -0,0 +1,216 @@
+package com.glance.codex.platform.paper.persistence.journal;
+
+import com.glance.codex.api.data.PlayerCollectables;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/**
+ * Binary record format shared by journal logs and their compacted snapshots
+ * <p>
+ * Both files start with a header ({@code magic, version, generation}) followed by framed records:
+ * {@code [int length][payload][int crc32]}, where the payload is an op byte and its arguments.
+ * Decoding stops at the first incomplete or damaged record, which is how a torn tail from a crash
+ * mid-append is detected
+ *
+ * @author Cammy
+ */
+final class JournalCodec {
+
+    static final int LOG_MAGIC = 0x434A4C47;      // "CJLG"
+    static final int SNAPSHOT_MAGIC = 0x434A534E; // "CJSN"
+    static final byte VERSION = 1;
+    /** magic + version + generation */
+    static final int HEADER_BYTES = Integer.BYTES + 1 + Long.BYTES;
+
+    static final byte UNLOCK = 1;
+    static final byte REPLAY = 2;
+    static final byte RELOCK = 3;
+    static final byte CLEAR_NAMESPACE = 4;
+    static final byte CLEAR_ALL = 5;
+
+    /** Anything larger is garbage, real records are a handful of short strings */
+    private static final int MAX_RECORD_BYTES = 64 * 1024;
+
+    private JournalCodec() {}
+
+    /*
+     * ========
+     * Encoding
+     * ========
+     */
+
+    static byte[] header(int magic, long generation) {
+        return encode(out -> {
+            out.writeInt(magic);
+            out.writeByte(VERSION);
+            out.writeLong(generation);
+        });
+    }
+
+    static byte[] unlock(@NotNull String namespace, @NotNull String id, long when) {
+        return record(out -> {
+            out.writeByte(UNLOCK);
+            out.writeUTF(namespace);
+            out.writeUTF(id);
+            out.writeLong(when);
+        });
+    }
+
+    static byte[] replay(@NotNull String namespace, @NotNull String id, long when) {
+        return record(out -> {
+            out.writeByte(REPLAY);
+            out.writeUTF(namespace);
+            out.writeUTF(id);
+            out.writeLong(when);
+        });
+    }
+
+    static byte[] relock(@NotNull String namespace, @NotNull String id) {
+        return record(out -> {
+            out.writeByte(RELOCK);
+            out.writeUTF(namespace);
+            out.writeUTF(id);
+        });
+    }
+
+    static byte[] clearNamespace(@NotNull String namespace) {
+        return record(out -> {
+            out.writeByte(CLEAR_NAMESPACE);
+            out.writeUTF(namespace);
+        });
+    }
+
+    static byte[] clearAll() {
+        return record(out -> out.writeByte(CLEAR_ALL));
+    }
+
+    /**
+     * Writes the full state as unlock + replay records, used for compacted snapshots
+     * <p>
+     * Unlocks without a recorded first-unlock time are stamped with the current time
+     */
+    static void writeState(@NotNull DataOutputStream out, @NotNull PlayerCollectables data) throws IOException {
+        final long now = System.currentTimeMillis();
+        for (Map.Entry<String, Set<String>> e : data.unlocks().entrySet()) {
+            String ns = e.getKey();
+            Map<String, Long> first = data.firstUnlockedAt().getOrDefault(ns, Map.of());
+            Map<String, Long> replay = data.lastReplayedAt().getOrDefault(ns, Map.of());
+            for (String id : e.getValue()) {
+                out.write(unlock(ns, id, first.getOrDefault(id, now)));
+                Long replayed = replay.get(id);
+                if (replayed != null) out.write(replay(ns, id, replayed));
+            }
+        }
+    }
+
+    private static byte[] record(@NotNull Body body) {
+        byte[] payload = encode(body);
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        return encode(out -> {
+            out.writeInt(payload.length);
+            out.write(payload);
+            out.writeInt((int) crc.getValue());
+        });
+    }
+
+    private static byte[] encode(@NotNull Body body) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            body.write(out);
+        } catch (IOException e) {
+            // in-memory stream, cannot happen
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    @FunctionalInterface
+    private interface Body {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    /*
+     * ========
+     * Decoding
+     * ========
+     */
+
+    /**
+     * @return the generation stored in the header, or -1 if the header is missing or not of the expected kind
+     */
+    static long readHeader(@NotNull DataInputStream in, int magic) throws IOException {
+        try {
+            if (in.readInt() != magic) return -1;
+            if (in.readByte() != VERSION) return -1;
+            return in.readLong();
+        } catch (EOFException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Applies records to the given state until the end of the stream or the first damaged record
+     *
+     * @return number of bytes taken up by the records that were applied
+     */
+    static long replay(@NotNull InputStream stream, @NotNull PlayerCollectables into) throws IOException {
+        DataInputStream in = new DataInputStream(stream);
+        long consumed = 0;
+        CRC32 crc = new CRC32();
+
+        while (true) {
+            int length;
+            byte[] payload;
+            try {
+                length = in.readInt();
+                if (length <= 0 || length > MAX_RECORD_BYTES) return consumed;
+                payload = new byte[length];
+                in.readFully(payload);
+
+                crc.reset();
+                crc.update(payload);
+                if (in.readInt() != (int) crc.getValue()) return consumed;
+            } catch (EOFException e) {
+                return consumed;
+            }
+
+            try {
+                apply(new DataInputStream(new ByteArrayInputStream(payload)), into);
+            } catch (IOException | IllegalArgumentException e) {
+                // checksum matched but contents are not a known record, treat as the end
+                return consumed;
+            }
+            consumed += Integer.BYTES + length + Integer.BYTES;
+        }
+    }
+
+    private static void apply(@NotNull DataInputStream in, @NotNull PlayerCollectables data) throws IOException {
+        byte op = in.readByte();
+        switch (op) {
+            case UNLOCK -> data.markUnlock(in.readUTF(), in.readUTF(), in.readLong());
+            case REPLAY -> {
+                String ns = in.readUTF();
+                String id = in.readUTF();
+                long when = in.readLong();
+                if (data.isUnlocked(ns, id)) data.markReplay(ns, id, when);
+            }
+            case RELOCK -> data.removeUnlock(in.readUTF(), in.readUTF());
+            case CLEAR_NAMESPACE -> data.clearNamespace(in.readUTF());
+            case CLEAR_ALL -> data.clear();
+            default -> throw new IllegalArgumentException("Unknown journal op " + op);
+        }
+    }
+
+}
@@ -0,0 +1,573 @@
+package com.glance.codex.platform.paper.persistence.journal;
+
+import com.glance.codex.api.data.PlayerCollectables;
+import com.glance.codex.api.data.storage.UnlockResult;
+import com.glance.codex.platform.paper.persistence.config.CollectableStorageConfig;
+import com.glance.codex.platform.paper.persistence.executor.StorageExecutor;
+import com.glance.codex.platform.paper.persistence.migration.EnumerableCollectableStorage;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import lombok.extern.slf4j.Slf4j;
+import org.bukkit.NamespacedKey;
+import org.bukkit.plugin.Plugin;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Append-only journal backend
+ * <p>
+ * Every unlock, replay, relock and clear is appended to {@code <uuid>.log} as a small checksummed
+ * record (see {@link JournalCodec}), so a write costs a few dozen bytes no matter how much the player
+ * has unlocked. State is rebuilt by replaying {@code <uuid>.snap} followed by the log, and once a log
+ * grows past the configured threshold a background compactor folds it into a fresh snapshot
+ * <p>
+ * Snapshots and logs carry a generation number. Compaction writes the snapshot of generation
+ * {@code n + 1} (temp file + atomic move) before starting a new log for it, so a crash in between
+ * leaves a log of generation {@code n}, which is simply ignored on the next load
+ *
+ * <p><b>Threading note:</b> operations for the same player are serialized on a lock stripe,
+ * recently used players' state is kept in a small LRU so writes do not have to replay the log</p>
+ *
+ * @author Cammy
+ */
+@Slf4j
+@Singleton
+public class JournalCollectableStorage implements EnumerableCollectableStorage, AutoCloseable {
+
+    /** Power of two, so a stripe is picked with a mask */
+    private static final int LOCK_STRIPES = 64;
+    private static final String LOG_SUFFIX = ".log";
+    private static final String SNAPSHOT_SUFFIX = ".snap";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final File baseDir;
+    private final long compactThresholdBytes;
+    private final boolean syncWrites;
+
+    private final ReentrantLock[] locks = new ReentrantLock[LOCK_STRIPES];
+    private final StorageExecutor executor;
+    private final Map<UUID, State> states;
+    private final Set<UUID> pendingCompactions = ConcurrentHashMap.newKeySet();
+    private final ExecutorService compactor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "Codex-JournalCompactor");
+        t.setDaemon(true);
+        return t;
+    });
+
+    @Inject
+    public JournalCollectableStorage(
+        @NotNull Plugin plugin,
+        @NotNull CollectableStorageConfig config,
+        @NotNull StorageExecutor executor
+    ) {
+        this.executor = executor;
+        this.baseDir = new File(plugin.getDataFolder(), config.journalDir());
+        this.baseDir.mkdirs();
+        this.compactThresholdBytes = Math.max(1, config.journalCompactThresholdKb()) * 1024L;
+        this.syncWrites = config.journalSyncWrites();
+
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new ReentrantLock();
+        }
+
+        final int cacheSize = Math.max(1, config.journalCacheSize());
+        this.states = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<UUID, State> eldest) {
+                return size() > cacheSize;
+            }
+        };
+
+        // snapshots interrupted mid-write, the previous snapshot + log are still intact
+        File[] stale = baseDir.listFiles((dir, name) -> name.endsWith(TEMP_SUFFIX));
+        if (stale != null) {
+            for (File f : stale) f.delete();
+        }
+    }
+
+    /**
+     * Stops the compactor, letting already queued compactions finish
+     */
+    @Override
+    public void close() {
+        compactor.shutdown();
+        try {
+            compactor.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /*
+     * =====
+     * Files
+     * =====
+     */
+
+    private File logFile(UUID playerId) {
+        return new File(baseDir, playerId + LOG_SUFFIX);
+    }
+
+    private File snapshotFile(UUID playerId) {
+        return new File(baseDir, playerId + SNAPSHOT_SUFFIX);
+    }
+
+    /**
+     * Players with a snapshot, a log or both
+     */
+    @Override
+    public @NotNull List<UUID> storedPlayers() {
+        return EnumerableCollectableStorage.playerFiles(baseDir, SNAPSHOT_SUFFIX, LOG_SUFFIX);
+    }
+
+    private ReentrantLock lock(@NotNull UUID playerId) {
+        int h = playerId.hashCode();
+        return locks[(h ^ (h >>> 16)) & (LOCK_STRIPES - 1)];
+    }
+
+    /**
+     * Runs the action while holding the player's lock stripe
+     */
+    private <T> T locked(@NotNull UUID playerId, @NotNull Supplier<T> action) {
+        ReentrantLock lock = lock(playerId);
+        lock.lock();
+        try {
+            return action.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the player's current state, rebuilding it from disk if not cached,
+     * must be called while holding the player's lock
+     */
+    private State state(@NotNull UUID playerId) {
+        State cached;
+        synchronized (states) {
+            cached = states.get(playerId);
+        }
+        if (cached != null) return cached;
+
+        try {
+            State state = readState(playerId);
+            synchronized (states) {
+                states.put(playerId, state);
+            }
+            return state;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private State readState(@NotNull UUID playerId) throws IOException {
+        PlayerCollectables data = new PlayerCollectables();
+        long generation = 0;
+
+        File snap = snapshotFile(playerId);
+        if (snap.exists()) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(snap)))) {
+                generation = JournalCodec.readHeader(in, JournalCodec.SNAPSHOT_MAGIC);
+                if (generation < 0) throw new IOException("Corrupt journal snapshot " + snap);
+                JournalCodec.replay(in, data);
+            }
+        }
+
+        File journal = logFile(playerId);
+        if (!journal.exists()) {
+            // created on the first append, lookups of players without data leave no files behind
+            return new State(data, generation, 0);
+        }
+
+        long valid;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(journal)))) {
+            long logGeneration = JournalCodec.readHeader(in, JournalCodec.LOG_MAGIC);
+            if (logGeneration != generation) {
+                // already folded into the snapshot (crash between compaction steps) or unreadable
+                valid = -1;
+            } else {
+                valid = JournalCodec.HEADER_BYTES + JournalCodec.replay(in, data);
+            }
+        }
+
+        if (valid < 0) {
+            // replaced with a fresh log on the next append
+            valid = 0;
+        } else if (valid < journal.length()) {
+            log.warn("Discarding {} damaged trailing bytes from journal of {}", journal.length() - valid, playerId);
+            try (RandomAccessFile raf = new RandomAccessFile(journal, "rw")) {
+                raf.setLength(valid);
+            }
+        }
+        return new State(data, generation, valid);
+    }
+
+    /**
+     * Replaces the player's log with an empty one of the given generation
+     */
+    private void resetLog(@NotNull UUID playerId, long generation) throws IOException {
+        try (FileOutputStream out = new FileOutputStream(logFile(playerId), false)) {
+            out.write(JournalCodec.header(JournalCodec.LOG_MAGIC, generation));
+            if (syncWrites) out.getFD().sync();
+        }
+    }
+
+    /**
+     * Appends records to the player's log and queues a compaction once it is large enough,
+     * must be called while holding the player's lock
+     */
+    private void append(@NotNull UUID playerId, @NotNull State state, @NotNull List<byte[]> records) {
+        if (records.isEmpty()) return;
+
+        long written = 0;
+        try {
+            if (state.logBytes == 0) {
+                resetLog(playerId, state.generation);
+                state.logBytes = JournalCodec.HEADER_BYTES;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        try (FileOutputStream out = new FileOutputStream(logFile(playerId), true)) {
+            BufferedOutputStream buffered = new BufferedOutputStream(out);
+            for (byte[] record : records) {
+                buffered.write(record);
+                written += record.length;
+            }
+            buffered.flush();
+            if (syncWrites) out.getFD().sync();
+        } catch (IOException e) {
+            // memory may now be ahead of disk, rebuild from the log next time
+            invalidate(playerId);
+            throw new UncheckedIOException(e);
+        }
+
+        state.logBytes += written;
+        if (state.logBytes > compactThresholdBytes) scheduleCompaction(playerId);
+    }
+
+    private void append(@NotNull UUID playerId, @NotNull State state, @NotNull byte[] record) {
+        append(playerId, state, List.of(record));
+    }
+
+    private void invalidate(@NotNull UUID playerId) {
+        synchronized (states) {
+            states.remove(playerId);
+        }
+    }
+
+    /*
+     * ==========
+     * Compaction
+     * ==========
+     */
+
+    private void scheduleCompaction(@NotNull UUID playerId) {
+        if (!pendingCompactions.add(playerId)) return;
+        try {
+            compactor.execute(() -> {
+                pendingCompactions.remove(playerId);
+                try {
+                    locked(playerId, () -> {
+                        compact(playerId, state(playerId).data);
+                        return null;
+                    });
+                } catch (Exception e) {
+                    log.error("Failed to compact collectables journal for {}", playerId, e);
+                }
+            });
+        } catch (Exception e) {
+            // shutting down, the log stays valid and is compacted next time
+            pendingCompactions.remove(playerId);
+        }
+    }
+
+    /**
+     * Writes the given data as the next generation snapshot and starts an empty log for it,
+     * must be called while holding the player's lock
+     */
+    private void compact(@NotNull UUID playerId, @NotNull PlayerCollectables data) {
+        State state = state(playerId);
+        final long generation = state.generation + 1;
+
+        Path target = snapshotFile(playerId).toPath();
+        Path temp = target.resolveSibling(target.getFileName() + TEMP_SUFFIX);
+        try {
+            try (FileOutputStream file = new FileOutputStream(temp.toFile());
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file))) {
+                out.write(JournalCodec.header(JournalCodec.SNAPSHOT_MAGIC, generation));
+                JournalCodec.writeState(out, data);
+                out.flush();
+                file.getFD().sync();
+            }
+
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+
+            resetLog(playerId, generation);
+        } catch (IOException e) {
+            invalidate(playerId);
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException ignored) {}
+            throw new UncheckedIOException(e);
+        }
+
+        state.data = data;
+        state.generation = generation;
+        state.logBytes = JournalCodec.HEADER_BYTES;
+    }
+
+    /*
+     * ==================
+     * CollectableStorage
+     * ==================
+     */
+
+    @Override
+    public CompletableFuture<Set<String>> loadUnlockedIds(@NotNull UUID playerId, @NotNull String namespace) {
+        return executor.submit(playerId, () -> locked(playerId, () ->
+                Set.copyOf(state(playerId).data.unlocks().getOrDefault(namespace, Set.of()))));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> putUnlock(@NotNull UUID playerId, @NotNull String namespace, @NotNull String id, long whenMillis) {
+        return executor.submit(playerId, () -> locked(playerId, () -> {
+            State state = state(playerId);
+            if (state.data.isUnlocked(namespace, id)) return false;
+
+            append(playerId, state, JournalCodec.unlock(namespace, id, whenMillis));
+            state.data.markUnlock(namespace, id, whenMillis);
+            return true;
+        }));
+    }
+
+    @Override
+    public CompletableFuture<UnlockResult> unlockOrReplay(
+        @NotNull UUID playerId, @NotNull String namespace,
+        @NotNull String id, long whenMillis, boolean recordReplay
+    ) {
+        return executor.submit(playerId, () -> locked(playerId, () -> {
+            State state = state(playerId);
+            if (!state.data.isUnlocked(namespace, id)) {
+                append(playerId, state, JournalCodec.unlock(namespace, id, whenMillis));
+                state.data.markUnlock(namespace, id, whenMillis);
+                return UnlockResult.UNLOCKED;
+            }
+            if (recordReplay) {
+                append(playerId, state, JournalCodec.replay(namespace, id, whenMillis));
+                state.data.markReplay(namespace, id, whenMillis);
+            }
+            return UnlockResult.REPLAYED;
+        }));
+    }
+
+    @Override
+    public CompletableFuture<Map<NamespacedKey, UnlockResult>> unlockOrReplayAll(
+        @NotNull UUID playerId, @NotNull Collection<NamespacedKey> keys,
+        long whenMillis, @NotNull Set<NamespacedKey> recordReplays
+    ) {
+        return executor.submit(playerId, () -> locked(playerId, () -> {
+            State state = state(playerId);
+            Map<NamespacedKey, UnlockResult> results = new LinkedHashMap<>();
+            List<byte[]> records = new ArrayList<>();
+            for (NamespacedKey key : new LinkedHashSet<>(keys)) {
+                if (!state.data.isUnlocked(key)) {
+                    records.add(JournalCodec.unlock(key.getNamespace(), key.getKey(), whenMillis));
+                    results.put(key, UnlockResult.UNLOCKED);
+                } else {
+                    if (recordReplays.contains(key)) records.add(JournalCodec.replay(key.getNamespace(), key.getKey(), whenMillis));
+                    results.put(key, UnlockResult.REPLAYED);
+                }
+            }
+
+            // a single append (and fsync) for the batch, memory only follows once it is on disk
+            append(playerId, state, records);
+            results.forEach((key, result) -> {
+                if (result == UnlockResult.UNLOCKED) state.data.markUnlock(key, whenMillis);
+                else if (recordReplays.contains(key)) state.data.markReplay(key, whenMillis);
+            });
+            return results;
+        }));
+    }
+
+    @Override
+    public CompletableFuture<Void> recordReplay(@NotNull UUID playerId, @NotNull String namespace, @NotNull String id, long whenMillis) {
+        return executor.run(playerId, () -> locked(playerId, () -> {
+            State state = state(playerId);
+            if (!state.data.isUnlocked(namespace, id)) return null;
+
+            append(playerId, state, JournalCodec.replay(namespace, id, whenMillis));
+            state.data.markReplay(namespace, id, whenMillis);
+            return null;
+        }));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> deleteUnlock(@NotNull UUID playerId, @NotNull String namespace, @NotNull String id) {
+        return executor.submit(playerId, () -> locked(playerId, () -> {
+            State state = state(playerId);
+            if (!state.data.isUnlocked(namespace, id)) return false;
+
+            append(playerId, state, JournalCodec.relock(namespace, id));
+            return state.data.removeUnlock(namespace, id);
+        }));
+    }
+
+    @Override
+    public CompletableFuture<Integer> clearNamespace(@NotNull UUID playerId, @NotNull String namespace) {
+        return executor.submit(playerId, () -> locked(playerId, () -> {
+            State state = state(playerId);
+            if (!state.data.unlocks().containsKey(namespace)) return 0;
+
+            append(playerId, state, JournalCodec.clearNamespace(namespace));
+            return state.data.clearNamespace(namespace);
+        }));
+    }
+
+    @Override
+    public CompletableFuture<Void> clearAll(@NotNull UUID playerId) {
+        return executor.run(playerId, () -> locked(playerId, () -> {
+            State state = state(playerId);
+            append(playerId, state, JournalCodec.clearAll());
+            state.data.clear();
+            return null;
+        }));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> isUnlocked(@NotNull UUID playerId, @NotNull String namespace, @NotNull String id) {
+        return executor.submit(playerId, () -> locked(playerId, () ->
+                state(playerId).data.isUnlocked(namespace, id)));
+    }
+
+    @Override
+    public CompletableFuture<PlayerCollectables> loadSnapshot(@NotNull UUID playerId) {
+        return executor.submit(playerId, () -> locked(playerId, () -> state(playerId).data.copy()));
+    }
+
+    /**
+     * Appends only the records needed to turn the current state into the given snapshot
+     * <p>
+     * This is what the session cache calls on every flush, so it stays proportional to the
+     * number of changes. Large diffs are folded straight into a new snapshot instead
+     */
+    @Override
+    public CompletableFuture<Void> saveSnapshot(@NotNull UUID playerId, @NotNull PlayerCollectables snapshot) {
+        return executor.run(playerId, () -> locked(playerId, () -> {
+            State state = state(playerId);
+            List<byte[]> records = diff(state.data, snapshot);
+
+            long bytes = 0;
+            for (byte[] record : records) bytes += record.length;
+
+            if (state.logBytes + bytes > compactThresholdBytes) {
+                compact(playerId, snapshot.copy());
+            } else {
+                append(playerId, state, records);
+                state.data = snapshot.copy();
+            }
+            return null;
+        }));
+    }
+
+    /**
+     * @return the records that turn {@code from} into {@code to} when replayed
+     */
+    private static List<byte[]> diff(@NotNull PlayerCollectables from, @NotNull PlayerCollectables to) {
+        List<byte[]> records = new ArrayList<>();
+
+        Set<String> namespaces = new HashSet<>(from.unlocks().keySet());
+        namespaces.addAll(to.unlocks().keySet());
+
+        for (String ns : namespaces) {
+            Set<String> before = from.unlocks().getOrDefault(ns, Set.of());
+            Set<String> after = to.unlocks().getOrDefault(ns, Set.of());
+
+            if (after.isEmpty()) {
+                if (!before.isEmpty()) records.add(JournalCodec.clearNamespace(ns));
+                continue;
+            }
+
+            Map<String, Long> firstBefore = from.firstUnlockedAt().getOrDefault(ns, Map.of());
+            Map<String, Long> firstAfter = to.firstUnlockedAt().getOrDefault(ns, Map.of());
+            Map<String, Long> replayBefore = from.lastReplayedAt().getOrDefault(ns, Map.of());
+            Map<String, Long> replayAfter = to.lastReplayedAt().getOrDefault(ns, Map.of());
+
+            for (String id : before) {
+                if (!after.contains(id)) records.add(JournalCodec.relock(ns, id));
+            }
+
+            for (String id : after) {
+                Long first = firstAfter.get(id);
+                Long replay = replayAfter.get(id);
+
+                boolean present = before.contains(id);
+                boolean sameFirst = present && (first == null || Objects.equals(first, firstBefore.get(id)));
+                // a replay time can only be dropped by re-creating the entry
+                boolean replayDropped = present && replay == null && replayBefore.containsKey(id);
+
+                if (!sameFirst || replayDropped) {
+                    if (present) records.add(JournalCodec.relock(ns, id));
+                    records.add(JournalCodec.unlock(ns, id, first != null ? first : System.currentTimeMillis()));
+                    if (replay != null) records.add(JournalCodec.replay(ns, id, replay));
+                } else if (replay != null && !replay.equals(replayBefore.get(id))) {
+                    records.add(JournalCodec.replay(ns, id, replay));
+                }
+            }
+        }
+        return records;
+    }
+
+    /**
+     * In-memory state of a single player's journal
+     */
+    private static final class State {
+        PlayerCollectables data;
+        long generation;
+        /** current size of the log file, 0 while it is missing or stale and must be recreated */
+        long logBytes;
+
+        State(@NotNull PlayerCollectables data, long generation, long logBytes) {
+            this.data = data;
+            this.generation = generation;
+            this.logBytes = logBytes;
+        }
+    }
+
+}
@@ -0,0 +1,178 @@
+package com.glance.codex.platform.paper.persistence.metrics;
+
+import com.glance.codex.api.data.PlayerCollectables;
+import com.glance.codex.api.data.storage.UnlockResult;
+import com.glance.codex.platform.paper.persistence.migration.EnumerableCollectableStorage;
+import org.bukkit.NamespacedKey;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * Records latency, calls, errors and in-flight counts of every call into a storage backend
+ * <p>
+ * Wraps the backend directly, below the counts index and the session cache, so the figures show real
+ * I/O (including cache flushes and session loads) rather than in-memory hits. A call is timed from
+ * the moment it is made until its future completes, which includes any wait for a storage executor thread
+ *
+ * @author Cammy
+ */
+public class InstrumentedCollectableStorage implements EnumerableCollectableStorage, AutoCloseable {
+
+    private final EnumerableCollectableStorage delegate;
+
+    private final StorageMetrics.Operation loadUnlockedIds;
+    private final StorageMetrics.Operation putUnlock;
+    private final StorageMetrics.Operation unlockOrReplay;
+    private final StorageMetrics.Operation unlockOrReplayAll;
+    private final StorageMetrics.Operation recordReplay;
+    private final StorageMetrics.Operation deleteUnlock;
+    private final StorageMetrics.Operation clearNamespace;
+    private final StorageMetrics.Operation clearAll;
+    private final StorageMetrics.Operation isUnlocked;
+    private final StorageMetrics.Operation loadSnapshot;
+    private final StorageMetrics.Operation loadSnapshots;
+    private final StorageMetrics.Operation saveSnapshot;
+    private final StorageMetrics.Operation saveSnapshots;
+    private final StorageMetrics.Operation storedPlayers;
+
+    public InstrumentedCollectableStorage(
+        @NotNull EnumerableCollectableStorage delegate,
+        @NotNull String backend,
+        @NotNull StorageMetrics metrics
+    ) {
+        this.delegate = delegate;
+        this.loadUnlockedIds = metrics.operation(backend, "loadUnlockedIds");
+        this.putUnlock = metrics.operation(backend, "putUnlock");
+        this.unlockOrReplay = metrics.operation(backend, "unlockOrReplay");
+        this.unlockOrReplayAll = metrics.operation(backend, "unlockOrReplayAll");
+        this.recordReplay = metrics.operation(backend, "recordReplay");
+        this.deleteUnlock = metrics.operation(backend, "deleteUnlock");
+        this.clearNamespace = metrics.operation(backend, "clearNamespace");
+        this.clearAll = metrics.operation(backend, "clearAll");
+        this.isUnlocked = metrics.operation(backend, "isUnlocked");
+        this.loadSnapshot = metrics.operation(backend, "loadSnapshot");
+        this.loadSnapshots = metrics.operation(backend, "loadSnapshots");
+        this.saveSnapshot = metrics.operation(backend, "saveSnapshot");
+        this.saveSnapshots = metrics.operation(backend, "saveSnapshots");
+        this.storedPlayers = metrics.operation(backend, "storedPlayers");
+    }
+
+    /**
+     * @return the wrapped storage backend
+     */
+    public @NotNull EnumerableCollectableStorage delegate() {
+        return delegate;
+    }
+
+    @Override
+    public void close() throws Exception {
+        if (delegate instanceof AutoCloseable closeable) closeable.close();
+    }
+
+    private static <T> CompletableFuture<T> timed(
+        @NotNull StorageMetrics.Operation operation,
+        @NotNull Supplier<CompletableFuture<T>> call
+    ) {
+        final long started = operation.start();
+        CompletableFuture<T> future;
+        try {
+            future = call.get();
+        } catch (RuntimeException e) {
+            operation.finish(started, true);
+            throw e;
+        }
+        return future.whenComplete((result, ex) -> operation.finish(started, ex != null));
+    }
+
+    @Override
+    public @NotNull List<UUID> storedPlayers() {
+        final long started = storedPlayers.start();
+        boolean failed = true;
+        try {
+            List<UUID> players = delegate.storedPlayers();
+            failed = false;
+            return players;
+        } finally {
+            storedPlayers.finish(started, failed);
+        }
+    }
+
+    @Override
+    public CompletableFuture<Set<String>> loadUnlockedIds(@NotNull UUID playerId, @NotNull String namespace) {
+        return timed(loadUnlockedIds, () -> delegate.loadUnlockedIds(playerId, namespace));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> putUnlock(@NotNull UUID playerId, @NotNull String namespace, @NotNull String id, long whenMillis) {
+        return timed(putUnlock, () -> delegate.putUnlock(playerId, namespace, id, whenMillis));
+    }
+
+    @Override
+    public CompletableFuture<UnlockResult> unlockOrReplay(
+        @NotNull UUID playerId, @NotNull String namespace,
+        @NotNull String id, long whenMillis, boolean recordReplay
+    ) {
+        return timed(unlockOrReplay, () -> delegate.unlockOrReplay(playerId, namespace, id, whenMillis, recordReplay));
+    }
+
+    @Override
+    public CompletableFuture<Map<NamespacedKey, UnlockResult>> unlockOrReplayAll(
+        @NotNull UUID playerId, @NotNull Collection<NamespacedKey> keys,
+        long whenMillis, @NotNull Set<NamespacedKey> recordReplays
+    ) {
+        return timed(unlockOrReplayAll, () -> delegate.unlockOrReplayAll(playerId, keys, whenMillis, recordReplays));
+    }
+
+    @Override
+    public CompletableFuture<Void> recordReplay(@NotNull UUID playerId, @NotNull String namespace, @NotNull String id, long whenMillis) {
+        return timed(recordReplay, () -> delegate.recordReplay(playerId, namespace, id, whenMillis));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> deleteUnlock(@NotNull UUID playerId, @NotNull String namespace, @NotNull String id) {
+        return timed(deleteUnlock, () -> delegate.deleteUnlock(playerId, namespace, id));
+    }
+
+    @Override
+    public CompletableFuture<Integer> clearNamespace(@NotNull UUID playerId, @NotNull String namespace) {
+        return timed(clearNamespace, () -> delegate.clearNamespace(playerId, namespace));
+    }
+
+    @Override
+    public CompletableFuture<Void> clearAll(@NotNull UUID playerId) {
+        return timed(clearAll, () -> delegate.clearAll(playerId));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> isUnlocked(@NotNull UUID playerId, @NotNull String namespace, @NotNull String id) {
+        return timed(isUnlocked, () -> delegate.isUnlocked(playerId, namespace, id));
+    }
+
+    @Override
+    public CompletableFuture<PlayerCollectables> loadSnapshot(@NotNull UUID playerId) {
+        return timed(loadSnapshot, () -> delegate.loadSnapshot(playerId));
+    }
+
+    @Override
+    public CompletableFuture<Map<UUID, PlayerCollectables>> loadSnapshots(@NotNull Collection<UUID> playerIds) {
+        return timed(loadSnapshots, () -> delegate.loadSnapshots(playerIds));
+    }
+
+    @Override
+    public CompletableFuture<Void> saveSnapshot(@NotNull UUID playerId, @NotNull PlayerCollectables snapshot) {
+        return timed(saveSnapshot, () -> delegate.saveSnapshot(playerId, snapshot));
+    }
+
+    @Override
+    public CompletableFuture<Void> saveSnapshots(@NotNull Map<UUID, PlayerCollectables> snapshots) {
+        return timed(saveSnapshots, () -> delegate.saveSnapshots(snapshots));
+    }
+
+}
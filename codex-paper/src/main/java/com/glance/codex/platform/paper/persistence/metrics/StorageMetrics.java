@@ -0,0 +1,166 @@
+package com.glance.codex.platform.paper.persistence.metrics;
+
+import com.google.inject.Singleton;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Registry of per-operation storage figures, filled by {@link InstrumentedCollectableStorage}
+ * <p>
+ * Every {@code (backend, operation)} pair gets call and error counters, an in-flight gauge and a latency
+ * histogram with fixed buckets. Recording only touches striped adders, so instrumented calls never contend
+ * on a lock; readers sum them up whenever a report is built
+ *
+ * @author Cammy
+ */
+@Singleton
+public class StorageMetrics {
+
+    /** Upper bounds of the latency buckets in milliseconds, the last bucket is unbounded */
+    static final double[] BUCKET_MILLIS = {0.1, 0.25, 0.5, 1, 2.5, 5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000};
+
+    private static final long[] BUCKET_NANOS = new long[BUCKET_MILLIS.length];
+
+    static {
+        for (int i = 0; i < BUCKET_MILLIS.length; i++) {
+            BUCKET_NANOS[i] = (long) (BUCKET_MILLIS[i] * TimeUnit.MILLISECONDS.toNanos(1));
+        }
+    }
+
+    private final Map<String, Operation> operations = new ConcurrentHashMap<>();
+
+    /**
+     * @return the figures of the operation, created on first use
+     */
+    public @NotNull Operation operation(@NotNull String backend, @NotNull String operation) {
+        return operations.computeIfAbsent(backend + '/' + operation, k -> new Operation(backend, operation));
+    }
+
+    /**
+     * @return every operation recorded so far, by backend then name
+     */
+    public @NotNull List<Operation> operations() {
+        List<Operation> sorted = new ArrayList<>(operations.values());
+        sorted.sort(Comparator.comparing(Operation::backend).thenComparing(Operation::name));
+        return sorted;
+    }
+
+    /**
+     * Figures of a single storage operation on a single backend
+     */
+    public static final class Operation {
+
+        private final String backend;
+        private final String name;
+
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+        private final AtomicInteger inFlight = new AtomicInteger();
+        /** non-cumulative, the last slot counts everything above the largest bound */
+        private final LongAdder[] buckets = new LongAdder[BUCKET_MILLIS.length + 1];
+
+        private Operation(@NotNull String backend, @NotNull String name) {
+            this.backend = backend;
+            this.name = name;
+            for (int i = 0; i < buckets.length; i++) buckets[i] = new LongAdder();
+        }
+
+        /**
+         * @return the start time to hand back to {@link #finish}
+         */
+        long start() {
+            inFlight.incrementAndGet();
+            return System.nanoTime();
+        }
+
+        void finish(long startNanos, boolean failed) {
+            long nanos = System.nanoTime() - startNanos;
+            inFlight.decrementAndGet();
+            calls.increment();
+            if (failed) errors.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulate(nanos);
+
+            int bucket = 0;
+            while (bucket < BUCKET_NANOS.length && nanos > BUCKET_NANOS[bucket]) bucket++;
+            buckets[bucket].increment();
+        }
+
+        public @NotNull String backend() {
+            return backend;
+        }
+
+        public @NotNull String name() {
+            return name;
+        }
+
+        public long calls() {
+            return calls.sum();
+        }
+
+        public long errors() {
+            return errors.sum();
+        }
+
+        public int inFlight() {
+            return inFlight.get();
+        }
+
+        public double totalSeconds() {
+            return totalNanos.sum() / 1e9;
+        }
+
+        public double averageMillis() {
+            long count = calls.sum();
+            return count == 0 ? 0 : totalNanos.sum() / 1e6 / count;
+        }
+
+        public double maxMillis() {
+            return maxNanos.get() / 1e6;
+        }
+
+        /**
+         * @return calls that took at most each bound of {@link #BUCKET_MILLIS}, cumulative, followed by all calls
+         */
+        public long @NotNull [] cumulativeBuckets() {
+            long[] cumulative = new long[buckets.length];
+            long sum = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                sum += buckets[i].sum();
+                cumulative[i] = sum;
+            }
+            return cumulative;
+        }
+
+        /**
+         * Estimates a latency percentile as the upper bound of the bucket it falls into
+         *
+         * @param quantile between 0 and 1, e.g. {@code 0.99}
+         * @return the estimate in milliseconds, the maximum seen if it falls into the unbounded bucket
+         */
+        public double percentileMillis(double quantile) {
+            long[] cumulative = cumulativeBuckets();
+            long total = cumulative[cumulative.length - 1];
+            if (total == 0) return 0;
+
+            long rank = (long) Math.ceil(quantile * total);
+            for (int i = 0; i < BUCKET_MILLIS.length; i++) {
+                if (cumulative[i] >= rank) return BUCKET_MILLIS[i];
+            }
+            return maxMillis();
+        }
+
+    }
+
+}
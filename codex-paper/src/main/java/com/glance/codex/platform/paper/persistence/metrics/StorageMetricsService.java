@@ -0,0 +1,244 @@
+package com.glance.codex.platform.paper.persistence.metrics;
+
+import com.glance.codex.platform.paper.persistence.config.CollectableStorageConfig;
+import com.glance.codex.platform.paper.persistence.config.CollectableStorageProvider;
+import com.glance.codex.platform.paper.persistence.executor.StorageExecutor;
+import com.glance.codex.platform.paper.persistence.sql.JdbiCollectableStorage;
+import com.glance.codex.utils.lifecycle.Manager;
+import com.google.auto.service.AutoService;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import lombok.extern.slf4j.Slf4j;
+import org.bukkit.Bukkit;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Reports the {@link StorageMetrics} along with storage executor and connection pool figures
+ * <p>
+ * Writes everything in the Prometheus text format to {@code storage.metrics.file} on a timer, replacing the
+ * file atomically so a textfile collector never reads half of it, and summarises it for
+ * {@code /collectables storage metrics}
+ *
+ * @author Cammy
+ */
+@Slf4j
+@Singleton
+@AutoService(Manager.class)
+public class StorageMetricsService implements Manager {
+
+    private static final String PREFIX = "codex_storage_";
+
+    private final Plugin plugin;
+    private final CollectableStorageConfig cfg;
+    private final StorageMetrics metrics;
+    private final StorageExecutor executor;
+    private final CollectableStorageProvider storageProvider;
+
+    private @Nullable BukkitTask exportTask;
+
+    @Inject
+    public StorageMetricsService(
+        @NotNull final Plugin plugin,
+        @NotNull final CollectableStorageConfig cfg,
+        @NotNull final StorageMetrics metrics,
+        @NotNull final StorageExecutor executor,
+        @NotNull final CollectableStorageProvider storageProvider
+    ) {
+        this.plugin = plugin;
+        this.cfg = cfg;
+        this.metrics = metrics;
+        this.executor = executor;
+        this.storageProvider = storageProvider;
+    }
+
+    @Override
+    public void onEnable() {
+        if (!cfg.metrics() || cfg.metricsExportIntervalSeconds() <= 0) return;
+
+        long period = cfg.metricsExportIntervalSeconds() * 20L;
+        this.exportTask = Bukkit.getScheduler().runTaskTimerAsynchronously(plugin, this::export, period, period);
+    }
+
+    @Override
+    public void onDisable() {
+        if (this.exportTask == null) return;
+        this.exportTask.cancel();
+        this.exportTask = null;
+        export();
+    }
+
+    /**
+     * @return whether calls are being recorded at all
+     */
+    public boolean enabled() {
+        return cfg.metrics();
+    }
+
+    /*
+     * ======
+     * Export
+     * ======
+     */
+
+    private void export() {
+        Path target = plugin.getDataFolder().toPath().resolve(cfg.metricsFile());
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try {
+            Files.createDirectories(target.getParent());
+            Files.writeString(temp, prometheus(), StandardCharsets.UTF_8);
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("Failed to write storage metrics to {}", target, e);
+        }
+    }
+
+    /**
+     * @return every figure in the Prometheus text exposition format
+     */
+    public @NotNull String prometheus() {
+        StringBuilder out = new StringBuilder(4096);
+        List<StorageMetrics.Operation> operations = metrics.operations();
+
+        header(out, "operation_duration_seconds", "histogram", "Time from a storage call until its future completes");
+        for (StorageMetrics.Operation op : operations) {
+            String labels = "backend=\"" + op.backend() + "\",operation=\"" + op.name() + "\"";
+            long[] cumulative = op.cumulativeBuckets();
+            for (int i = 0; i < StorageMetrics.BUCKET_MILLIS.length; i++) {
+                String le = BigDecimal.valueOf(StorageMetrics.BUCKET_MILLIS[i]).movePointLeft(3).stripTrailingZeros().toPlainString();
+                sample(out, "operation_duration_seconds_bucket", labels + ",le=\"" + le + "\"", cumulative[i]);
+            }
+            sample(out, "operation_duration_seconds_bucket", labels + ",le=\"+Inf\"", cumulative[cumulative.length - 1]);
+            sample(out, "operation_duration_seconds_sum", labels, op.totalSeconds());
+            sample(out, "operation_duration_seconds_count", labels, op.calls());
+        }
+
+        header(out, "operation_errors_total", "counter", "Storage calls that completed exceptionally");
+        for (StorageMetrics.Operation op : operations) {
+            sample(out, "operation_errors_total", "backend=\"" + op.backend() + "\",operation=\"" + op.name() + "\"", op.errors());
+        }
+
+        header(out, "operation_in_flight", "gauge", "Storage calls made but not completed yet");
+        for (StorageMetrics.Operation op : operations) {
+            sample(out, "operation_in_flight", "backend=\"" + op.backend() + "\",operation=\"" + op.name() + "\"", op.inFlight());
+        }
+
+        StorageExecutor.Stats stats = executor.stats();
+        gauge(out, "executor_queue_depth", "Storage tasks submitted but not started", stats.queueDepth());
+        gauge(out, "executor_active_lanes", "Players with queued or running storage tasks", stats.activeLanes());
+        counter(out, "executor_executed_total", "Storage tasks run since startup", stats.executed());
+        counter(out, "executor_rejected_total", "Storage tasks refused by a full or closed executor", stats.rejected());
+        gauge(out, "executor_wait_seconds_avg", "Mean wait between submitting and starting a storage task", stats.averageWaitMillis() / 1000);
+        gauge(out, "executor_wait_seconds_max", "Longest wait between submitting and starting a storage task", stats.maxWaitMillis() / 1000);
+
+        List<HikariDataSource> pools = pools();
+        if (!pools.isEmpty()) {
+            header(out, "pool_connections", "gauge", "SQL connections by state");
+            for (HikariDataSource pool : pools) {
+                HikariPoolMXBean bean = pool.getHikariPoolMXBean();
+                if (bean == null) continue;
+                String name = "pool=\"" + pool.getPoolName() + "\"";
+                sample(out, "pool_connections", name + ",state=\"active\"", bean.getActiveConnections());
+                sample(out, "pool_connections", name + ",state=\"idle\"", bean.getIdleConnections());
+            }
+            header(out, "pool_threads_awaiting", "gauge", "Threads blocked waiting for an SQL connection");
+            for (HikariDataSource pool : pools) {
+                HikariPoolMXBean bean = pool.getHikariPoolMXBean();
+                if (bean != null) sample(out, "pool_threads_awaiting", "pool=\"" + pool.getPoolName() + "\"", bean.getThreadsAwaitingConnection());
+            }
+            header(out, "pool_max_connections", "gauge", "Configured SQL pool size");
+            for (HikariDataSource pool : pools) {
+                sample(out, "pool_max_connections", "pool=\"" + pool.getPoolName() + "\"", pool.getMaximumPoolSize());
+            }
+        }
+        return out.toString();
+    }
+
+    private List<HikariDataSource> pools() {
+        return storageProvider.find(JdbiCollectableStorage.class)
+                .map(sql -> sql.bootstrap().pools())
+                .orElse(List.of());
+    }
+
+    private static void header(@NotNull StringBuilder out, @NotNull String name, @NotNull String type, @NotNull String help) {
+        out.append("# HELP ").append(PREFIX).append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(PREFIX).append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void sample(@NotNull StringBuilder out, @NotNull String name, @NotNull String labels, double value) {
+        out.append(PREFIX).append(name).append('{').append(labels).append("} ");
+        if (value == Math.rint(value) && !Double.isInfinite(value)) out.append((long) value);
+        else out.append(value);
+        out.append('\n');
+    }
+
+    private static void gauge(@NotNull StringBuilder out, @NotNull String name, @NotNull String help, double value) {
+        header(out, name, "gauge", help);
+        out.append(PREFIX).append(name).append(' ').append(value).append('\n');
+    }
+
+    private static void counter(@NotNull StringBuilder out, @NotNull String name, @NotNull String help, long value) {
+        header(out, name, "counter", help);
+        out.append(PREFIX).append(name).append(' ').append(value).append('\n');
+    }
+
+    /*
+     * =======
+     * Summary
+     * =======
+     */
+
+    /**
+     * @return human readable lines for the admin command, operations that were never called are left out
+     */
+    public @NotNull List<String> summary() {
+        List<String> lines = new ArrayList<>();
+        for (StorageMetrics.Operation op : metrics.operations()) {
+            long calls = op.calls();
+            if (calls == 0 && op.inFlight() == 0) continue;
+            lines.add(String.format(Locale.ROOT,
+                    "%s %s: %d calls, %.2f%% errors, %d in flight, avg %.2fms, p50 %sms, p99 %sms, max %.1fms",
+                    op.backend(), op.name(), calls, calls == 0 ? 0 : op.errors() * 100D / calls, op.inFlight(),
+                    op.averageMillis(), bound(op.percentileMillis(0.5)), bound(op.percentileMillis(0.99)), op.maxMillis()));
+        }
+
+        StorageExecutor.Stats stats = executor.stats();
+        lines.add(String.format(Locale.ROOT,
+                "Executor: %d queued, %d lanes, %d run, %d rejected, wait avg %.2fms max %.1fms",
+                stats.queueDepth(), stats.activeLanes(), stats.executed(), stats.rejected(),
+                stats.averageWaitMillis(), stats.maxWaitMillis()));
+
+        for (HikariDataSource pool : pools()) {
+            HikariPoolMXBean bean = pool.getHikariPoolMXBean();
+            if (bean == null) continue;
+            lines.add(String.format(Locale.ROOT, "Pool %s: %d/%d active, %d idle, %d waiting",
+                    pool.getPoolName(), bean.getActiveConnections(), pool.getMaximumPoolSize(),
+                    bean.getIdleConnections(), bean.getThreadsAwaitingConnection()));
+        }
+        return lines;
+    }
+
+    private static String bound(double millis) {
+        return "<=" + BigDecimal.valueOf(millis).stripTrailingZeros().toPlainString();
+    }
+
+}
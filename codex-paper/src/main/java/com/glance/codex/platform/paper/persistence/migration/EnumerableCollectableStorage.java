@@ -0,0 +1,66 @@
+package com.glance.codex.platform.paper.persistence.migration;
+
+import com.glance.codex.api.data.storage.CollectableStorage;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+
+/**
+ * A {@link CollectableStorage} that can list every player it holds data for, which is what allows it
+ * to be the source of a {@link StorageMigrationService} run
+ *
+ * @author Cammy
+ */
+public interface EnumerableCollectableStorage extends CollectableStorage {
+
+    /**
+     * Lists every player with stored data, in ascending {@link UUID#compareTo(UUID)} order
+     * <p>
+     * Blocking, only meant for maintenance tasks like migrations
+     *
+     * @return UUIDs of all stored players
+     */
+    @NotNull List<UUID> storedPlayers();
+
+    /**
+     * Lists the players of a one-file-per-player directory, files are expected to be named {@code <uuid><suffix>}
+     *
+     * @param dir directory to scan
+     * @param suffixes file name suffixes to accept, other files are skipped
+     * @return sorted, distinct UUIDs
+     */
+    static @NotNull List<UUID> playerFiles(@NotNull File dir, @NotNull String... suffixes) {
+        Set<UUID> players = new TreeSet<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir.toPath())) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                for (String suffix : suffixes) {
+                    if (!name.endsWith(suffix)) continue;
+                    try {
+                        players.add(UUID.fromString(name.substring(0, name.length() - suffix.length())));
+                    } catch (IllegalArgumentException ignored) {
+                        // not a player file
+                    }
+                    break;
+                }
+            }
+        } catch (NoSuchFileException e) {
+            return List.of();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to list player files in " + dir, e);
+        }
+        return new ArrayList<>(players);
+    }
+
+}
@@ -0,0 +1,122 @@
+package com.glance.codex.platform.paper.persistence.migration;
+
+import com.glance.codex.api.collectable.CollectableManager;
+import com.glance.codex.api.data.storage.CollectableStorage;
+import com.glance.codex.platform.paper.persistence.cache.SessionCachedCollectableStorage;
+import com.glance.codex.platform.paper.persistence.config.CollectableStorageConfig;
+import com.glance.codex.platform.paper.persistence.config.CollectableStorageProvider;
+import com.glance.codex.platform.paper.persistence.config.SqlBootstrap;
+import com.glance.codex.platform.paper.persistence.executor.StorageExecutor;
+import com.glance.codex.platform.paper.persistence.file.FlatFileCollectableStorage;
+import com.glance.codex.platform.paper.persistence.journal.JournalCollectableStorage;
+import com.glance.codex.platform.paper.persistence.mmap.MappedCollectableStorage;
+import com.glance.codex.platform.paper.persistence.sql.JdbiCollectableStorage;
+import com.google.inject.Inject;
+import com.google.inject.Provider;
+import com.google.inject.Singleton;
+import lombok.extern.slf4j.Slf4j;
+import org.bukkit.plugin.Plugin;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Opens any {@link CollectableStorageConfig.Backend} on demand, not just the configured one
+ * <p>
+ * The backend the server is running on is shared (through its session cache, so online players'
+ * unflushed progress is seen), every other backend gets a fresh instance which is closed again
+ * once the caller is done with it. SQL backends always connect through {@code sql.jdbcUrl}
+ *
+ * @author Cammy
+ */
+@Slf4j
+@Singleton
+public class StorageBackends {
+
+    private final Plugin plugin;
+    private final CollectableStorageConfig cfg;
+    private final CollectableStorageProvider provider;
+    private final Provider<CollectableManager> manager;
+    private final StorageExecutor executor;
+
+    @Inject
+    public StorageBackends(
+        @NotNull final Plugin plugin,
+        @NotNull final CollectableStorageConfig cfg,
+        @NotNull final CollectableStorageProvider provider,
+        @NotNull final Provider<CollectableManager> manager,
+        @NotNull final StorageExecutor executor
+    ) {
+        this.plugin = plugin;
+        this.cfg = cfg;
+        this.provider = provider;
+        this.manager = manager;
+        this.executor = executor;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the backend cannot be opened with the current config
+     */
+    public @NotNull Opened open(@NotNull CollectableStorageConfig.Backend backend) {
+        CollectableStorage live = provider.get();
+        if (backend == provider.activeBackend()) {
+            return new Opened(backend, live, provider.find(EnumerableCollectableStorage.class).orElse(null), true);
+        }
+
+        EnumerableCollectableStorage created = create(backend);
+        return new Opened(backend, created, created, false);
+    }
+
+    /**
+     * Writes online players' cached progress through to the live backend, if a session cache is in use
+     */
+    public void flushSessions() {
+        provider.find(SessionCachedCollectableStorage.class).ifPresent(cache -> cache.flushAll().join());
+    }
+
+    private @NotNull EnumerableCollectableStorage create(@NotNull CollectableStorageConfig.Backend backend) {
+        return switch (backend) {
+            case FLATFILE -> new FlatFileCollectableStorage(plugin, cfg, executor);
+            case JOURNAL -> new JournalCollectableStorage(plugin, cfg, executor);
+            case MMAP -> new MappedCollectableStorage(plugin, cfg, manager, executor);
+            case SQLITE, MYSQL -> {
+                SqlBootstrap.Dialect dialect = SqlBootstrap.Dialect.fromUrl(cfg.jdbcUrl());
+                boolean sqlite = dialect == SqlBootstrap.Dialect.SQLITE;
+                if (sqlite != (backend == CollectableStorageConfig.Backend.SQLITE)) {
+                    throw new IllegalArgumentException("sql.jdbcUrl points at a " + dialect +
+                            " database, set it to the " + backend + " database to use it in a migration");
+                }
+                yield new JdbiCollectableStorage(plugin, new SqlBootstrap(plugin, cfg), cfg, executor);
+            }
+        };
+    }
+
+    /**
+     * An opened backend
+     *
+     * @param backend which backend this is
+     * @param storage storage to read and write through
+     * @param players player listing of the underlying backend, null if it cannot list its players
+     * @param live whether this is the backend the server is running on
+     */
+    public record Opened(
+        @NotNull CollectableStorageConfig.Backend backend,
+        @NotNull CollectableStorage storage,
+        @Nullable EnumerableCollectableStorage players,
+        boolean live
+    ) implements AutoCloseable {
+
+        /**
+         * Closes the backend unless it is the live one
+         */
+        @Override
+        public void close() {
+            if (live || !(storage instanceof AutoCloseable closeable)) return;
+            try {
+                closeable.close();
+            } catch (Exception e) {
+                log.error("Failed to close {} storage", backend, e);
+            }
+        }
+    }
+
+}
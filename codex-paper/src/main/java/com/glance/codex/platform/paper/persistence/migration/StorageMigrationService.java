@@ -0,0 +1,544 @@
+package com.glance.codex.platform.paper.persistence.migration;
+
+import com.glance.codex.api.data.PlayerCollectables;
+import com.glance.codex.api.data.storage.CollectableStorage;
+import com.glance.codex.platform.paper.persistence.config.CollectableStorageConfig;
+import com.glance.codex.utils.lifecycle.Manager;
+import com.google.auto.service.AutoService;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import lombok.extern.slf4j.Slf4j;
+import org.bukkit.plugin.Plugin;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Copies every player from one storage backend to another, e.g. when moving from FLATFILE to SQL
+ * <p>
+ * Players are listed once through {@link EnumerableCollectableStorage#storedPlayers()}, then streamed in
+ * chunks of {@code migration.chunkSize} with {@link CollectableStorage#loadSnapshots} and
+ * {@link CollectableStorage#saveSnapshots}, keeping {@code migration.parallelChunks} chunks in flight on the
+ * storage executor. Nothing runs on the main thread
+ * <p>
+ * After each chunk the last player of the fully copied prefix is written to a checkpoint file, an
+ * interrupted migration (cancel, crash, restart) resumes from there unless started fresh. Writes are full
+ * replacements, so chunks copied twice are harmless. Once copied, a verify pass reads both sides again
+ * and compares them player by player
+ * <p>
+ * Progress made on the source while a migration runs is not followed, migrate while the server is quiet
+ * and check the verify result before switching {@code storage.backend}
+ *
+ * @author Cammy
+ */
+@Slf4j
+@Singleton
+@AutoService(Manager.class)
+public class StorageMigrationService implements Manager {
+
+    private static final String CHECKPOINT_DIR = "migration";
+    private static final String CURSOR_PROPERTY = "cursor";
+    private static final long REPORT_INTERVAL_MILLIS = 5000;
+    private static final int MISMATCH_SAMPLES = 10;
+    private static final long SHUTDOWN_WAIT_SECONDS = 30;
+
+    private final Plugin plugin;
+    private final CollectableStorageConfig cfg;
+    private final StorageBackends backends;
+
+    private final AtomicReference<Run> running = new AtomicReference<>();
+
+    @Inject
+    public StorageMigrationService(
+        @NotNull final Plugin plugin,
+        @NotNull final CollectableStorageConfig cfg,
+        @NotNull final StorageBackends backends
+    ) {
+        this.plugin = plugin;
+        this.cfg = cfg;
+        this.backends = backends;
+    }
+
+    /**
+     * Stops a running migration at the next chunk boundary so it can resume on the next start
+     */
+    @Override
+    public void onDisable() {
+        Run run = running.get();
+        if (run == null) return;
+
+        run.cancelled = true;
+        Thread thread = run.thread;
+        if (thread == null) return;
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(SHUTDOWN_WAIT_SECONDS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Copies every player from one backend to another, followed by a verify pass
+     *
+     * @param from source backend
+     * @param to target backend
+     * @param fresh ignore the checkpoint of an earlier interrupted run and start over
+     * @param listener receives progress periodically, called off the main thread
+     * @return future with the result, failing if the migration could not run or a chunk failed
+     */
+    public @NotNull CompletableFuture<Result> migrate(
+        @NotNull CollectableStorageConfig.Backend from,
+        @NotNull CollectableStorageConfig.Backend to,
+        boolean fresh,
+        @NotNull Consumer<Progress> listener
+    ) {
+        return start(new Run(Phase.COPY, from, to, fresh, listener));
+    }
+
+    /**
+     * Compares every player of one backend with another without writing anything
+     *
+     * @param listener receives progress periodically, called off the main thread
+     */
+    public @NotNull CompletableFuture<Result> verify(
+        @NotNull CollectableStorageConfig.Backend from,
+        @NotNull CollectableStorageConfig.Backend to,
+        @NotNull Consumer<Progress> listener
+    ) {
+        return start(new Run(Phase.VERIFY, from, to, false, listener));
+    }
+
+    /**
+     * @return progress of the running migration, or null if none is running
+     */
+    public @Nullable Progress status() {
+        Run run = running.get();
+        return run != null ? run.progress() : null;
+    }
+
+    /**
+     * Stops the running migration at the next chunk boundary
+     *
+     * @return false if none was running
+     */
+    public boolean cancel() {
+        Run run = running.get();
+        if (run == null) return false;
+        run.cancelled = true;
+        return true;
+    }
+
+    private CompletableFuture<Result> start(@NotNull Run run) {
+        if (run.from == run.to) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("Source and target are both " + run.from));
+        }
+        if (!running.compareAndSet(null, run)) {
+            return CompletableFuture.failedFuture(new IllegalStateException("A storage migration is already running"));
+        }
+
+        CompletableFuture<Result> result = new CompletableFuture<>();
+        run.thread = new Thread(() -> {
+            Result outcome = null;
+            Throwable failure = null;
+            try {
+                outcome = execute(run);
+            } catch (Throwable t) {
+                failure = t instanceof CompletionException && t.getCause() != null ? t.getCause() : t;
+                log.error("Storage migration {} -> {} failed", run.from, run.to, failure);
+            } finally {
+                running.compareAndSet(run, null);
+            }
+
+            if (failure != null) result.completeExceptionally(failure);
+            else result.complete(outcome);
+        }, "Codex-Migration");
+        run.thread.setDaemon(true);
+        run.thread.start();
+        return result;
+    }
+
+    /*
+     * =========
+     * Execution
+     * =========
+     */
+
+    private Result execute(@NotNull Run run) throws InterruptedException {
+        try (StorageBackends.Opened source = backends.open(run.from);
+             StorageBackends.Opened target = backends.open(run.to)) {
+            EnumerableCollectableStorage listing = source.players();
+            if (listing == null) throw new IllegalStateException(run.from + " storage cannot list its players");
+
+            // online players' progress may only exist in memory so far
+            if (source.live()) backends.flushSessions();
+
+            List<UUID> players = listing.storedPlayers();
+            Path checkpoint = checkpoint(run.from, run.to);
+            int resumed = 0;
+
+            final boolean copy = run.phase == Phase.COPY;
+            if (copy) {
+                if (run.fresh) deleteCheckpoint(checkpoint);
+                else resumed = resumeIndex(players, checkpoint);
+                if (resumed > 0) log.info("Resuming storage migration {} -> {} after {} players", run.from, run.to, resumed);
+
+                run.begin(Phase.COPY, resumed, players.size());
+                boolean copied = process(run, players, resumed, chunk -> source.storage().loadSnapshots(chunk)
+                        .thenCompose(target.storage()::saveSnapshots), checkpoint);
+                if (!copied) return run.result(resumed, true);
+                report(run);
+            }
+
+            run.begin(Phase.VERIFY, 0, players.size());
+            boolean verified = process(run, players, 0, chunk -> source.storage().loadSnapshots(chunk)
+                    .thenCombine(target.storage().loadSnapshots(chunk), (expected, actual) -> {
+                        compare(run, chunk, expected, actual);
+                        return null;
+                    }), null);
+            report(run);
+
+            // kept until verified, so a migration cancelled while verifying goes straight back to verifying
+            if (copy && verified) deleteCheckpoint(checkpoint);
+            return run.result(resumed, !verified);
+        }
+    }
+
+    /**
+     * Runs the task over {@code players[start..]} in chunks, keeping the configured number of chunks in flight
+     *
+     * @param checkpoint file to record the copied prefix in, or null to not record progress
+     * @return false if the run was cancelled
+     */
+    private boolean process(
+        @NotNull Run run,
+        @NotNull List<UUID> players,
+        int start,
+        @NotNull Function<List<UUID>, CompletableFuture<?>> task,
+        @Nullable Path checkpoint
+    ) throws InterruptedException {
+        final int chunkSize = Math.max(1, cfg.migrationChunkSize());
+        final int parallel = Math.max(1, cfg.migrationParallelChunks());
+        final int chunks = (players.size() - start + chunkSize - 1) / chunkSize;
+
+        Semaphore permits = new Semaphore(parallel);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Watermark watermark = new Watermark(chunks);
+        long reportedAt = System.currentTimeMillis();
+
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            while (!permits.tryAcquire(REPORT_INTERVAL_MILLIS, TimeUnit.MILLISECONDS)) report(run);
+            if (run.cancelled || failure.get() != null) {
+                permits.release();
+                break;
+            }
+            if (System.currentTimeMillis() - reportedAt >= REPORT_INTERVAL_MILLIS) {
+                report(run);
+                reportedAt = System.currentTimeMillis();
+            }
+
+            final int index = chunk;
+            final int from = start + chunk * chunkSize;
+            final List<UUID> ids = players.subList(from, Math.min(players.size(), from + chunkSize));
+
+            CompletableFuture<?> future;
+            try {
+                future = task.apply(ids);
+            } catch (Throwable t) {
+                future = CompletableFuture.failedFuture(t);
+            }
+
+            future.whenComplete((v, ex) -> {
+                try {
+                    if (ex != null) {
+                        failure.compareAndSet(null, ex);
+                        return;
+                    }
+                    run.processed.addAndGet(ids.size());
+                    if (checkpoint != null) {
+                        watermark.complete(index, copied ->
+                                writeCheckpoint(checkpoint, players.get(start + Math.min(copied * chunkSize, players.size() - start) - 1)));
+                    }
+                } catch (Throwable t) {
+                    failure.compareAndSet(null, t);
+                } finally {
+                    permits.release();
+                }
+            });
+        }
+
+        // drain whatever is still in flight
+        while (!permits.tryAcquire(parallel, REPORT_INTERVAL_MILLIS, TimeUnit.MILLISECONDS)) report(run);
+
+        Throwable ex = failure.get();
+        if (ex != null) throw new CompletionException(ex);
+        return !run.cancelled;
+    }
+
+    private static void compare(
+        @NotNull Run run,
+        @NotNull List<UUID> chunk,
+        @NotNull Map<UUID, PlayerCollectables> expected,
+        @NotNull Map<UUID, PlayerCollectables> actual
+    ) {
+        for (UUID playerId : chunk) {
+            PlayerCollectables source = expected.getOrDefault(playerId, new PlayerCollectables());
+            PlayerCollectables target = actual.getOrDefault(playerId, new PlayerCollectables());
+            if (matches(source, target)) continue;
+
+            run.mismatched.incrementAndGet();
+            synchronized (run.samples) {
+                if (run.samples.size() < MISMATCH_SAMPLES) run.samples.add(playerId);
+            }
+        }
+    }
+
+    /**
+     * Unlocks must be identical, timestamps only where the source has one, as some backends stamp
+     * unlocks that have no first-unlock time with the time they were written
+     */
+    static boolean matches(@NotNull PlayerCollectables source, @NotNull PlayerCollectables target) {
+        Set<String> namespaces = new HashSet<>(source.unlocks().keySet());
+        namespaces.addAll(target.unlocks().keySet());
+        for (String ns : namespaces) {
+            if (!source.unlocks().getOrDefault(ns, Set.of()).equals(target.unlocks().getOrDefault(ns, Set.of()))) return false;
+        }
+        return timesMatch(source.firstUnlockedAt(), target.firstUnlockedAt())
+                && timesMatch(source.lastReplayedAt(), target.lastReplayedAt());
+    }
+
+    private static boolean timesMatch(@NotNull Map<String, Map<String, Long>> source, @NotNull Map<String, Map<String, Long>> target) {
+        for (Map.Entry<String, Map<String, Long>> ns : source.entrySet()) {
+            Map<String, Long> times = target.getOrDefault(ns.getKey(), Map.of());
+            for (Map.Entry<String, Long> e : ns.getValue().entrySet()) {
+                if (!e.getValue().equals(times.get(e.getKey()))) return false;
+            }
+        }
+        return true;
+    }
+
+    private static void report(@NotNull Run run) {
+        Progress progress = run.progress();
+        log.info(progress.describe());
+        try {
+            run.listener.accept(progress);
+        } catch (Throwable t) {
+            log.warn("Storage migration progress listener failed", t);
+        }
+    }
+
+    /*
+     * ===========
+     * Checkpoints
+     * ===========
+     */
+
+    private Path checkpoint(@NotNull CollectableStorageConfig.Backend from, @NotNull CollectableStorageConfig.Backend to) {
+        return plugin.getDataFolder().toPath()
+                .resolve(CHECKPOINT_DIR)
+                .resolve(from.name().toLowerCase() + "-to-" + to.name().toLowerCase() + ".properties");
+    }
+
+    /**
+     * @return index of the first player after the checkpoint, 0 without one
+     */
+    private static int resumeIndex(@NotNull List<UUID> players, @NotNull Path checkpoint) {
+        if (!Files.exists(checkpoint)) return 0;
+
+        Properties props = new Properties();
+        try (Reader reader = Files.newBufferedReader(checkpoint, StandardCharsets.UTF_8)) {
+            props.load(reader);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read migration checkpoint " + checkpoint, e);
+        }
+
+        String cursor = props.getProperty(CURSOR_PROPERTY);
+        if (cursor == null) return 0;
+        int index = Collections.binarySearch(players, UUID.fromString(cursor));
+        return index >= 0 ? index + 1 : -(index + 1);
+    }
+
+    private static void writeCheckpoint(@NotNull Path checkpoint, @NotNull UUID cursor) {
+        Properties props = new Properties();
+        props.setProperty(CURSOR_PROPERTY, cursor.toString());
+
+        Path temp = checkpoint.resolveSibling(checkpoint.getFileName() + ".tmp");
+        try {
+            Files.createDirectories(checkpoint.getParent());
+            try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                props.store(writer, "Last player of the copied prefix, delete to start over");
+            }
+            try {
+                Files.move(temp, checkpoint, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, checkpoint, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write migration checkpoint " + checkpoint, e);
+        }
+    }
+
+    private static void deleteCheckpoint(@NotNull Path checkpoint) {
+        try {
+            Files.deleteIfExists(checkpoint);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to delete migration checkpoint " + checkpoint, e);
+        }
+    }
+
+    /**
+     * Tracks which chunks finished, chunks complete out of order but only a gap-free prefix may be checkpointed
+     */
+    private static final class Watermark {
+        private final boolean[] done;
+        private int next;
+
+        Watermark(int chunks) {
+            this.done = new boolean[chunks];
+        }
+
+        /**
+         * Marks the chunk done and, if the prefix grew, hands its new length (in chunks) to the writer,
+         * under the lock so checkpoints are written in order
+         */
+        synchronized void complete(int chunk, @NotNull Consumer<Integer> writer) {
+            done[chunk] = true;
+            int before = next;
+            while (next < done.length && done[next]) next++;
+            if (next > before) writer.accept(next);
+        }
+    }
+
+    /*
+     * =====
+     * State
+     * =====
+     */
+
+    public enum Phase { COPY, VERIFY }
+
+    private static final class Run {
+        final CollectableStorageConfig.Backend from;
+        final CollectableStorageConfig.Backend to;
+        final boolean fresh;
+        final Consumer<Progress> listener;
+        final long startedAt = System.currentTimeMillis();
+
+        final AtomicLong processed = new AtomicLong();
+        final AtomicLong mismatched = new AtomicLong();
+        final List<UUID> samples = new ArrayList<>();
+
+        volatile Phase phase;
+        volatile long total;
+        volatile long phaseStartedAt = startedAt;
+        volatile long phaseBaseline;
+        volatile boolean cancelled;
+        volatile Thread thread;
+
+        Run(
+            @NotNull Phase phase,
+            @NotNull CollectableStorageConfig.Backend from,
+            @NotNull CollectableStorageConfig.Backend to,
+            boolean fresh,
+            @NotNull Consumer<Progress> listener
+        ) {
+            this.phase = phase;
+            this.from = from;
+            this.to = to;
+            this.fresh = fresh;
+            this.listener = listener;
+        }
+
+        void begin(@NotNull Phase phase, long done, long total) {
+            this.phase = phase;
+            this.total = total;
+            this.processed.set(done);
+            this.phaseBaseline = done;
+            this.phaseStartedAt = System.currentTimeMillis();
+        }
+
+        Progress progress() {
+            long elapsed = Math.max(1, System.currentTimeMillis() - phaseStartedAt);
+            long done = processed.get();
+            double perSecond = (done - phaseBaseline) * 1000.0 / elapsed;
+            return new Progress(phase, from, to, done, total, mismatched.get(), perSecond);
+        }
+
+        Result result(long resumed, boolean cancelled) {
+            synchronized (samples) {
+                return new Result(from, to, total, resumed, mismatched.get(), List.copyOf(samples),
+                        System.currentTimeMillis() - startedAt, cancelled);
+            }
+        }
+    }
+
+    /**
+     * Snapshot of a running migration
+     *
+     * @param processed players done in the current phase
+     * @param mismatched players that differ between source and target so far (verify phase)
+     * @param perSecond players per second since the phase started
+     */
+    public record Progress(
+        @NotNull Phase phase,
+        @NotNull CollectableStorageConfig.Backend from,
+        @NotNull CollectableStorageConfig.Backend to,
+        long processed,
+        long total,
+        long mismatched,
+        double perSecond
+    ) {
+        public @NotNull String describe() {
+            double percent = total > 0 ? processed * 100.0 / total : 100.0;
+            String eta = perSecond > 0 ? ((long) ((total - processed) / perSecond)) + "s" : "?";
+            return String.format("Migration %s -> %s [%s] %d/%d players (%.1f%%), %.0f/s, ETA %s%s",
+                    from, to, phase, processed, total, percent, perSecond, eta,
+                    mismatched > 0 ? ", " + mismatched + " mismatched" : "");
+        }
+    }
+
+    /**
+     * Outcome of a migration or verify run
+     *
+     * @param players players found in the source
+     * @param resumed players skipped as an earlier run had already copied them
+     * @param mismatched players that differ between source and target after the verify pass
+     * @param mismatchSamples the first few mismatched players
+     * @param cancelled true if the run was cancelled before finishing
+     */
+    public record Result(
+        @NotNull CollectableStorageConfig.Backend from,
+        @NotNull CollectableStorageConfig.Backend to,
+        long players,
+        long resumed,
+        long mismatched,
+        @NotNull List<UUID> mismatchSamples,
+        long elapsedMillis,
+        boolean cancelled
+    ) {}
+
+}
@@ -0,0 +1,803 @@
+package com.glance.codex.platform.paper.persistence.mmap;
+
+import com.glance.codex.api.collectable.CollectableManager;
+import com.glance.codex.api.collectable.CollectableRepository;
+import com.glance.codex.api.data.PlayerCollectables;
+import com.glance.codex.api.data.storage.UnlockResult;
+import com.glance.codex.platform.paper.persistence.config.CollectableStorageConfig;
+import com.glance.codex.platform.paper.persistence.executor.StorageExecutor;
+import com.glance.codex.platform.paper.persistence.migration.EnumerableCollectableStorage;
+import com.google.inject.Inject;
+import com.google.inject.Provider;
+import com.google.inject.Singleton;
+import lombok.extern.slf4j.Slf4j;
+import org.bukkit.NamespacedKey;
+import org.bukkit.plugin.Plugin;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * Memory-mapped backend with one fixed-width record per player
+ * <p>
+ * Every {@code namespace:id} has a bit position (see {@link MappedLayout}) and a record holds the
+ * player's UUID, an unlock bitmap and a link to their timestamps. Timestamps are kept per unlock in
+ * {@link MappedTimes} rather than per position, so a record costs little more than one bit per key.
+ * The record file is mapped in segments, so {@link #isUnlocked} is a single bit probe and a write
+ * only dirties the pages of the words it changes, which the OS flushes on its own schedule
+ * <p>
+ * Records are sized from the registered repositories' entry counts with some headroom. Once more keys
+ * exist than a record has room for, every record is copied to a new, wider file
+ * ({@code records-<capacity>.dat}). The header of that file is written last, so a copy interrupted by
+ * a crash is recognised on startup and discarded in favour of the previous file. Files of another format
+ * version are renamed aside rather than deleted
+ * <p>
+ * The UUID to slot index is rebuilt from the records on startup, slots are never freed.
+ * Data survives a crash of the server process, only an OS crash or power loss can lose the most
+ * recent writes
+ *
+ * <p><b>Threading note:</b> per-player ordering comes from the {@link StorageExecutor} lanes, a
+ * read/write lock only keeps operations out while records are being widened</p>
+ *
+ * @author Cammy
+ */
+@Slf4j
+@Singleton
+public class MappedCollectableStorage implements EnumerableCollectableStorage, AutoCloseable {
+
+    private static final int MAGIC = 0x43584D4D; // "CXMM"
+    private static final int VERSION = 2;
+    private static final int HEADER_BYTES = 64;
+    private static final int SEGMENT_BYTES = 64 * 1024 * 1024;
+    private static final int MIN_CAPACITY = 64;
+
+    private static final String LAYOUT_FILE = "keys.txt";
+    private static final String TIMES_FILE = "times.dat";
+    private static final String RECORDS_PREFIX = "records-";
+    private static final String RECORDS_SUFFIX = ".dat";
+    private static final String OTHER_VERSION_SUFFIX = ".other";
+
+    /** Record layout, the UUID then the link to the timestamps (an int padded to keep the bitmap aligned) and the bitmap */
+    private static final int UUID_BYTES = 16;
+    private static final int LINK_BYTES = 8;
+    private static final int BITMAP_OFFSET = UUID_BYTES + LINK_BYTES;
+    /** {@link #readCapacity} result for a file of another format version */
+    private static final int OTHER_VERSION = -2;
+    /** Stored timestamp meaning "none" */
+    private static final long NO_TIME = 0L;
+
+    private final File baseDir;
+    private final MappedLayout layout;
+    private final MappedTimes times;
+    private final Provider<CollectableManager> manager;
+    private final StorageExecutor executor;
+
+    private final ReadWriteLock geometry = new ReentrantReadWriteLock();
+    private final Map<UUID, Integer> slots = new ConcurrentHashMap<>();
+
+    /* guarded by geometry, segments also grow under the slots monitor */
+    private File dataFile;
+    private FileChannel channel;
+    private int capacity;
+    private int recordSize;
+    private int recordsPerSegment;
+    private volatile MappedByteBuffer[] segments;
+    private int nextSlot;
+
+    @Inject
+    public MappedCollectableStorage(
+        @NotNull Plugin plugin,
+        @NotNull CollectableStorageConfig config,
+        @NotNull Provider<CollectableManager> manager,
+        @NotNull StorageExecutor executor
+    ) {
+        this.manager = manager;
+        this.executor = executor;
+        this.baseDir = new File(plugin.getDataFolder(), config.mmapDir());
+        this.baseDir.mkdirs();
+
+        try {
+            this.layout = new MappedLayout(new File(baseDir, LAYOUT_FILE));
+            this.times = new MappedTimes(new File(baseDir, TIMES_FILE));
+            open();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open mmap storage in " + baseDir, e);
+        }
+        log.info("Mapped {} player records ({} keys, {} bytes per record)", slots.size(), layout.size(), recordSize);
+    }
+
+    /**
+     * Forces dirty pages to disk and closes the record file
+     */
+    @Override
+    public void close() {
+        geometry.writeLock().lock();
+        try {
+            for (MappedByteBuffer segment : segments) segment.force();
+            channel.close();
+            times.close();
+        } catch (IOException e) {
+            log.error("Failed to close mmap storage", e);
+        } finally {
+            geometry.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Every player with a record, including cleared ones as slots are never freed
+     */
+    @Override
+    public @NotNull List<UUID> storedPlayers() {
+        List<UUID> players = new ArrayList<>(slots.keySet());
+        Collections.sort(players);
+        return players;
+    }
+
+    /*
+     * =====
+     * Files
+     * =====
+     */
+
+    /**
+     * Opens the widest complete record file, or creates one, and rebuilds the slot index
+     */
+    private void open() throws IOException {
+        File chosen = null;
+        int chosenCapacity = -1;
+
+        File[] candidates = baseDir.listFiles((dir, name) -> name.startsWith(RECORDS_PREFIX) && name.endsWith(RECORDS_SUFFIX));
+        if (candidates != null) {
+            List<File> stale = new ArrayList<>();
+            for (File candidate : candidates) {
+                int candidateCapacity = readCapacity(candidate);
+                if (candidateCapacity == OTHER_VERSION) {
+                    // renamed so a file of this version can never be written over it
+                    File aside = new File(baseDir, candidate.getName() + OTHER_VERSION_SUFFIX);
+                    if (candidate.renameTo(aside)) log.warn("Moved mmap record file of another format version to {}", aside);
+                    else log.warn("Could not move aside mmap record file {} of another format version", candidate);
+                    continue;
+                }
+                stale.add(candidate);
+                if (candidateCapacity > chosenCapacity) {
+                    chosen = candidate;
+                    chosenCapacity = candidateCapacity;
+                }
+            }
+            // incomplete copies and files already superseded by a wider one
+            for (File candidate : stale) {
+                if (candidate != chosen && !candidate.delete()) {
+                    log.warn("Could not delete stale mmap record file {}", candidate);
+                }
+            }
+        }
+
+        if (chosen == null) {
+            int initial = capacityFor(Math.max(layout.size(), repositoryKeys().size()));
+            chosen = recordsFile(initial);
+            try (FileChannel created = FileChannel.open(chosen.toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                writeHeader(created, initial);
+            }
+            chosenCapacity = initial;
+        }
+
+        this.dataFile = chosen;
+        this.channel = FileChannel.open(chosen.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+        setGeometry(chosenCapacity);
+        this.segments = mapExisting(channel);
+        scanSlots();
+    }
+
+    private File recordsFile(int capacity) {
+        return new File(baseDir, RECORDS_PREFIX + capacity + RECORDS_SUFFIX);
+    }
+
+    /**
+     * @return the capacity in the header, -1 if the file is not a complete record file or
+     * {@link #OTHER_VERSION} if it was written in another format
+     */
+    private static int readCapacity(@NotNull File file) {
+        try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(16);
+            if (ch.read(header, 0) < 16) return -1;
+            header.flip();
+            if (header.getInt() != MAGIC) return -1;
+            if (header.getInt() != VERSION) return OTHER_VERSION;
+            int capacity = header.getInt();
+            return header.getInt() == recordSize(capacity) ? capacity : -1;
+        } catch (IOException e) {
+            log.warn("Could not read mmap record file {}", file, e);
+            return -1;
+        }
+    }
+
+    private static void writeHeader(@NotNull FileChannel ch, int capacity) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        header.putInt(MAGIC).putInt(VERSION).putInt(capacity).putInt(recordSize(capacity));
+        header.clear();
+        ch.write(header, 0);
+        ch.force(true);
+    }
+
+    private static int recordSize(int capacity) {
+        return BITMAP_OFFSET + capacity / 8;
+    }
+
+    /**
+     * @return capacity with headroom for the given key count, in whole bitmap words
+     */
+    private static int capacityFor(int keys) {
+        int wanted = Math.max(MIN_CAPACITY, keys + keys / 2);
+        return (wanted + 63) & ~63;
+    }
+
+    private static int recordsPerSegment(int recordSize) {
+        return Math.max(1, SEGMENT_BYTES / recordSize);
+    }
+
+    private void setGeometry(int capacity) {
+        this.capacity = capacity;
+        this.recordSize = recordSize(capacity);
+        this.recordsPerSegment = recordsPerSegment(recordSize);
+    }
+
+    private long segmentBytes() {
+        return (long) recordsPerSegment * recordSize;
+    }
+
+    private MappedByteBuffer[] mapExisting(@NotNull FileChannel ch) throws IOException {
+        long data = Math.max(0, ch.size() - HEADER_BYTES);
+        int count = (int) ((data + segmentBytes() - 1) / segmentBytes());
+        MappedByteBuffer[] mapped = new MappedByteBuffer[count];
+        for (int i = 0; i < count; i++) mapped[i] = map(ch, i);
+        return mapped;
+    }
+
+    private MappedByteBuffer map(@NotNull FileChannel ch, int segment) throws IOException {
+        return map(ch, segment, segmentBytes());
+    }
+
+    private static MappedByteBuffer map(@NotNull FileChannel ch, int segment, long segmentBytes) throws IOException {
+        // mapping past the end grows the file
+        return ch.map(FileChannel.MapMode.READ_WRITE, HEADER_BYTES + segment * segmentBytes, segmentBytes);
+    }
+
+    private void scanSlots() {
+        slots.clear();
+        nextSlot = 0;
+        List<PlayerRecord> records = new ArrayList<>();
+        int total = segments.length * recordsPerSegment;
+        for (int slot = 0; slot < total; slot++) {
+            MappedByteBuffer segment = segments[slot / recordsPerSegment];
+            int base = (slot % recordsPerSegment) * recordSize;
+            long msb = segment.getLong(base);
+            long lsb = segment.getLong(base + 8);
+            if (msb == 0 && lsb == 0) continue;
+
+            slots.put(new UUID(msb, lsb), slot);
+            records.add(new PlayerRecord(segment, base, capacity, times));
+            nextSlot = slot + 1;
+        }
+        times.reclaim(records);
+    }
+
+    /*
+     * ======
+     * Layout
+     * ======
+     */
+
+    private List<MappedLayout.Key> repositoryKeys() {
+        List<MappedLayout.Key> keys = new ArrayList<>();
+        for (CollectableRepository repo : manager.get().getRepositories()) {
+            for (String id : repo.entries().keySet()) keys.add(new MappedLayout.Key(repo.namespace(), id));
+        }
+        return keys;
+    }
+
+    /**
+     * Resolves positions for writing, adding unknown keys (together with every registered repository entry,
+     * so records are widened once rather than key by key) and widening records when needed
+     * <p>
+     * Must be called without holding the geometry lock
+     */
+    private int[] writablePositions(@NotNull List<MappedLayout.Key> keys) {
+        int[] positions = new int[keys.size()];
+        List<MappedLayout.Key> missing = null;
+        for (int i = 0; i < keys.size(); i++) {
+            MappedLayout.Key key = keys.get(i);
+            positions[i] = layout.find(key.namespace(), key.id());
+            if (positions[i] < 0) {
+                if (missing == null) missing = new ArrayList<>(repositoryKeys());
+                missing.add(key);
+            }
+        }
+        if (missing != null) {
+            layout.addAll(missing);
+            for (int i = 0; i < keys.size(); i++) {
+                if (positions[i] < 0) positions[i] = layout.find(keys.get(i).namespace(), keys.get(i).id());
+            }
+        }
+
+        // another thread may have added keys without widening yet, so check found positions too
+        int highest = -1;
+        for (int position : positions) highest = Math.max(highest, position);
+        if (highest >= capacity()) widen(capacityFor(layout.size()));
+        return positions;
+    }
+
+    private int writablePosition(@NotNull String namespace, @NotNull String id) {
+        return writablePositions(List.of(new MappedLayout.Key(namespace, id)))[0];
+    }
+
+    private int capacity() {
+        geometry.readLock().lock();
+        try {
+            return capacity;
+        } finally {
+            geometry.readLock().unlock();
+        }
+    }
+
+    /**
+     * Copies every record into a new file with room for {@code newCapacity} keys and switches to it
+     */
+    private void widen(int newCapacity) {
+        geometry.writeLock().lock();
+        try {
+            if (newCapacity <= capacity) return;
+
+            final int oldCapacity = capacity;
+            final int oldRecordSize = recordSize;
+            final int oldPerSegment = recordsPerSegment;
+            final MappedByteBuffer[] oldSegments = segments;
+            final FileChannel oldChannel = channel;
+            final File oldFile = dataFile;
+
+            // the fields keep describing the old file until the copy is complete
+            final int newRecordSize = recordSize(newCapacity);
+            final int newPerSegment = recordsPerSegment(newRecordSize);
+
+            File target = recordsFile(newCapacity);
+            FileChannel widened = FileChannel.open(target.toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+            MappedByteBuffer[] mapped;
+            try {
+                mapped = copyRecords(widened, oldSegments, oldPerSegment, oldRecordSize, oldCapacity, newPerSegment, newRecordSize);
+                // the header marks the copy complete
+                writeHeader(widened, newCapacity);
+            } catch (IOException | RuntimeException e) {
+                try {
+                    widened.close();
+                } catch (IOException ignored) {}
+                // may fail while the mapping is still alive on some platforms, startup discards it as incomplete
+                if (!target.delete()) log.debug("Partial mmap record file {} will be removed on next startup", target);
+                throw e;
+            }
+
+            setGeometry(newCapacity);
+            this.dataFile = target;
+            this.channel = widened;
+            this.segments = mapped;
+            oldChannel.close();
+            // may fail while the old mapping is still alive on some platforms, startup retries
+            if (!oldFile.delete()) log.debug("Old mmap record file {} will be removed on next startup", oldFile);
+
+            log.info("Widened mmap records from {} to {} keys", oldCapacity, newCapacity);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to widen mmap records", e);
+        } finally {
+            geometry.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Copies every record into the new file's layout and forces it to disk, the header is left to the caller
+     */
+    private MappedByteBuffer[] copyRecords(
+        @NotNull FileChannel widened,
+        @NotNull MappedByteBuffer[] oldSegments, int oldPerSegment, int oldRecordSize, int oldCapacity,
+        int newPerSegment, int newRecordSize
+    ) throws IOException {
+        final long newSegmentBytes = (long) newPerSegment * newRecordSize;
+        int needed = (nextSlot + newPerSegment - 1) / newPerSegment;
+        MappedByteBuffer[] mapped = new MappedByteBuffer[needed];
+        for (int i = 0; i < needed; i++) mapped[i] = map(widened, i, newSegmentBytes);
+
+        final int oldWords = oldCapacity / 64;
+        for (int slot = 0; slot < nextSlot; slot++) {
+            MappedByteBuffer from = oldSegments[slot / oldPerSegment];
+            int src = (slot % oldPerSegment) * oldRecordSize;
+            MappedByteBuffer to = mapped[slot / newPerSegment];
+            int dst = (slot % newPerSegment) * newRecordSize;
+
+            // UUID and timestamp link, then the bitmap, timestamps are keyed by position and stay where they are
+            for (int offset = 0; offset < BITMAP_OFFSET; offset += 8) {
+                to.putLong(dst + offset, from.getLong(src + offset));
+            }
+            for (int w = 0; w < oldWords; w++) {
+                to.putLong(dst + BITMAP_OFFSET + w * 8, from.getLong(src + BITMAP_OFFSET + w * 8));
+            }
+        }
+
+        for (MappedByteBuffer segment : mapped) segment.force();
+        return mapped;
+    }
+
+    /*
+     * =======
+     * Records
+     * =======
+     */
+
+    private <T> T read(@NotNull Supplier<T> action) {
+        geometry.readLock().lock();
+        try {
+            return action.get();
+        } finally {
+            geometry.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the player's slot, allocating one if {@code create}, or -1
+     */
+    private int slot(@NotNull UUID playerId, boolean create) {
+        Integer slot = slots.get(playerId);
+        if (slot != null) return slot;
+        if (!create) return -1;
+
+        synchronized (slots) {
+            slot = slots.get(playerId);
+            if (slot != null) return slot;
+
+            int allocated = nextSlot;
+            int segment = allocated / recordsPerSegment;
+            if (segment >= segments.length) {
+                MappedByteBuffer[] grown = Arrays.copyOf(segments, segment + 1);
+                try {
+                    grown[segment] = map(channel, segment);
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Failed to grow mmap record file", e);
+                }
+                segments = grown;
+            }
+
+            MappedByteBuffer buffer = segments[segment];
+            int base = (allocated % recordsPerSegment) * recordSize;
+            buffer.putLong(base, playerId.getMostSignificantBits());
+            buffer.putLong(base + 8, playerId.getLeastSignificantBits());
+
+            nextSlot = allocated + 1;
+            slots.put(playerId, allocated);
+            return allocated;
+        }
+    }
+
+    private @Nullable PlayerRecord record(@NotNull UUID playerId, boolean create) {
+        int slot = slot(playerId, create);
+        if (slot < 0) return null;
+        return new PlayerRecord(segments[slot / recordsPerSegment], (slot % recordsPerSegment) * recordSize, capacity, times);
+    }
+
+    /**
+     * Accessors for one record, only valid while the geometry read lock is held
+     */
+    private record PlayerRecord(MappedByteBuffer buffer, int base, int capacity, MappedTimes times) implements MappedTimes.Owner {
+
+        private int word(int position) {
+            return base + BITMAP_OFFSET + (position >>> 6) * 8;
+        }
+
+        /** stored plus one, so a new record reads as {@link MappedTimes#NONE} */
+        @Override
+        public int link() {
+            return buffer.getInt(base + UUID_BYTES) - 1;
+        }
+
+        @Override
+        public void link(int entry) {
+            buffer.putInt(base + UUID_BYTES, entry + 1);
+        }
+
+        boolean has(int position) {
+            return position >= 0 && position < capacity
+                    && (buffer.getLong(word(position)) & (1L << position)) != 0;
+        }
+
+        void set(int position) {
+            int word = word(position);
+            buffer.putLong(word, buffer.getLong(word) | (1L << position));
+        }
+
+        void clear(int position) {
+            int word = word(position);
+            buffer.putLong(word, buffer.getLong(word) & ~(1L << position));
+            times.remove(this, position);
+        }
+
+        void first(int position, long when) {
+            int entry = times.find(this, position);
+            if (entry == MappedTimes.NONE) times.add(this, position, when, NO_TIME);
+            else times.first(entry, when);
+        }
+
+        void replay(int position, long when) {
+            int entry = times.find(this, position);
+            if (entry == MappedTimes.NONE) times.add(this, position, NO_TIME, when);
+            else times.replay(entry, when);
+        }
+
+        /**
+         * Sets both timestamps, writing only what differs and dropping the entry once neither is set
+         *
+         * @param entry the position's entry as found by the caller, or {@link MappedTimes#NONE}
+         */
+        void times(int position, int entry, long first, long replay) {
+            if (entry == MappedTimes.NONE) {
+                if (first != NO_TIME || replay != NO_TIME) times.add(this, position, first, replay);
+            } else if (first == NO_TIME && replay == NO_TIME) {
+                times.remove(this, position);
+            } else {
+                if (times.first(entry) != first) times.first(entry, first);
+                if (times.replay(entry) != replay) times.replay(entry, replay);
+            }
+        }
+
+        long bits(int word) {
+            return buffer.getLong(base + BITMAP_OFFSET + word * 8);
+        }
+
+        void clearAll() {
+            int size = recordSize(capacity);
+            for (int offset = BITMAP_OFFSET; offset < size; offset += 8) buffer.putLong(base + offset, 0L);
+            times.removeAll(this);
+        }
+    }
+
+    private static @Nullable Long timestamp(long stored) {
+        return stored == NO_TIME ? null : stored;
+    }
+
+    /*
+     * ==================
+     * CollectableStorage
+     * ==================
+     */
+
+    @Override
+    public CompletableFuture<Set<String>> loadUnlockedIds(@NotNull UUID playerId, @NotNull String namespace) {
+        return executor.submit(playerId, () -> read(() -> {
+            PlayerRecord record = record(playerId, false);
+            if (record == null) return Set.of();
+
+            Set<String> ids = new HashSet<>();
+            for (int position : layout.namespace(namespace)) {
+                if (record.has(position)) ids.add(layout.key(position).id());
+            }
+            return ids;
+        }));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> putUnlock(@NotNull UUID playerId, @NotNull String namespace, @NotNull String id, long whenMillis) {
+        return executor.submit(playerId, () -> {
+            int position = writablePosition(namespace, id);
+            return read(() -> {
+                PlayerRecord record = record(playerId, true);
+                if (record.has(position)) return false;
+                record.set(position);
+                record.first(position, whenMillis);
+                return true;
+            });
+        });
+    }
+
+    @Override
+    public CompletableFuture<UnlockResult> unlockOrReplay(
+        @NotNull UUID playerId, @NotNull String namespace,
+        @NotNull String id, long whenMillis, boolean recordReplay
+    ) {
+        return executor.submit(playerId, () -> {
+            int position = writablePosition(namespace, id);
+            return read(() -> {
+                PlayerRecord record = record(playerId, true);
+                if (!record.has(position)) {
+                    record.set(position);
+                    record.first(position, whenMillis);
+                    return UnlockResult.UNLOCKED;
+                }
+                if (recordReplay) record.replay(position, whenMillis);
+                return UnlockResult.REPLAYED;
+            });
+        });
+    }
+
+    @Override
+    public CompletableFuture<Map<NamespacedKey, UnlockResult>> unlockOrReplayAll(
+        @NotNull UUID playerId, @NotNull Collection<NamespacedKey> keys,
+        long whenMillis, @NotNull Set<NamespacedKey> recordReplays
+    ) {
+        return executor.submit(playerId, () -> {
+            List<NamespacedKey> unique = new ArrayList<>(new LinkedHashSet<>(keys));
+            List<MappedLayout.Key> layoutKeys = new ArrayList<>(unique.size());
+            for (NamespacedKey key : unique) layoutKeys.add(new MappedLayout.Key(key.getNamespace(), key.getKey()));
+            // at most one layout growth for the whole batch
+            int[] positions = writablePositions(layoutKeys);
+
+            return read(() -> {
+                PlayerRecord record = record(playerId, true);
+                Map<NamespacedKey, UnlockResult> results = new LinkedHashMap<>();
+                for (int i = 0; i < unique.size(); i++) {
+                    NamespacedKey key = unique.get(i);
+                    int position = positions[i];
+                    if (!record.has(position)) {
+                        record.set(position);
+                        record.first(position, whenMillis);
+                        results.put(key, UnlockResult.UNLOCKED);
+                        continue;
+                    }
+                    if (recordReplays.contains(key)) record.replay(position, whenMillis);
+                    results.put(key, UnlockResult.REPLAYED);
+                }
+                return results;
+            });
+        });
+    }
+
+    @Override
+    public CompletableFuture<Void> recordReplay(@NotNull UUID playerId, @NotNull String namespace, @NotNull String id, long whenMillis) {
+        return executor.run(playerId, () -> read(() -> {
+            PlayerRecord record = record(playerId, false);
+            int position = layout.find(namespace, id);
+            if (record != null && record.has(position)) record.replay(position, whenMillis);
+            return null;
+        }));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> deleteUnlock(@NotNull UUID playerId, @NotNull String namespace, @NotNull String id) {
+        return executor.submit(playerId, () -> read(() -> {
+            PlayerRecord record = record(playerId, false);
+            int position = layout.find(namespace, id);
+            if (record == null || !record.has(position)) return false;
+            record.clear(position);
+            return true;
+        }));
+    }
+
+    @Override
+    public CompletableFuture<Integer> clearNamespace(@NotNull UUID playerId, @NotNull String namespace) {
+        return executor.submit(playerId, () -> read(() -> {
+            PlayerRecord record = record(playerId, false);
+            if (record == null) return 0;
+
+            int removed = 0;
+            for (int position : layout.namespace(namespace)) {
+                if (!record.has(position)) continue;
+                record.clear(position);
+                removed++;
+            }
+            return removed;
+        }));
+    }
+
+    @Override
+    public CompletableFuture<Void> clearAll(@NotNull UUID playerId) {
+        return executor.run(playerId, () -> read(() -> {
+            PlayerRecord record = record(playerId, false);
+            if (record != null) record.clearAll();
+            return null;
+        }));
+    }
+
+    /**
+     * A single bit probe, nothing is deserialized
+     */
+    @Override
+    public CompletableFuture<Boolean> isUnlocked(@NotNull UUID playerId, @NotNull String namespace, @NotNull String id) {
+        return executor.submit(playerId, () -> read(() -> {
+            PlayerRecord record = record(playerId, false);
+            return record != null && record.has(layout.find(namespace, id));
+        }));
+    }
+
+    @Override
+    public CompletableFuture<PlayerCollectables> loadSnapshot(@NotNull UUID playerId) {
+        return executor.submit(playerId, () -> read(() -> {
+            PlayerCollectables snapshot = new PlayerCollectables();
+            PlayerRecord record = record(playerId, false);
+            if (record == null) return snapshot;
+
+            // one walk of the player's timestamps rather than one per unlock
+            Map<Integer, long[]> stamps = new HashMap<>();
+            times.forEach(record, (position, first, replay) -> stamps.put(position, new long[] {first, replay}));
+
+            for (int w = 0; w < record.capacity() / 64; w++) {
+                long bits = record.bits(w);
+                while (bits != 0) {
+                    int position = w * 64 + Long.numberOfTrailingZeros(bits);
+                    bits &= bits - 1;
+
+                    MappedLayout.Key key = layout.key(position);
+                    long[] stamp = stamps.get(position);
+                    snapshot.restoreUnlock(key.namespace(), key.id(),
+                            stamp != null ? timestamp(stamp[0]) : null, stamp != null ? timestamp(stamp[1]) : null);
+                }
+            }
+            return snapshot;
+        }));
+    }
+
+    /**
+     * Writes only the bits and timestamps that differ from the stored record
+     */
+    @Override
+    public CompletableFuture<Void> saveSnapshot(@NotNull UUID playerId, @NotNull PlayerCollectables snapshot) {
+        return executor.run(playerId, () -> {
+            List<MappedLayout.Key> keys = new ArrayList<>();
+            snapshot.unlocks().forEach((ns, ids) -> ids.forEach(id -> keys.add(new MappedLayout.Key(ns, id))));
+            int[] positions = writablePositions(keys);
+
+            read(() -> {
+                PlayerRecord record = record(playerId, true);
+
+                long[] wanted = new long[record.capacity() / 64];
+                for (int position : positions) wanted[position >>> 6] |= 1L << position;
+
+                // relock whatever is no longer in the snapshot
+                for (int w = 0; w < wanted.length; w++) {
+                    long removed = record.bits(w) & ~wanted[w];
+                    while (removed != 0) {
+                        record.clear(w * 64 + Long.numberOfTrailingZeros(removed));
+                        removed &= removed - 1;
+                    }
+                }
+
+                // one walk of the player's timestamps rather than one per unlock
+                Map<Integer, Integer> entries = times.entries(record);
+
+                for (int i = 0; i < positions.length; i++) {
+                    MappedLayout.Key key = keys.get(i);
+                    int position = positions[i];
+                    Long first = snapshot.firstUnlockedAt().getOrDefault(key.namespace(), Map.of()).get(key.id());
+                    Long replay = snapshot.lastReplayedAt().getOrDefault(key.namespace(), Map.of()).get(key.id());
+                    long storedFirst = first != null ? first : NO_TIME;
+                    long storedReplay = replay != null ? replay : NO_TIME;
+
+                    if (!record.has(position)) record.set(position);
+                    record.times(position, entries.getOrDefault(position, MappedTimes.NONE), storedFirst, storedReplay);
+                }
+                return null;
+            });
+        });
+    }
+
+}
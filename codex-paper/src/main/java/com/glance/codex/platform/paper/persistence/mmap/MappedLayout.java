@@ -0,0 +1,126 @@
+package com.glance.codex.platform.paper.persistence.mmap;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Bit positions of every {@code namespace:id} known to {@link MappedCollectableStorage}
+ * <p>
+ * Keys get the next free position when first seen and positions are never reused or reordered, so
+ * existing records stay valid as repositories change. Persisted as one key per line in position order,
+ * rewritten atomically whenever keys are added (which only happens when entries are added to config)
+ *
+ * @author Cammy
+ */
+final class MappedLayout {
+
+    private final Path file;
+    private final List<Key> keys = new CopyOnWriteArrayList<>();
+    private final Map<String, Integer> positions = new ConcurrentHashMap<>();
+    /** namespace -> positions, replaced rather than mutated */
+    private final Map<String, int[]> namespaces = new ConcurrentHashMap<>();
+
+    MappedLayout(@NotNull File file) throws IOException {
+        this.file = file.toPath();
+        if (!file.exists()) return;
+
+        for (String line : Files.readAllLines(this.file, StandardCharsets.UTF_8)) {
+            int split = line.indexOf(':');
+            if (split <= 0) continue;
+            index(new Key(line.substring(0, split), line.substring(split + 1)));
+        }
+    }
+
+    /**
+     * @return the key's position, or -1 if it was never stored
+     */
+    int find(@NotNull String namespace, @NotNull String id) {
+        Integer position = positions.get(namespace + ':' + id);
+        return position != null ? position : -1;
+    }
+
+    /**
+     * Assigns positions to all keys not known yet, with a single write of the layout file
+     *
+     * @return how many keys were added
+     */
+    synchronized int addAll(@NotNull Collection<Key> candidates) {
+        List<Key> added = new ArrayList<>();
+        for (Key key : candidates) {
+            if (find(key.namespace(), key.id()) < 0 && !added.contains(key)) added.add(key);
+        }
+        if (added.isEmpty()) return 0;
+
+        List<String> lines = new ArrayList<>(keys.size() + added.size());
+        for (Key key : keys) lines.add(key.toString());
+        for (Key key : added) lines.add(key.toString());
+        write(lines);
+
+        // only visible once persisted, a bit is never set for a position the file does not know
+        added.forEach(this::index);
+        return added.size();
+    }
+
+    private void index(@NotNull Key key) {
+        int position = keys.size();
+        keys.add(key);
+        namespaces.merge(key.namespace(), new int[] {position}, (a, b) -> {
+            int[] merged = Arrays.copyOf(a, a.length + 1);
+            merged[a.length] = b[0];
+            return merged;
+        });
+        positions.put(key.toString(), position);
+    }
+
+    private void write(@NotNull List<String> lines) {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            Files.write(temp, lines, StandardCharsets.UTF_8);
+            try {
+                Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write mmap storage layout " + file, e);
+        }
+    }
+
+    @NotNull Key key(int position) {
+        return keys.get(position);
+    }
+
+    /**
+     * @return positions of every key in the namespace
+     */
+    @NotNull int[] namespace(@NotNull String namespace) {
+        return namespaces.getOrDefault(namespace, new int[0]);
+    }
+
+    int size() {
+        return keys.size();
+    }
+
+    record Key(@NotNull String namespace, @NotNull String id) {
+        @Override
+        public String toString() {
+            return namespace + ':' + id;
+        }
+    }
+
+}
@@ -0,0 +1,286 @@
+package com.glance.codex.platform.paper.persistence.mmap;
+
+import lombok.extern.slf4j.Slf4j;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * First-unlock and last-replay timestamps of {@link MappedCollectableStorage}, stored only for unlocked keys
+ * <p>
+ * Entries are fixed-width ({@code position, next, first, replay}) in a memory-mapped file, and the entries of
+ * one player form a linked list starting at their record's link. A player's timestamps therefore take space
+ * per unlock rather than per registered key, and finding one walks that player's unlocks only
+ * <p>
+ * An entry is fully written before it is linked and unlinked before it is reused, so a crash can at worst
+ * leave an entry nothing points to. Which entries are free is not stored, it is worked out on startup from
+ * the lists that are reachable from the records
+ * <p>
+ * Entries of a player are only touched on their storage lane, allocation is shared and synchronised
+ *
+ * @author Cammy
+ */
+@Slf4j
+final class MappedTimes implements AutoCloseable {
+
+    private static final int MAGIC = 0x43584D54; // "CXMT"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 64;
+    private static final int ENTRY_BYTES = 24;
+    private static final int ENTRIES_PER_SEGMENT = (16 * 1024 * 1024) / ENTRY_BYTES;
+    private static final long SEGMENT_BYTES = (long) ENTRIES_PER_SEGMENT * ENTRY_BYTES;
+
+    /** link value meaning "no entry" */
+    static final int NONE = -1;
+
+    private final FileChannel channel;
+    private volatile MappedByteBuffer[] segments;
+
+    /* guarded by this */
+    private final BitSet free = new BitSet();
+    private int next;
+
+    /**
+     * The side of a record holding the link to its first entry
+     */
+    interface Owner {
+        int link();
+
+        void link(int entry);
+    }
+
+    /**
+     * Receives one entry of a list
+     */
+    @FunctionalInterface
+    interface EntryConsumer {
+        void accept(int position, long first, long replay);
+    }
+
+    MappedTimes(@NotNull File file) throws IOException {
+        boolean fresh = !file.exists() || file.length() < HEADER_BYTES;
+        this.channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        if (!fresh && !validHeader()) {
+            log.warn("Mmap timestamp file {} is not recognised, starting it over", file);
+            channel.truncate(0);
+            fresh = true;
+        }
+        if (fresh) writeHeader();
+
+        long data = Math.max(0, channel.size() - HEADER_BYTES);
+        int count = (int) ((data + SEGMENT_BYTES - 1) / SEGMENT_BYTES);
+        MappedByteBuffer[] mapped = new MappedByteBuffer[count];
+        for (int i = 0; i < count; i++) mapped[i] = map(i);
+        this.segments = mapped;
+    }
+
+    private boolean validHeader() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(8);
+        if (channel.read(header, 0) < 8) return false;
+        header.flip();
+        return header.getInt() == MAGIC && header.getInt() == VERSION;
+    }
+
+    private void writeHeader() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        header.putInt(MAGIC).putInt(VERSION);
+        header.clear();
+        channel.write(header, 0);
+        channel.force(true);
+    }
+
+    private MappedByteBuffer map(int segment) throws IOException {
+        // mapping past the end grows the file
+        return channel.map(FileChannel.MapMode.READ_WRITE, HEADER_BYTES + segment * SEGMENT_BYTES, SEGMENT_BYTES);
+    }
+
+    /**
+     * Works out the free entries from the lists of every record, dropping links that lead nowhere
+     * <p>
+     * Must run before any other use
+     */
+    synchronized void reclaim(@NotNull Collection<? extends Owner> owners) {
+        final int mapped = segments.length * ENTRIES_PER_SEGMENT;
+        final BitSet used = new BitSet();
+        int highest = NONE;
+
+        for (Owner owner : owners) {
+            int previous = NONE;
+            int entry = owner.link();
+            while (entry != NONE) {
+                if (entry < 0 || entry >= mapped || used.get(entry)) {
+                    // a list into a lost or foreign part of the file, keep what came before it
+                    log.warn("Dropping broken mmap timestamp link at entry {}", entry);
+                    if (previous == NONE) owner.link(NONE);
+                    else next(previous, NONE);
+                    break;
+                }
+                used.set(entry);
+                highest = Math.max(highest, entry);
+                previous = entry;
+                entry = next(entry);
+            }
+        }
+
+        this.next = highest + 1;
+        this.free.clear();
+        this.free.set(0, next);
+        this.free.andNot(used);
+    }
+
+    /**
+     * @return the entry holding the position's timestamps, or {@link #NONE}
+     */
+    int find(@NotNull Owner owner, int position) {
+        for (int entry = owner.link(); entry != NONE; entry = next(entry)) {
+            if (position(entry) == position) return entry;
+        }
+        return NONE;
+    }
+
+    /**
+     * @return position to entry of the owner's whole list, for callers looking up many positions
+     */
+    @NotNull Map<Integer, Integer> entries(@NotNull Owner owner) {
+        Map<Integer, Integer> entries = new HashMap<>();
+        for (int entry = owner.link(); entry != NONE; entry = next(entry)) entries.put(position(entry), entry);
+        return entries;
+    }
+
+    long first(int entry) {
+        return buffer(entry).getLong(offset(entry) + 8);
+    }
+
+    long replay(int entry) {
+        return buffer(entry).getLong(offset(entry) + 16);
+    }
+
+    void first(int entry, long when) {
+        buffer(entry).putLong(offset(entry) + 8, when);
+    }
+
+    void replay(int entry, long when) {
+        buffer(entry).putLong(offset(entry) + 16, when);
+    }
+
+    /**
+     * Links a new entry for the position in front of the owner's list
+     */
+    void add(@NotNull Owner owner, int position, long first, long replay) {
+        int entry = allocate();
+        MappedByteBuffer buffer = buffer(entry);
+        int offset = offset(entry);
+        buffer.putInt(offset, position);
+        buffer.putInt(offset + 4, owner.link() + 1);
+        buffer.putLong(offset + 8, first);
+        buffer.putLong(offset + 16, replay);
+        // written in full before anything points to it
+        owner.link(entry);
+    }
+
+    /**
+     * Unlinks the position's entry, if any, and frees it
+     */
+    void remove(@NotNull Owner owner, int position) {
+        int previous = NONE;
+        for (int entry = owner.link(); entry != NONE; entry = next(entry)) {
+            if (position(entry) != position) {
+                previous = entry;
+                continue;
+            }
+            if (previous == NONE) owner.link(next(entry));
+            else next(previous, next(entry));
+            release(entry);
+            return;
+        }
+    }
+
+    /**
+     * Unlinks and frees the owner's whole list
+     */
+    void removeAll(@NotNull Owner owner) {
+        int entry = owner.link();
+        owner.link(NONE);
+        while (entry != NONE) {
+            int following = next(entry);
+            release(entry);
+            entry = following;
+        }
+    }
+
+    void forEach(@NotNull Owner owner, @NotNull EntryConsumer consumer) {
+        for (int entry = owner.link(); entry != NONE; entry = next(entry)) {
+            consumer.accept(position(entry), first(entry), replay(entry));
+        }
+    }
+
+    /**
+     * Forces dirty pages to disk and closes the file
+     */
+    @Override
+    public void close() throws IOException {
+        for (MappedByteBuffer segment : segments) segment.force();
+        channel.close();
+    }
+
+    private synchronized int allocate() {
+        int entry = free.nextSetBit(0);
+        if (entry >= 0) {
+            free.clear(entry);
+            return entry;
+        }
+
+        entry = next++;
+        int segment = entry / ENTRIES_PER_SEGMENT;
+        if (segment >= segments.length) {
+            MappedByteBuffer[] grown = Arrays.copyOf(segments, segment + 1);
+            try {
+                grown[segment] = map(segment);
+            } catch (IOException e) {
+                next--;
+                throw new UncheckedIOException("Failed to grow mmap timestamp file", e);
+            }
+            segments = grown;
+        }
+        return entry;
+    }
+
+    private synchronized void release(int entry) {
+        free.set(entry);
+    }
+
+    private int position(int entry) {
+        return buffer(entry).getInt(offset(entry));
+    }
+
+    /** links are stored plus one, so the zeroes of a new file read as {@link #NONE} */
+    private int next(int entry) {
+        return buffer(entry).getInt(offset(entry) + 4) - 1;
+    }
+
+    private void next(int entry, int following) {
+        buffer(entry).putInt(offset(entry) + 4, following + 1);
+    }
+
+    private MappedByteBuffer buffer(int entry) {
+        return segments[entry / ENTRIES_PER_SEGMENT];
+    }
+
+    private static int offset(int entry) {
+        return (entry % ENTRIES_PER_SEGMENT) * ENTRY_BYTES;
+    }
+
+}
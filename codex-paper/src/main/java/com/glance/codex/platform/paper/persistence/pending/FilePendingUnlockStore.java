@@ -0,0 +1,142 @@
+package com.glance.codex.platform.paper.persistence.pending;
+
+import com.glance.codex.platform.paper.persistence.config.CollectableStorageConfig;
+import com.glance.codex.platform.paper.persistence.executor.StorageExecutor;
+import com.glance.codex.platform.paper.persistence.migration.EnumerableCollectableStorage;
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import lombok.extern.slf4j.Slf4j;
+import org.bukkit.NamespacedKey;
+import org.bukkit.plugin.Plugin;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * {@link PendingUnlockStore} for the local backends (FLATFILE, JOURNAL, MMAP)
+ * <p>
+ * Each player with pending unlocks has one small JSON file, and the set of those players is indexed in
+ * memory on startup from a single directory listing. Checking a joining player is a set lookup, only players
+ * that actually have something queued touch the disk
+ * <p>
+ * Writes run on the player's storage executor lane, so queueing and draining never interleave
+ *
+ * @author Cammy
+ */
+@Slf4j
+@Singleton
+public class FilePendingUnlockStore implements PendingUnlockStore {
+
+    private static final String SUFFIX = ".json";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final Type ENTRIES = new TypeToken<List<Entry>>() {}.getType();
+
+    private final File dir;
+    private final StorageExecutor executor;
+    private final Gson gson = new Gson();
+    private final Set<UUID> queued = ConcurrentHashMap.newKeySet();
+
+    @Inject
+    public FilePendingUnlockStore(
+        @NotNull final Plugin plugin,
+        @NotNull final CollectableStorageConfig cfg,
+        @NotNull final StorageExecutor executor
+    ) {
+        this.dir = new File(plugin.getDataFolder(), cfg.pendingDir());
+        this.executor = executor;
+        if (!dir.exists() && !dir.mkdirs()) {
+            log.warn("Failed to create pending unlocks directory {}", dir);
+        }
+        queued.addAll(EnumerableCollectableStorage.playerFiles(dir, SUFFIX));
+    }
+
+    @Override
+    public CompletableFuture<Void> add(@NotNull UUID playerId, @NotNull NamespacedKey key, long queuedAt) {
+        return executor.run(playerId, () -> {
+            List<Entry> entries = read(playerId);
+            entries.add(new Entry(key.getNamespace(), key.getKey(), queuedAt));
+            write(playerId, entries);
+            queued.add(playerId);
+        });
+    }
+
+    @Override
+    public CompletableFuture<Void> requeue(@NotNull UUID playerId, @NotNull List<Entry> drained) {
+        if (drained.isEmpty()) return CompletableFuture.completedFuture(null);
+        return executor.run(playerId, () -> {
+            List<Entry> entries = new ArrayList<>(drained);
+            entries.addAll(read(playerId));
+            write(playerId, entries);
+            queued.add(playerId);
+        });
+    }
+
+    /**
+     * Answered from memory when nothing is queued, only players that have something touch the disk
+     */
+    @Override
+    public CompletableFuture<List<Entry>> drain(@NotNull UUID playerId) {
+        if (!queued.contains(playerId)) return CompletableFuture.completedFuture(List.of());
+        return executor.submit(playerId, () -> {
+            List<Entry> entries = read(playerId);
+            try {
+                Files.deleteIfExists(file(playerId).toPath());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            queued.remove(playerId);
+            return entries;
+        });
+    }
+
+    private File file(@NotNull UUID playerId) {
+        return new File(dir, playerId + SUFFIX);
+    }
+
+    private List<Entry> read(@NotNull UUID playerId) {
+        try {
+            List<Entry> entries = gson.fromJson(Files.readString(file(playerId).toPath(), StandardCharsets.UTF_8), ENTRIES);
+            return entries != null ? new ArrayList<>(entries) : new ArrayList<>();
+        } catch (NoSuchFileException e) {
+            return new ArrayList<>();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void write(@NotNull UUID playerId, @NotNull List<Entry> entries) {
+        Path target = file(playerId).toPath();
+        Path temp = target.resolveSibling(target.getFileName() + TEMP_SUFFIX);
+        try {
+            Files.writeString(temp, gson.toJson(entries, ENTRIES), StandardCharsets.UTF_8);
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException ignored) {}
+            throw new UncheckedIOException(e);
+        }
+    }
+
+}
@@ -0,0 +1,101 @@
+package com.glance.codex.platform.paper.persistence.pending;
+
+import org.jdbi.v3.sqlobject.config.RegisterFieldMapper;
+import org.jdbi.v3.sqlobject.customizer.Bind;
+import org.jdbi.v3.sqlobject.customizer.BindFields;
+import org.jdbi.v3.sqlobject.customizer.BindList;
+import org.jdbi.v3.sqlobject.statement.SqlBatch;
+import org.jdbi.v3.sqlobject.statement.SqlQuery;
+import org.jdbi.v3.sqlobject.statement.SqlUpdate;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Statements for the {@code collectable_pending} table of {@link SqlPendingUnlockStore}
+ * <p>
+ * Rows are keyed by an increasing sequence so the same collectable can be queued more than once, and a drain
+ * deletes exactly the rows it read. The statements past the schema are the same on every dialect
+ *
+ * @author Cammy
+ */
+public interface PendingUnlockDao {
+
+    default void createSchema(boolean sqlite) {
+        if (sqlite) {
+            createSqliteTable();
+            createSqliteIdxPlayer();
+        } else {
+            createMySqlTable();
+        }
+    }
+
+    @SqlUpdate("""
+        CREATE TABLE IF NOT EXISTS collectable_pending (
+          seq INTEGER PRIMARY KEY AUTOINCREMENT,
+          player_uuid TEXT NOT NULL,
+          namespace TEXT NOT NULL,
+          id TEXT NOT NULL,
+          queued_at INTEGER NOT NULL
+        );
+        """)
+    void createSqliteTable();
+
+    @SqlUpdate("CREATE INDEX IF NOT EXISTS idx_collectable_pending_player ON collectable_pending(player_uuid)")
+    void createSqliteIdxPlayer();
+
+    @SqlUpdate("""
+        CREATE TABLE IF NOT EXISTS collectable_pending (
+          seq BIGINT NOT NULL AUTO_INCREMENT,
+          player_uuid CHAR(36) CHARACTER SET ascii COLLATE ascii_bin NOT NULL,
+          namespace VARCHAR(64) NOT NULL,
+          id VARCHAR(128) NOT NULL,
+          queued_at BIGINT NOT NULL,
+          PRIMARY KEY (seq),
+          KEY idx_collectable_pending_player (player_uuid)
+        ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_bin
+        """)
+    void createMySqlTable();
+
+    @SqlUpdate("""
+        INSERT INTO collectable_pending (player_uuid, namespace, id, queued_at)
+        VALUES (:player, :ns, :id, :queuedAt)
+        """)
+    void insert(
+        @Bind("player") String player,
+        @Bind("ns") String namespace,
+        @Bind("id") String id,
+        @Bind("queuedAt") long queuedAt);
+
+    @SqlBatch("""
+        INSERT INTO collectable_pending (player_uuid, namespace, id, queued_at)
+        VALUES (:player, :namespace, :id, :queuedAt)
+        """)
+    void insertAll(
+        @Bind("player") String player,
+        @BindFields Collection<PendingUnlockStore.Entry> entries);
+
+    /**
+     * @return the player's queued rows, oldest first, from the player index
+     */
+    @SqlQuery("""
+        SELECT seq, namespace, id, queued_at AS queuedAt FROM collectable_pending
+        WHERE player_uuid=:player ORDER BY queued_at, seq
+        """)
+    @RegisterFieldMapper(Row.class)
+    List<Row> load(@Bind("player") String player);
+
+    @SqlUpdate("DELETE FROM collectable_pending WHERE seq IN (<seqs>)")
+    void delete(@BindList("seqs") Collection<Long> seqs);
+
+    /**
+     * A single {@code collectable_pending} row, mapped by field name
+     */
+    class Row {
+        public long seq;
+        public String namespace;
+        public String id;
+        public long queuedAt;
+    }
+
+}
@@ -0,0 +1,58 @@
+package com.glance.codex.platform.paper.persistence.pending;
+
+import org.bukkit.NamespacedKey;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Durable queue of unlocks granted while the player was offline, whose discover effects have not run yet
+ * <p>
+ * Lives next to the unlocks themselves: a {@code collectable_pending} table on the SQL backends, so servers
+ * sharing a database deliver each other's queued unlocks ({@link SqlPendingUnlockStore}), and one file per
+ * player otherwise ({@link FilePendingUnlockStore}). {@link PendingUnlockStoreProvider} picks between them
+ *
+ * @author Cammy
+ */
+public interface PendingUnlockStore {
+
+    /**
+     * Queues an unlock's effects until the player next joins
+     */
+    CompletableFuture<Void> add(@NotNull UUID playerId, @NotNull NamespacedKey key, long queuedAt);
+
+    /**
+     * Puts drained unlocks back in front of anything queued since, for when they could not be delivered
+     */
+    CompletableFuture<Void> requeue(@NotNull UUID playerId, @NotNull List<Entry> drained);
+
+    /**
+     * Removes and returns everything queued for the player
+     * <p>
+     * The entries are gone once the future completes, so effects run by the caller are delivered at most once.
+     * Entries the caller cannot deliver go back through {@link #requeue}
+     *
+     * @return future with the queued unlocks, oldest first
+     */
+    CompletableFuture<List<Entry>> drain(@NotNull UUID playerId);
+
+    /**
+     * A queued unlock, mapped by field name
+     */
+    final class Entry {
+        public String namespace;
+        public String id;
+        public long queuedAt;
+
+        public Entry() {}
+
+        public Entry(String namespace, String id, long queuedAt) {
+            this.namespace = namespace;
+            this.id = id;
+            this.queuedAt = queuedAt;
+        }
+    }
+
+}
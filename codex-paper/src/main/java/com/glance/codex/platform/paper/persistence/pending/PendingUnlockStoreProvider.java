@@ -0,0 +1,44 @@
+package com.glance.codex.platform.paper.persistence.pending;
+
+import com.glance.codex.platform.paper.persistence.config.CollectableStorageProvider;
+import com.glance.codex.platform.paper.persistence.executor.StorageExecutor;
+import com.glance.codex.platform.paper.persistence.sql.JdbiCollectableStorage;
+import com.google.inject.Inject;
+import com.google.inject.Provider;
+import com.google.inject.Singleton;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Optional;
+
+/**
+ * Keeps the pending queue in the same place as the unlocks: the SQL store when the storage in use is SQL
+ * (after any driver fallback), the file store for the local backends
+ *
+ * @author Cammy
+ */
+@Singleton
+public class PendingUnlockStoreProvider implements Provider<PendingUnlockStore> {
+
+    private final CollectableStorageProvider storage;
+    private final Provider<FilePendingUnlockStore> file;
+    private final StorageExecutor executor;
+
+    @Inject
+    public PendingUnlockStoreProvider(
+        @NotNull final CollectableStorageProvider storage,
+        @NotNull final Provider<FilePendingUnlockStore> file,
+        @NotNull final StorageExecutor executor
+    ) {
+        this.storage = storage;
+        this.file = file;
+        this.executor = executor;
+    }
+
+    @Override
+    public PendingUnlockStore get() {
+        Optional<JdbiCollectableStorage> sql = storage.find(JdbiCollectableStorage.class);
+        if (sql.isPresent()) return new SqlPendingUnlockStore(sql.get().bootstrap(), executor);
+        return file.get();
+    }
+
+}
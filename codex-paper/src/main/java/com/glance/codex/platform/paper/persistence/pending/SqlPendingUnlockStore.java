@@ -0,0 +1,74 @@
+package com.glance.codex.platform.paper.persistence.pending;
+
+import com.glance.codex.platform.paper.persistence.config.SqlBootstrap;
+import com.glance.codex.platform.paper.persistence.executor.StorageExecutor;
+import org.bukkit.NamespacedKey;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * {@link PendingUnlockStore} for the SQL backends, a {@code collectable_pending} table next to the unlocks
+ * <p>
+ * Servers sharing the database share the queue, so an unlock granted on one server is delivered by whichever
+ * server the player joins next. Nothing is held in memory, a join costs one lookup on the player index and a
+ * delete of the rows it found when there were any
+ * <p>
+ * Statements run on the player's storage executor lane through the writer pool, so queueing and draining on
+ * this server never interleave
+ *
+ * @author Cammy
+ */
+public class SqlPendingUnlockStore implements PendingUnlockStore {
+
+    private final SqlBootstrap sql;
+    private final StorageExecutor executor;
+
+    public SqlPendingUnlockStore(@NotNull final SqlBootstrap sql, @NotNull final StorageExecutor executor) {
+        this.sql = sql;
+        this.executor = executor;
+        boolean sqlite = sql.dialect() == SqlBootstrap.Dialect.SQLITE;
+        sql.jdbi().useHandle(handle -> handle.attach(PendingUnlockDao.class).createSchema(sqlite));
+    }
+
+    @Override
+    public CompletableFuture<Void> add(@NotNull UUID playerId, @NotNull NamespacedKey key, long queuedAt) {
+        return executor.run(playerId, () -> sql.jdbi().useHandle(handle -> handle.attach(PendingUnlockDao.class)
+                .insert(playerId.toString(), key.getNamespace(), key.getKey(), queuedAt)));
+    }
+
+    /**
+     * Drained rows keep their queue time, which orders them in front of anything queued since
+     */
+    @Override
+    public CompletableFuture<Void> requeue(@NotNull UUID playerId, @NotNull List<Entry> drained) {
+        if (drained.isEmpty()) return CompletableFuture.completedFuture(null);
+        return executor.run(playerId, () -> sql.jdbi().useTransaction(handle -> handle.attach(PendingUnlockDao.class)
+                .insertAll(playerId.toString(), drained)));
+    }
+
+    /**
+     * Deletes the rows it read by sequence, so a row another server queues meanwhile waits for the next join
+     */
+    @Override
+    public CompletableFuture<List<Entry>> drain(@NotNull UUID playerId) {
+        return executor.submit(playerId, () -> sql.jdbi().inTransaction(handle -> {
+            PendingUnlockDao dao = handle.attach(PendingUnlockDao.class);
+            List<PendingUnlockDao.Row> rows = dao.load(playerId.toString());
+            if (rows.isEmpty()) return List.<Entry>of();
+
+            List<Entry> entries = new ArrayList<>(rows.size());
+            List<Long> seqs = new ArrayList<>(rows.size());
+            for (PendingUnlockDao.Row row : rows) {
+                entries.add(new Entry(row.namespace, row.id, row.queuedAt));
+                seqs.add(row.seq);
+            }
+            dao.delete(seqs);
+            return entries;
+        }));
+    }
+
+}
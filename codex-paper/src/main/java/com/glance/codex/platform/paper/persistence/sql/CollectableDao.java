@@ -0,0 +1,162 @@
+package com.glance.codex.platform.paper.persistence.sql;
+
+import lombok.EqualsAndHashCode;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Dialect independent contract for the {@code collectable_unlocks} table
+ * <p>
+ * Each SQL dialect provides a JDBI SqlObject extending this interface which supplies
+ * the actual statements (see {@link SqliteCollectableDao} and {@link MySQLCollectableDao}),
+ * {@link JdbiCollectableStorage} only ever talks to this contract
+ *
+ * @author Cammy
+ */
+public interface CollectableDao {
+
+    /** Namespace of the {@code collectable_counts} rows counting all namespaces combined */
+    String TOTAL_NAMESPACE = "*";
+
+    /**
+     * Creates the tables and indexes required by this dialect if missing
+     */
+    void createSchema();
+
+    /**
+     * Inserts an unlock if not present
+     *
+     * @return 1 if inserted, 0 if it already existed
+     */
+    int insertUnlock(String player, String namespace, String id, long whenMillis);
+
+    /**
+     * Inserts or overwrites every given row for the player as a single JDBC batch
+     */
+    void upsertAll(String player, Collection<Row> rows);
+
+    void updateReplay(String player, String namespace, String id, long whenMillis);
+
+    Set<String> loadIds(String player, String namespace);
+
+    Boolean exists(String player, String namespace, String id);
+
+    List<Row> loadAll(String player);
+
+    /**
+     * Loads every row of all given players in one query, callers keep the list short enough
+     * for the driver's bind parameter limit
+     */
+    List<PlayerRow> loadAllFor(Collection<String> players);
+
+    /**
+     * @return every player with at least one stored unlock
+     */
+    List<String> players();
+
+    int deleteOne(String player, String namespace, String id);
+
+    int deleteNamespace(String player, String namespace);
+
+    /**
+     * Deletes every given row (matched by namespace + id) for the player as a single JDBC batch
+     */
+    void deleteRows(String player, Collection<Row> rows);
+
+    void deleteAllForPlayer(String player);
+
+    /*
+     * ======
+     * Counts
+     * ======
+     */
+
+    /**
+     * Adds to the player's count in the namespace, creating the row if missing
+     */
+    void adjustCount(String player, String namespace, int delta);
+
+    void deleteCount(String player, String namespace);
+
+    void deleteCounts(String player);
+
+    /**
+     * Rebuilds every count row of the player (including the total) from their unlocks
+     */
+    void recount(String player);
+
+    /**
+     * @return the highest non-zero counts in the namespace, highest first
+     */
+    List<CountRow> topCounts(String namespace, int limit);
+
+    Integer count(String player, String namespace);
+
+    /**
+     * @return how many players have a higher count in the namespace, served from the ranking index
+     */
+    long countAbove(String namespace, int count);
+
+    /*
+     * =========
+     * Discovery
+     * =========
+     */
+
+    /**
+     * @return how many players unlocked each collectable, one row per unlocked {@code (namespace, id)}
+     */
+    List<DiscoveryRow> discoveries();
+
+    /**
+     * @return how many players have at least one stored unlock
+     */
+    int playerCount();
+
+    /**
+     * A collectable's unlock count across all players, mapped by field name
+     */
+    class DiscoveryRow {
+        public String namespace;
+        public String id;
+        public int unlocked;
+    }
+
+    /**
+     * A single {@code collectable_counts} row, mapped by field name
+     */
+    class CountRow {
+        public String player;
+        public int unlocked;
+    }
+
+    /**
+     * A single unlock row, mapped by field name
+     */
+    @EqualsAndHashCode
+    class Row {
+        public String namespace;
+        public String id;
+        public Long firstUnlockedAt;
+        public Long lastReplayedAt;
+
+        public Row() {}
+
+        public Row(String namespace, String id, Long firstUnlockedAt, Long lastReplayedAt) {
+            this.namespace = namespace;
+            this.id = id;
+            this.firstUnlockedAt = firstUnlockedAt;
+            this.lastReplayedAt = lastReplayedAt;
+        }
+    }
+
+    /**
+     * A {@link Row} along with the player it belongs to, used by multi-player reads
+     */
+    class PlayerRow extends Row {
+        public String player;
+    }
+
+}
@@ -0,0 +1,53 @@
+package com.glance.codex.platform.paper.persistence.sql;
+
+import org.jdbi.v3.core.Handle;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory copy of the {@code collectable_keys} dictionary, {@code (namespace, id) -> key_id}
+ * <p>
+ * Only ever holds committed keys: entries are added on startup and from lookups that found an
+ * existing row, never for keys inserted by a transaction that might still roll back.
+ * Keys are never deleted, so entries never go stale
+ *
+ * @author Cammy
+ */
+public final class CollectableKeyCache {
+
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+
+    /**
+     * Attaches a dictionary-translating DAO to the handle
+     */
+    public CollectableDao attach(@NotNull Handle handle) {
+        return new DictionaryCollectableDao(handle.attach(SqliteCompactCollectableDao.class), this);
+    }
+
+    static String key(@NotNull String namespace, @NotNull String id) {
+        return namespace + ':' + id;
+    }
+
+    @Nullable Integer get(@NotNull String namespace, @NotNull String id) {
+        return ids.get(key(namespace, id));
+    }
+
+    void put(@NotNull String namespace, @NotNull String id, int keyId) {
+        ids.put(key(namespace, id), keyId);
+    }
+
+    void putAll(@NotNull Collection<SqliteCompactCollectableDao.KeyEntry> entries) {
+        for (SqliteCompactCollectableDao.KeyEntry e : entries) {
+            put(e.namespace, e.id, e.keyId);
+        }
+    }
+
+    public int size() {
+        return ids.size();
+    }
+
+}
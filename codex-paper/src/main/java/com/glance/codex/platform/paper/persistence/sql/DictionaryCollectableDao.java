@@ -0,0 +1,270 @@
+package com.glance.codex.platform.paper.persistence.sql;
+
+import lombok.extern.slf4j.Slf4j;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Adapts {@link SqliteCompactCollectableDao} to the {@link CollectableDao} contract
+ * <p>
+ * Translates UUID strings to 16 byte blobs and {@code (namespace, id)} pairs to dictionary key ids,
+ * using the shared {@link CollectableKeyCache} and only touching {@code collectable_keys} for keys it
+ * has not seen yet. Reads that return names join the dictionary in SQL instead
+ * <p>
+ * Bound to a single handle, so instances are short-lived and not shared between threads
+ *
+ * @author Cammy
+ */
+@Slf4j
+final class DictionaryCollectableDao implements CollectableDao {
+
+    private static final int MIGRATION_BATCH = 1000;
+
+    private final SqliteCompactCollectableDao raw;
+    private final CollectableKeyCache cache;
+    /** keys created by this handle's transaction, only published to the cache once seen committed */
+    private final Map<String, Integer> created = new HashMap<>();
+
+    DictionaryCollectableDao(@NotNull SqliteCompactCollectableDao raw, @NotNull CollectableKeyCache cache) {
+        this.raw = raw;
+        this.cache = cache;
+    }
+
+    static byte[] uuidBytes(@NotNull String player) {
+        UUID uuid = UUID.fromString(player);
+        return ByteBuffer.allocate(16)
+                .putLong(uuid.getMostSignificantBits())
+                .putLong(uuid.getLeastSignificantBits())
+                .array();
+    }
+
+    static String uuidString(@NotNull byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        return new UUID(buffer.getLong(), buffer.getLong()).toString();
+    }
+
+    /**
+     * @return the key id, or null if the key does not exist and {@code create} is false
+     */
+    private @Nullable Integer keyId(@NotNull String namespace, @NotNull String id, boolean create) {
+        Integer cached = cache.get(namespace, id);
+        if (cached != null) return cached;
+
+        String key = CollectableKeyCache.key(namespace, id);
+        Integer local = created.get(key);
+        if (local != null) return local;
+
+        Integer found = raw.findKey(namespace, id);
+        if (found != null) {
+            cache.put(namespace, id, found);
+            return found;
+        }
+        if (!create) return null;
+
+        raw.insertKey(namespace, id);
+        Integer inserted = raw.findKey(namespace, id);
+        if (inserted == null) throw new IllegalStateException("Failed to create key " + key);
+        created.put(key, inserted);
+        return inserted;
+    }
+
+    private List<SqliteCompactCollectableDao.KeyRow> keyRows(@NotNull Collection<Row> rows, boolean create) {
+        List<SqliteCompactCollectableDao.KeyRow> out = new ArrayList<>(rows.size());
+        for (Row row : rows) {
+            Integer keyId = keyId(row.namespace, row.id, create);
+            if (keyId != null) out.add(new SqliteCompactCollectableDao.KeyRow(keyId, row.firstUnlockedAt, row.lastReplayedAt));
+        }
+        return out;
+    }
+
+    /**
+     * Creates the compact schema, migrates the old {@code collectable_unlocks} table if present, fills new
+     * count tables and warms the key cache
+     */
+    @Override
+    public void createSchema() {
+        raw.createSchema();
+        if (raw.legacyTableCount() > 0) migrateLegacy();
+        if (raw.countsEmpty()) raw.backfillCounts(TOTAL_NAMESPACE);
+        cache.putAll(raw.loadKeys());
+    }
+
+    private void migrateLegacy() {
+        raw.copyLegacyKeys();
+
+        Map<String, Integer> keys = new HashMap<>();
+        for (SqliteCompactCollectableDao.KeyEntry e : raw.loadKeys()) {
+            keys.put(CollectableKeyCache.key(e.namespace, e.id), e.keyId);
+        }
+
+        long migrated = 0;
+        List<SqliteCompactCollectableDao.MigratedRow> batch = new ArrayList<>(MIGRATION_BATCH);
+        try (Stream<SqliteCompactCollectableDao.LegacyRow> rows = raw.streamLegacyRows()) {
+            for (var it = rows.iterator(); it.hasNext(); ) {
+                SqliteCompactCollectableDao.LegacyRow row = it.next();
+                Integer keyId = keys.get(CollectableKeyCache.key(row.namespace, row.id));
+                if (keyId == null) continue;
+
+                batch.add(new SqliteCompactCollectableDao.MigratedRow(
+                        uuidBytes(row.playerUuid), keyId, row.firstUnlockedAt, row.lastReplayedAt));
+                if (batch.size() >= MIGRATION_BATCH) {
+                    raw.insertMigrated(batch);
+                    migrated += batch.size();
+                    batch.clear();
+                }
+            }
+        }
+        if (!batch.isEmpty()) {
+            raw.insertMigrated(batch);
+            migrated += batch.size();
+        }
+
+        // kept as a backup rather than dropped
+        String backup = "collectable_unlocks_backup_" + System.currentTimeMillis();
+        raw.renameLegacyTable(backup);
+        log.info("Migrated {} collectable unlocks to the compact schema, old table kept as {}", migrated, backup);
+    }
+
+    @Override
+    public int insertUnlock(String player, String namespace, String id, long whenMillis) {
+        return raw.insertUnlock(uuidBytes(player), keyId(namespace, id, true), whenMillis);
+    }
+
+    @Override
+    public void upsertAll(String player, Collection<Row> rows) {
+        raw.upsertAll(uuidBytes(player), keyRows(rows, true));
+    }
+
+    @Override
+    public void updateReplay(String player, String namespace, String id, long whenMillis) {
+        Integer keyId = keyId(namespace, id, false);
+        if (keyId != null) raw.updateReplay(uuidBytes(player), keyId, whenMillis);
+    }
+
+    @Override
+    public Set<String> loadIds(String player, String namespace) {
+        return raw.loadIds(uuidBytes(player), namespace);
+    }
+
+    @Override
+    public Boolean exists(String player, String namespace, String id) {
+        Integer keyId = keyId(namespace, id, false);
+        return keyId != null ? raw.exists(uuidBytes(player), keyId) : null;
+    }
+
+    @Override
+    public List<Row> loadAll(String player) {
+        return raw.loadAll(uuidBytes(player));
+    }
+
+    @Override
+    public List<PlayerRow> loadAllFor(Collection<String> players) {
+        List<byte[]> blobs = new ArrayList<>(players.size());
+        for (String player : players) blobs.add(uuidBytes(player));
+
+        List<PlayerRow> rows = new ArrayList<>();
+        for (SqliteCompactCollectableDao.BlobPlayerRow found : raw.loadAllFor(blobs)) {
+            PlayerRow row = new PlayerRow();
+            row.player = uuidString(found.player);
+            row.namespace = found.namespace;
+            row.id = found.id;
+            row.firstUnlockedAt = found.firstUnlockedAt;
+            row.lastReplayedAt = found.lastReplayedAt;
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    @Override
+    public List<String> players() {
+        List<String> players = new ArrayList<>();
+        for (byte[] player : raw.players()) players.add(uuidString(player));
+        return players;
+    }
+
+    @Override
+    public int deleteOne(String player, String namespace, String id) {
+        Integer keyId = keyId(namespace, id, false);
+        return keyId != null ? raw.deleteOne(uuidBytes(player), keyId) : 0;
+    }
+
+    @Override
+    public int deleteNamespace(String player, String namespace) {
+        return raw.deleteNamespace(uuidBytes(player), namespace);
+    }
+
+    @Override
+    public void deleteRows(String player, Collection<Row> rows) {
+        raw.deleteRows(uuidBytes(player), keyRows(rows, false));
+    }
+
+    @Override
+    public void deleteAllForPlayer(String player) {
+        raw.deleteAllForPlayer(uuidBytes(player));
+    }
+
+    @Override
+    public void adjustCount(String player, String namespace, int delta) {
+        raw.adjustCount(uuidBytes(player), namespace, delta);
+    }
+
+    @Override
+    public void deleteCount(String player, String namespace) {
+        raw.deleteCount(uuidBytes(player), namespace);
+    }
+
+    @Override
+    public void deleteCounts(String player) {
+        raw.deleteCounts(uuidBytes(player));
+    }
+
+    @Override
+    public void recount(String player) {
+        byte[] blob = uuidBytes(player);
+        raw.deleteCounts(blob);
+        raw.insertCounts(blob, TOTAL_NAMESPACE);
+    }
+
+    @Override
+    public List<CountRow> topCounts(String namespace, int limit) {
+        List<CountRow> rows = new ArrayList<>();
+        for (SqliteCompactCollectableDao.BlobCountRow found : raw.topCounts(namespace, limit)) {
+            CountRow row = new CountRow();
+            row.player = uuidString(found.player);
+            row.unlocked = found.unlocked;
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    @Override
+    public Integer count(String player, String namespace) {
+        return raw.count(uuidBytes(player), namespace);
+    }
+
+    @Override
+    public long countAbove(String namespace, int count) {
+        return raw.countAbove(namespace, count);
+    }
+
+    @Override
+    public List<DiscoveryRow> discoveries() {
+        return raw.discoveries();
+    }
+
+    @Override
+    public int playerCount() {
+        return raw.playerCount();
+    }
+
+}
@@ -0,0 +1,184 @@
+package com.glance.codex.platform.paper.persistence.sql;
+
+import lombok.extern.slf4j.Slf4j;
+import org.jdbi.v3.core.Handle;
+import org.jdbi.v3.core.Jdbi;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Group-commit writer used by {@link JdbiCollectableStorage}
+ * <p>
+ * Writes from every player are queued and picked up by a single writer thread, which gathers whatever
+ * arrives within the configured window (or until the batch is full) and commits it in one transaction.
+ * On SQLite this turns one fsync per unlock into one fsync per batch
+ * <p>
+ * Each caller's future is completed individually once the batch commits. If the batch fails, its writes
+ * are retried in a transaction of their own so one bad write only fails its own caller
+ *
+ * @author Cammy
+ */
+@Slf4j
+final class GroupCommitWriter implements AutoCloseable {
+
+    /** How long the idle writer waits before re-checking whether it was closed */
+    private static final long IDLE_POLL_MILLIS = 100;
+    private static final long CLOSE_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+    private final Jdbi jdbi;
+    private final Function<Handle, CollectableDao> daoFactory;
+    /** Callers' continuations run here rather than on the writer thread */
+    private final Executor callbacks;
+    private final long windowNanos;
+    private final int maxBatch;
+
+    private final BlockingQueue<Write<?>> queue = new LinkedBlockingQueue<>();
+    private final Thread thread;
+    private volatile boolean running = true;
+
+    GroupCommitWriter(
+        @NotNull Jdbi jdbi,
+        @NotNull Function<Handle, CollectableDao> daoFactory,
+        @NotNull Executor callbacks,
+        long windowMillis,
+        int maxBatch
+    ) {
+        this.jdbi = jdbi;
+        this.daoFactory = daoFactory;
+        this.callbacks = callbacks;
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, windowMillis));
+        this.maxBatch = Math.max(1, maxBatch);
+
+        this.thread = new Thread(this::run, "Codex-GroupCommit");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Queues a write for the next batch
+     *
+     * @param op the statements to run, given a DAO bound to the batch transaction
+     * @return future completing with the op's result once its batch has committed
+     */
+    <R> CompletableFuture<R> submit(@NotNull Function<CollectableDao, R> op) {
+        Write<R> write = new Write<>(op, callbacks);
+        if (!running) {
+            write.future.completeExceptionally(new IllegalStateException("Group commit writer is closed"));
+        } else {
+            queue.add(write);
+        }
+        return write.future;
+    }
+
+    /**
+     * Stops accepting writes and commits everything still queued
+     */
+    @Override
+    public void close() {
+        running = false;
+        try {
+            thread.join(CLOSE_TIMEOUT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        // anything that slipped in after the writer thread exited
+        List<Write<?>> rest = new ArrayList<>();
+        queue.drainTo(rest);
+        if (!rest.isEmpty()) commit(rest);
+    }
+
+    private void run() {
+        List<Write<?>> batch = new ArrayList<>(maxBatch);
+        while (running || !queue.isEmpty()) {
+            try {
+                Write<?> first = queue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+
+                final long deadline = System.nanoTime() + windowNanos;
+                while (batch.size() < maxBatch) {
+                    long remaining = deadline - System.nanoTime();
+                    // past the window only take what is already waiting
+                    Write<?> next = remaining > 0
+                            ? queue.poll(remaining, TimeUnit.NANOSECONDS)
+                            : queue.poll();
+                    if (next == null) break;
+                    batch.add(next);
+                }
+
+                commit(batch);
+            } catch (InterruptedException e) {
+                // only close() stops the writer, keep draining
+                if (!batch.isEmpty()) commit(batch);
+            } catch (Throwable t) {
+                log.error("Unexpected error in collectables group commit writer", t);
+                batch.forEach(w -> w.fail(t));
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void commit(@NotNull List<Write<?>> batch) {
+        try {
+            jdbi.useTransaction(handle -> {
+                CollectableDao dao = daoFactory.apply(handle);
+                for (Write<?> write : batch) write.apply(dao);
+            });
+            batch.forEach(Write::complete);
+        } catch (Exception e) {
+            if (batch.size() == 1) {
+                batch.get(0).fail(e);
+                return;
+            }
+
+            log.warn("Group commit of {} writes failed, retrying individually", batch.size(), e);
+            for (Write<?> write : batch) {
+                try {
+                    jdbi.useTransaction(handle -> write.apply(daoFactory.apply(handle)));
+                    write.complete();
+                } catch (Exception ex) {
+                    write.fail(ex);
+                }
+            }
+        }
+    }
+
+    /**
+     * A single queued write and the future its caller is waiting on
+     */
+    private static final class Write<R> {
+        final Function<CollectableDao, R> op;
+        final Executor callbacks;
+        final CompletableFuture<R> future = new CompletableFuture<>();
+        R result;
+
+        Write(@NotNull Function<CollectableDao, R> op, @NotNull Executor callbacks) {
+            this.op = op;
+            this.callbacks = callbacks;
+        }
+
+        void apply(@NotNull CollectableDao dao) {
+            this.result = op.apply(dao);
+        }
+
+        void complete() {
+            final R value = result;
+            callbacks.execute(() -> future.complete(value));
+        }
+
+        void fail(@NotNull Throwable t) {
+            callbacks.execute(() -> future.completeExceptionally(t));
+        }
+    }
+
+}
@@ -1,27 +1,53 @@
 package com.glance.codex.platform.paper.persistence.sql;
 
 import com.glance.codex.api.data.PlayerCollectables;
-import com.glance.codex.api.data.storage.CollectableStorage;
+import com.glance.codex.api.data.storage.CollectableCounts;
+import com.glance.codex.api.data.storage.UnlockResult;
+import com.glance.codex.platform.paper.persistence.config.CollectableStorageConfig;
+import com.glance.codex.platform.paper.persistence.executor.StorageExecutor;
+import com.glance.codex.platform.paper.persistence.migration.EnumerableCollectableStorage;
 import com.glance.codex.platform.paper.persistence.config.SqlBootstrap;
+import com.glance.codex.platform.paper.persistence.discovery.DiscoverySource;
+import com.glance.codex.platform.paper.persistence.discovery.DiscoveryTally;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
+import org.bukkit.NamespacedKey;
 import org.bukkit.plugin.Plugin;
+import org.jdbi.v3.core.Handle;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
 
+/**
+ * SQL storage through JDBI, dialect specific statements come from the {@link CollectableDao} of {@link SqlBootstrap}
+ * <p>
+ * Also keeps the {@code collectable_counts} table in step with every write, in the same transaction, so
+ * leaderboard queries only ever touch that table and its {@code (namespace, unlocked)} index
+ *
+ * @author Cammy
+ */
 @Singleton
-public class JdbiCollectableStorage implements CollectableStorage {
+public class JdbiCollectableStorage implements EnumerableCollectableStorage, CollectableCounts, DiscoverySource, AutoCloseable {
+
+    /** Players per bulk query, well below SQLite's bind parameter limit */
+    private static final int BULK_CHUNK = 500;
 
     private final SqlBootstrap sql;
+    private final StorageExecutor executor;
+    private final @Nullable GroupCommitWriter writer;
 
     @Inject
     public JdbiCollectableStorage(
         @NotNull final Plugin plugin,
-        @NotNull final SqlBootstrap bootstrap
+        @NotNull final SqlBootstrap bootstrap,
+        @NotNull final CollectableStorageConfig cfg,
+        @NotNull final StorageExecutor executor
     ) {
         this.sql = bootstrap;
+        this.executor = executor;
 
         if (isSqlite()) {
             try {
@@ -37,143 +63,359 @@ public class JdbiCollectableStorage implements CollectableStorage {
                 throw new RuntimeException(e);
             }
         }
+
+        this.writer = cfg.groupCommit()
+                ? new GroupCommitWriter(sql.jdbi(), this::dao, executor, cfg.groupCommitWindowMillis(), cfg.groupCommitMaxBatch())
+                : null;
+    }
+
+    /**
+     * Commits any writes still waiting in the group commit queue, then closes the connection pools
+     */
+    @Override
+    public void close() {
+        if (writer != null) writer.close();
+        sql.close();
+    }
+
+    /**
+     * @return the SQL bootstrap owning this storage's connection pools
+     */
+    public @NotNull SqlBootstrap bootstrap() {
+        return sql;
     }
 
     private boolean isSqlite() {
         return this.sql.dialect() == SqlBootstrap.Dialect.SQLITE;
     }
 
+    private CollectableDao dao(@NotNull Handle handle) {
+        return sql.dao(handle);
+    }
+
+    /**
+     * Runs a read, on the read-only pool for SQLite
+     */
+    private <R> R withDao(@NotNull Function<CollectableDao, R> callback) {
+        return sql.readJdbi().withHandle(handle -> callback.apply(dao(handle)));
+    }
+
+    private <R> R inTransaction(@NotNull Function<CollectableDao, R> callback) {
+        return sql.jdbi().inTransaction(handle -> callback.apply(dao(handle)));
+    }
+
+    /**
+     * Runs a write in its own transaction, or hands it to the group commit writer when enabled
+     * <p>
+     * Every write goes through here so writes for the same player keep their submission order. Group commits
+     * still hold the player's lane until their batch commits, so a later read of the player sees the write
+     */
+    private <R> CompletableFuture<R> write(@NotNull UUID playerId, @NotNull Function<CollectableDao, R> callback) {
+        if (writer != null) return executor.submitAsync(playerId, () -> writer.submit(callback));
+        return executor.submit(playerId, () -> inTransaction(callback));
+    }
+
     @Override
     public CompletableFuture<Set<String>> loadUnlockedIds(@NotNull UUID playerId, @NotNull String namespace) {
-        return CompletableFuture.supplyAsync(() -> {
-            if (isSqlite()) {
-                return sql.jdbi().withExtension(SqliteCollectableDao.class,
-                        dao -> dao.loadIds(playerId.toString(), namespace));
-            } else {
-                throw new UnsupportedOperationException();
+        return executor.submit(playerId, () ->
+                withDao(dao -> dao.loadIds(playerId.toString(), namespace)));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> putUnlock(@NotNull UUID playerId, @NotNull String namespace, @NotNull String id, long whenMillis) {
+        return write(playerId, dao -> {
+            String uuid = playerId.toString();
+            if (dao.insertUnlock(uuid, namespace, id, whenMillis) == 0) return false;
+            adjustCounts(dao, uuid, namespace, 1);
+            return true;
+        });
+    }
+
+    @Override
+    public CompletableFuture<UnlockResult> unlockOrReplay(
+        @NotNull UUID playerId, @NotNull String namespace,
+        @NotNull String id, long whenMillis, boolean recordReplay
+    ) {
+        return write(playerId, dao -> {
+            String uuid = playerId.toString();
+            if (dao.insertUnlock(uuid, namespace, id, whenMillis) > 0) {
+                adjustCounts(dao, uuid, namespace, 1);
+                return UnlockResult.UNLOCKED;
             }
+            if (recordReplay) dao.updateReplay(uuid, namespace, id, whenMillis);
+            return UnlockResult.REPLAYED;
         });
     }
 
     @Override
-    public CompletableFuture<Boolean> putUnlock(@NotNull UUID playerId, @NotNull String namespace, @NotNull String id, long whenMillis) {
-        return CompletableFuture.supplyAsync(() -> {
-            int changed = isSqlite()
-                    ? sql.jdbi().withExtension(SqliteCollectableDao.class,
-                        dao -> dao.insertUnlock(playerId.toString(), namespace, id, whenMillis))
-                    : 0;
-            return changed > 0;
+    public CompletableFuture<Map<NamespacedKey, UnlockResult>> unlockOrReplayAll(
+        @NotNull UUID playerId, @NotNull Collection<NamespacedKey> keys,
+        long whenMillis, @NotNull Set<NamespacedKey> recordReplays
+    ) {
+        final List<NamespacedKey> unique = new ArrayList<>(new LinkedHashSet<>(keys));
+        return write(playerId, dao -> {
+            String uuid = playerId.toString();
+            Map<NamespacedKey, UnlockResult> results = new LinkedHashMap<>();
+            Map<String, Integer> unlocked = new HashMap<>();
+            for (NamespacedKey key : unique) {
+                if (dao.insertUnlock(uuid, key.getNamespace(), key.getKey(), whenMillis) > 0) {
+                    unlocked.merge(key.getNamespace(), 1, Integer::sum);
+                    results.put(key, UnlockResult.UNLOCKED);
+                    continue;
+                }
+                if (recordReplays.contains(key)) dao.updateReplay(uuid, key.getNamespace(), key.getKey(), whenMillis);
+                results.put(key, UnlockResult.REPLAYED);
+            }
+            // one count adjustment per namespace rather than per unlock
+            unlocked.forEach((namespace, delta) -> adjustCounts(dao, uuid, namespace, delta));
+            return results;
         });
     }
 
     @Override
     public CompletableFuture<Void> recordReplay(@NotNull UUID playerId, @NotNull String namespace, @NotNull String id, long whenMillis) {
-        return CompletableFuture.runAsync(() -> {
-            if (isSqlite()) {
-                sql.jdbi().useExtension(SqliteCollectableDao.class,
-                        dao -> dao.updateReplay(playerId.toString(), namespace, id, whenMillis));
-            } else {
-                throw new UnsupportedOperationException();
-            }
+        return write(playerId, dao -> {
+            dao.updateReplay(playerId.toString(), namespace, id, whenMillis);
+            return null;
         });
     }
 
     @Override
     public CompletableFuture<Boolean> deleteUnlock(@NotNull UUID playerId, @NotNull String namespace, @NotNull String id) {
-        return CompletableFuture.supplyAsync(() -> {
-           if (!isSqlite()) throw new UnsupportedOperationException();
-           int changed = sql.jdbi().withExtension(SqliteCollectableDao.class,
-                   dao -> dao.deleteOne(playerId.toString(), namespace, id));
-           return changed > 0;
+        return write(playerId, dao -> {
+            String uuid = playerId.toString();
+            if (dao.deleteOne(uuid, namespace, id) == 0) return false;
+            adjustCounts(dao, uuid, namespace, -1);
+            return true;
         });
     }
 
     @Override
     public CompletableFuture<Integer> clearNamespace(@NotNull UUID playerId, @NotNull String namespace) {
-        return CompletableFuture.supplyAsync(() -> {
-            if (!isSqlite()) throw new UnsupportedOperationException();
-            return sql.jdbi().withExtension(SqliteCollectableDao.class,
-                    dao -> dao.deleteNamespace(playerId.toString(), namespace));
+        return write(playerId, dao -> {
+            String uuid = playerId.toString();
+            int removed = dao.deleteNamespace(uuid, namespace);
+            if (removed > 0) {
+                dao.deleteCount(uuid, namespace);
+                dao.adjustCount(uuid, CollectableDao.TOTAL_NAMESPACE, -removed);
+            }
+            return removed;
         });
     }
 
     @Override
     public CompletableFuture<Void> clearAll(@NotNull UUID playerId) {
-        return CompletableFuture.runAsync(() -> {
-            if (!isSqlite()) throw new UnsupportedOperationException();
-            sql.jdbi().useExtension(SqliteCollectableDao.class,
-                    dao -> dao.deleteAllForPlayer(playerId.toString()));
+        return write(playerId, dao -> {
+            String uuid = playerId.toString();
+            dao.deleteAllForPlayer(uuid);
+            dao.deleteCounts(uuid);
+            return null;
         });
     }
 
     @Override
     public CompletableFuture<Boolean> isUnlocked(@NotNull UUID playerId, @NotNull String namespace, @NotNull String id) {
-        return CompletableFuture.supplyAsync(() -> {
-            Boolean result = isSqlite()
-                    ? sql.jdbi().withExtension(SqliteCollectableDao.class,
-                        dao -> dao.exists(playerId.toString(), namespace, id))
-                    : false;
-            return Boolean.TRUE.equals(result);
-        });
+        return executor.submit(playerId, () ->
+                Boolean.TRUE.equals(withDao(dao -> dao.exists(playerId.toString(), namespace, id))));
     }
 
-    @SuppressWarnings("unchecked")
     @Override
     public CompletableFuture<PlayerCollectables> loadSnapshot(@NotNull UUID playerId) {
-        return CompletableFuture.supplyAsync(() -> {
-            List<?> rows =
-                isSqlite()
-                ? sql.jdbi().withExtension(SqliteCollectableDao.class, dao -> dao.loadAll(playerId.toString()))
-                : List.of();
-
+        return executor.submit(playerId, () -> {
             PlayerCollectables snapshot = new PlayerCollectables();
-            if (rows.isEmpty()) return snapshot;
-
-            if (rows.getFirst() instanceof SqliteCollectableDao.Row) {
-                for (SqliteCollectableDao.Row r : (List<SqliteCollectableDao.Row>) rows) {
-                    snapshot.unlocks().computeIfAbsent(r.namespace, k -> new HashSet<>()).add(r.id);
-                    if (r.firstUnlockedAt != null) {
-                        snapshot.firstUnlockedAt()
-                                .computeIfAbsent(r.namespace, k -> new HashMap<>()).put(r.id, r.firstUnlockedAt);
-                    }
-                    if (r.lastReplayedAt != null) {
-                        snapshot.lastReplayedAt()
-                                .computeIfAbsent(r.namespace, k -> new HashMap<>()).put(r.id, r.lastReplayedAt);
-                    }
+            withDao(dao -> dao.loadAll(playerId.toString())).forEach(r -> addRow(snapshot, r));
+            return snapshot;
+        });
+    }
+
+    /**
+     * Loads all players with one {@code IN (...)} query per {@value #BULK_CHUNK} players
+     * <p>
+     * Runs outside the per-player lanes, so writes still queued for a player may not be visible yet
+     */
+    @Override
+    public CompletableFuture<Map<UUID, PlayerCollectables>> loadSnapshots(@NotNull Collection<UUID> playerIds) {
+        final List<UUID> ids = new ArrayList<>(new LinkedHashSet<>(playerIds));
+        if (ids.isEmpty()) return CompletableFuture.completedFuture(Map.of());
+
+        return executor.submit(() -> {
+            Map<UUID, PlayerCollectables> snapshots = new HashMap<>();
+            for (UUID id : ids) snapshots.put(id, new PlayerCollectables());
+
+            for (int from = 0; from < ids.size(); from += BULK_CHUNK) {
+                List<String> chunk = ids.subList(from, Math.min(ids.size(), from + BULK_CHUNK))
+                        .stream().map(UUID::toString).toList();
+
+                for (CollectableDao.PlayerRow r : withDao(dao -> dao.loadAllFor(chunk))) {
+                    addRow(snapshots.get(UUID.fromString(r.player)), r);
                 }
-            } else {
-                throw new UnsupportedOperationException();
             }
-
-            return snapshot;
+            return snapshots;
         });
     }
 
+    private static void addRow(@NotNull PlayerCollectables snapshot, @NotNull CollectableDao.Row r) {
+        snapshot.restoreUnlock(r.namespace, r.id, r.firstUnlockedAt, r.lastReplayedAt);
+    }
+
+    /**
+     * Writes only the difference between the snapshot and the persisted rows
+     * <p>
+     * One query reads the current state, then at most one upsert batch (new or changed rows)
+     * and one delete batch (rows no longer present) are issued, all in a single transaction,
+     * so the statement count scales with the number of changes rather than total unlocks
+     * (the transaction is shared with the rest of the batch when group commit is enabled)
+     */
     @Override
     public CompletableFuture<Void> saveSnapshot(@NotNull UUID playerId, @NotNull PlayerCollectables snapshot) {
-        return CompletableFuture.runAsync(() -> {
-           sql.jdbi().useTransaction(handle -> {
-               String uuid = playerId.toString();
-               if (isSqlite()) {
-                   var dao = handle.attach(SqliteCollectableDao.class);
-                   dao.deleteAllForPlayer(uuid);
-                   long now = System.currentTimeMillis();
-                   snapshot.unlocks().forEach((ns, ids) -> {
-                       for (String id : ids) {
-                           long first = snapshot.firstUnlockedAt()
-                                   .getOrDefault(ns, Map.of())
-                                   .getOrDefault(id, now);
-                           dao.insertUnlock(uuid, ns, id, first);
-                           Long replay = snapshot.lastReplayedAt()
-                                   .getOrDefault(ns, Map.of())
-                                   .get(id);
-                           if (replay != null) dao.updateReplay(uuid, ns, id, replay);
-                       }
-                   });
-               } else {
-                   throw new UnsupportedOperationException();
-               }
-           });
+        return write(playerId, dao -> {
+            String uuid = playerId.toString();
+
+            Map<String, CollectableDao.Row> persisted = new HashMap<>();
+            for (CollectableDao.Row row : dao.loadAll(uuid)) {
+                persisted.put(rowKey(row), row);
+            }
+
+            List<CollectableDao.Row> upserts = new ArrayList<>();
+            for (CollectableDao.Row row : toRows(snapshot, persisted)) {
+                CollectableDao.Row current = persisted.remove(rowKey(row));
+                if (!row.equals(current)) upserts.add(row);
+            }
+
+            // whatever is left in persisted no longer exists in the snapshot
+            if (!persisted.isEmpty()) dao.deleteRows(uuid, persisted.values());
+            if (!upserts.isEmpty()) dao.upsertAll(uuid, upserts);
+            if (!persisted.isEmpty() || !upserts.isEmpty()) dao.recount(uuid);
+            return null;
+        });
+    }
+
+    /**
+     * Replaces the stored rows of every given player, one transaction per {@value #BULK_CHUNK} players
+     * <p>
+     * Meant for imports and migrations, so it bypasses the group commit writer and the per-player lanes
+     * and does not diff against the persisted rows like {@link #saveSnapshot(UUID, PlayerCollectables)} does
+     */
+    @Override
+    public CompletableFuture<Void> saveSnapshots(@NotNull Map<UUID, PlayerCollectables> snapshots) {
+        if (snapshots.isEmpty()) return CompletableFuture.completedFuture(null);
+        final List<Map.Entry<UUID, PlayerCollectables>> entries = new ArrayList<>(snapshots.entrySet());
+
+        return executor.submit(() -> {
+            for (int from = 0; from < entries.size(); from += BULK_CHUNK) {
+                List<Map.Entry<UUID, PlayerCollectables>> chunk =
+                        entries.subList(from, Math.min(entries.size(), from + BULK_CHUNK));
+
+                inTransaction(dao -> {
+                    for (Map.Entry<UUID, PlayerCollectables> e : chunk) {
+                        String uuid = e.getKey().toString();
+                        dao.deleteAllForPlayer(uuid);
+                        List<CollectableDao.Row> rows = toRows(e.getValue(), Map.of());
+                        if (!rows.isEmpty()) dao.upsertAll(uuid, rows);
+                        dao.recount(uuid);
+                    }
+                    return null;
+                });
+            }
+            return null;
         });
     }
+
+    /**
+     * Sorted here, as databases order text and blob UUIDs differently to {@link UUID#compareTo(UUID)}
+     */
+    @Override
+    public @NotNull List<UUID> storedPlayers() {
+        List<UUID> players = new ArrayList<>();
+        for (String player : withDao(CollectableDao::players)) players.add(UUID.fromString(player));
+        Collections.sort(players);
+        return players;
+    }
+
+    /*
+     * ======
+     * Counts
+     * ======
+     */
+
+    private static void adjustCounts(@NotNull CollectableDao dao, @NotNull String player, @NotNull String namespace, int delta) {
+        dao.adjustCount(player, namespace, delta);
+        dao.adjustCount(player, CollectableDao.TOTAL_NAMESPACE, delta);
+    }
+
+    private static String countNamespace(@Nullable String namespace) {
+        return namespace != null ? namespace : CollectableDao.TOTAL_NAMESPACE;
+    }
+
+    @Override
+    public CompletableFuture<List<Standing>> top(@Nullable String namespace, int limit) {
+        if (limit <= 0) return CompletableFuture.completedFuture(List.of());
+        return executor.submit(() -> {
+            List<Standing> standings = new ArrayList<>();
+            long rank = 0;
+            int previous = -1;
+            for (CollectableDao.CountRow row : withDao(dao -> dao.topCounts(countNamespace(namespace), limit))) {
+                // ties share the rank of the first player with that count
+                if (row.unlocked != previous) rank = standings.size() + 1;
+                previous = row.unlocked;
+                standings.add(new Standing(UUID.fromString(row.player), row.unlocked, rank));
+            }
+            return standings;
+        });
+    }
+
+    @Override
+    public CompletableFuture<Standing> standing(@NotNull UUID playerId, @Nullable String namespace) {
+        return executor.submit(() -> withDao(dao -> {
+            String ns = countNamespace(namespace);
+            Integer count = dao.count(playerId.toString(), ns);
+            int unlocked = count != null ? Math.max(0, count) : 0;
+            return new Standing(playerId, unlocked, dao.countAbove(ns, unlocked) + 1);
+        }));
+    }
+
+    @Override
+    public CompletableFuture<DiscoveryTally> tallyDiscoveries() {
+        return executor.submit(() -> withDao(dao -> {
+            DiscoveryTally tally = new DiscoveryTally();
+            for (CollectableDao.DiscoveryRow row : dao.discoveries()) tally.add(row.namespace, row.id, row.unlocked);
+            tally.players(dao.playerCount());
+            return tally;
+        }));
+    }
+
+    private static String rowKey(@NotNull CollectableDao.Row row) {
+        return row.namespace + ':' + row.id;
+    }
+
+    /**
+     * Flattens a snapshot into table rows
+     * <p>
+     * Unlocks without a recorded first-unlock time are stamped with the current time
+     */
+    /**
+     * @param persisted stored rows by {@link #rowKey}, an unlock the snapshot has no first-unlock time for keeps
+     *                  the stored one, only unlocks new to storage are stamped with the current time
+     */
+    private static List<CollectableDao.Row> toRows(
+        @NotNull PlayerCollectables snapshot,
+        @NotNull Map<String, CollectableDao.Row> persisted
+    ) {
+        final long now = System.currentTimeMillis();
+        List<CollectableDao.Row> rows = new ArrayList<>();
+        snapshot.unlocks().forEach((ns, ids) -> {
+            Map<String, Long> first = snapshot.firstUnlockedAt().getOrDefault(ns, Map.of());
+            Map<String, Long> replay = snapshot.lastReplayedAt().getOrDefault(ns, Map.of());
+            for (String id : ids) {
+                Long firstAt = first.get(id);
+                if (firstAt == null) {
+                    CollectableDao.Row stored = persisted.get(ns + ':' + id);
+                    firstAt = stored != null && stored.firstUnlockedAt != null ? stored.firstUnlockedAt : now;
+                }
+                rows.add(new CollectableDao.Row(ns, id, firstAt, replay.get(id)));
+            }
+        });
+        return rows;
+    }
+
 }
@@ -1,5 +1,240 @@
 package com.glance.codex.platform.paper.persistence.sql;
 
-public interface MySQLCollectableDao {
-    // TODO
+import org.jdbi.v3.sqlobject.config.RegisterFieldMapper;
+import org.jdbi.v3.sqlobject.customizer.Bind;
+import org.jdbi.v3.sqlobject.customizer.BindFields;
+import org.jdbi.v3.sqlobject.customizer.BindList;
+import org.jdbi.v3.sqlobject.statement.SqlBatch;
+import org.jdbi.v3.sqlobject.statement.SqlQuery;
+import org.jdbi.v3.sqlobject.statement.SqlUpdate;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * MySQL / MariaDB statements for {@link CollectableDao}
+ * <p>
+ * The InnoDB primary key {@code (player_uuid, namespace, id)} is also the clustered index, so every
+ * per-player and per-(player, namespace) lookup is a contiguous range scan on the primary key and
+ * no secondary indexes are needed. UUIDs are stored as ASCII to keep the key narrow
+ *
+ * @author Cammy
+ */
+public interface MySQLCollectableDao extends CollectableDao {
+
+    @Override
+    default void createSchema() {
+        createTable();
+        createCountsTable();
+        if (countsEmpty()) backfillCounts(TOTAL_NAMESPACE);
+    }
+
+    @SqlUpdate("""
+        CREATE TABLE IF NOT EXISTS collectable_unlocks (
+          player_uuid CHAR(36) CHARACTER SET ascii COLLATE ascii_bin NOT NULL,
+          namespace VARCHAR(64) NOT NULL,
+          id VARCHAR(128) NOT NULL,
+          first_unlocked_at BIGINT NOT NULL,
+          last_replayed_at BIGINT NULL,
+          PRIMARY KEY (player_uuid, namespace, id)
+        ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_bin
+        """)
+    void createTable();
+
+    @SqlUpdate("""
+        CREATE TABLE IF NOT EXISTS collectable_counts (
+          player_uuid CHAR(36) CHARACTER SET ascii COLLATE ascii_bin NOT NULL,
+          namespace VARCHAR(64) NOT NULL,
+          unlocked INT NOT NULL,
+          PRIMARY KEY (player_uuid, namespace),
+          KEY idx_collectable_counts_rank (namespace, unlocked)
+        ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_bin
+        """)
+    void createCountsTable();
+
+    @SqlQuery("SELECT NOT EXISTS (SELECT 1 FROM collectable_counts)")
+    boolean countsEmpty();
+
+    /**
+     * Fills the counts of every player, run once when the counts table is new
+     */
+    @SqlUpdate("""
+        INSERT INTO collectable_counts (player_uuid, namespace, unlocked)
+        SELECT player_uuid, namespace, COUNT(*) FROM collectable_unlocks GROUP BY player_uuid, namespace
+        UNION ALL
+        SELECT player_uuid, :total, COUNT(*) FROM collectable_unlocks GROUP BY player_uuid
+        """)
+    void backfillCounts(@Bind("total") String totalNamespace);
+
+    @Override
+    @SqlUpdate("""
+       INSERT IGNORE INTO collectable_unlocks
+       (player_uuid, namespace, id, first_unlocked_at)
+       VALUES (:player, :ns, :id, :when)
+       """)
+    int insertUnlock(
+        @Bind("player") String player,
+        @Bind("ns") String namespace,
+        @Bind("id") String id,
+        @Bind("when") long whenMillis);
+
+    @Override
+    @SqlBatch("""
+       INSERT INTO collectable_unlocks
+       (player_uuid, namespace, id, first_unlocked_at, last_replayed_at)
+       VALUES (:player, :namespace, :id, :firstUnlockedAt, :lastReplayedAt)
+       ON DUPLICATE KEY UPDATE
+         first_unlocked_at = VALUES(first_unlocked_at),
+         last_replayed_at = VALUES(last_replayed_at)
+       """)
+    void upsertAll(
+        @Bind("player") String player,
+        @BindFields Collection<Row> rows);
+
+    @Override
+    @SqlUpdate("""
+        UPDATE collectable_unlocks
+        SET last_replayed_at = :when
+        WHERE player_uuid=:player AND namespace=:ns AND id=:id
+        """)
+    void updateReplay(
+        @Bind("player") String player,
+        @Bind("ns") String namespace,
+        @Bind("id") String id,
+        @Bind("when") long whenMillis);
+
+    @Override
+    @SqlQuery("""
+        SELECT id FROM collectable_unlocks
+        WHERE player_uuid=:player AND namespace=:ns
+        """)
+    Set<String> loadIds(
+        @Bind("player") String player,
+        @Bind("ns") String namespace);
+
+    @Override
+    @SqlQuery("""
+        SELECT 1 FROM collectable_unlocks
+        WHERE player_uuid=:player AND namespace=:ns AND id=:id
+        LIMIT 1
+        """)
+    Boolean exists(
+        @Bind("player") String player,
+        @Bind("ns") String namespace,
+        @Bind("id") String id);
+
+    @Override
+    @SqlQuery("""
+        SELECT namespace, id, first_unlocked_at AS firstUnlockedAt,
+        last_replayed_at AS lastReplayedAt FROM collectable_unlocks WHERE player_uuid=:player
+        """)
+    @RegisterFieldMapper(Row.class)
+    List<Row> loadAll(@Bind("player") String player);
+
+    @Override
+    @SqlQuery("""
+        SELECT player_uuid AS player, namespace, id, first_unlocked_at AS firstUnlockedAt,
+        last_replayed_at AS lastReplayedAt FROM collectable_unlocks WHERE player_uuid IN (<players>)
+        """)
+    @RegisterFieldMapper(PlayerRow.class)
+    List<PlayerRow> loadAllFor(@BindList("players") Collection<String> players);
+
+    @Override
+    @SqlQuery("SELECT DISTINCT player_uuid FROM collectable_unlocks")
+    List<String> players();
+
+    @Override
+    @SqlUpdate("""
+        DELETE FROM collectable_unlocks
+        WHERE player_uuid=:player AND namespace=:ns AND id=:id
+        """)
+    int deleteOne(
+        @Bind("player") String player,
+        @Bind("ns") String namespace,
+        @Bind("id") String id);
+
+    @Override
+    @SqlUpdate("""
+        DELETE FROM collectable_unlocks
+        WHERE player_uuid=:player AND namespace=:ns
+        """)
+    int deleteNamespace(
+        @Bind("player") String player,
+        @Bind("ns") String namespace);
+
+    @Override
+    @SqlBatch("""
+        DELETE FROM collectable_unlocks
+        WHERE player_uuid=:player AND namespace=:namespace AND id=:id
+        """)
+    void deleteRows(
+        @Bind("player") String player,
+        @BindFields Collection<Row> rows);
+
+    @Override
+    @SqlUpdate("""
+        DELETE FROM collectable_unlocks WHERE player_uuid=:player
+        """)
+    void deleteAllForPlayer(@Bind("player") String player);
+
+    @Override
+    @SqlUpdate("""
+        INSERT INTO collectable_counts (player_uuid, namespace, unlocked)
+        VALUES (:player, :ns, :delta)
+        ON DUPLICATE KEY UPDATE unlocked = unlocked + VALUES(unlocked)
+        """)
+    void adjustCount(
+        @Bind("player") String player,
+        @Bind("ns") String namespace,
+        @Bind("delta") int delta);
+
+    @Override
+    @SqlUpdate("DELETE FROM collectable_counts WHERE player_uuid=:player AND namespace=:ns")
+    void deleteCount(@Bind("player") String player, @Bind("ns") String namespace);
+
+    @Override
+    @SqlUpdate("DELETE FROM collectable_counts WHERE player_uuid=:player")
+    void deleteCounts(@Bind("player") String player);
+
+    @Override
+    default void recount(String player) {
+        deleteCounts(player);
+        insertCounts(player, TOTAL_NAMESPACE);
+    }
+
+    @SqlUpdate("""
+        INSERT INTO collectable_counts (player_uuid, namespace, unlocked)
+        SELECT player_uuid, namespace, COUNT(*) FROM collectable_unlocks WHERE player_uuid=:player GROUP BY namespace
+        UNION ALL
+        SELECT player_uuid, :total, COUNT(*) FROM collectable_unlocks WHERE player_uuid=:player GROUP BY player_uuid
+        """)
+    void insertCounts(@Bind("player") String player, @Bind("total") String totalNamespace);
+
+    @Override
+    @SqlQuery("""
+        SELECT player_uuid AS player, unlocked FROM collectable_counts
+        WHERE namespace=:ns AND unlocked > 0
+        ORDER BY unlocked DESC LIMIT :limit
+        """)
+    @RegisterFieldMapper(CountRow.class)
+    List<CountRow> topCounts(@Bind("ns") String namespace, @Bind("limit") int limit);
+
+    @Override
+    @SqlQuery("SELECT unlocked FROM collectable_counts WHERE player_uuid=:player AND namespace=:ns")
+    Integer count(@Bind("player") String player, @Bind("ns") String namespace);
+
+    @Override
+    @SqlQuery("SELECT COUNT(*) FROM collectable_counts WHERE namespace=:ns AND unlocked > :count")
+    long countAbove(@Bind("ns") String namespace, @Bind("count") int count);
+
+    @Override
+    @SqlQuery("SELECT namespace, id, COUNT(*) AS unlocked FROM collectable_unlocks GROUP BY namespace, id")
+    @RegisterFieldMapper(DiscoveryRow.class)
+    List<DiscoveryRow> discoveries();
+
+    @Override
+    @SqlQuery("SELECT COUNT(DISTINCT player_uuid) FROM collectable_unlocks")
+    int playerCount();
+
 }
@@ -0,0 +1,368 @@
+package com.glance.codex.platform.paper.persistence.sql;
+
+import org.jdbi.v3.sqlobject.config.RegisterFieldMapper;
+import org.jdbi.v3.sqlobject.customizer.Bind;
+import org.jdbi.v3.sqlobject.customizer.BindFields;
+import org.jdbi.v3.sqlobject.customizer.BindList;
+import org.jdbi.v3.sqlobject.customizer.Define;
+import org.jdbi.v3.sqlobject.statement.SqlBatch;
+import org.jdbi.v3.sqlobject.statement.SqlQuery;
+import org.jdbi.v3.sqlobject.statement.SqlUpdate;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * SQLite statements for the dictionary-encoded schema
+ * <p>
+ * {@code (namespace, id)} pairs live once in {@code collectable_keys} and unlock rows reference them by
+ * integer, players are stored as 16 byte UUID blobs. The unlock table is {@code WITHOUT ROWID} with the
+ * primary key {@code (player, key_id)}, so per-player lookups need no secondary index at all
+ * <p>
+ * Works on raw key ids, {@link DictionaryCollectableDao} translates to the {@link CollectableDao} contract
+ *
+ * @author Cammy
+ */
+public interface SqliteCompactCollectableDao {
+
+    default void createSchema() {
+        createKeysTable();
+        createUnlocksTable();
+        createCountsTable();
+        createIdxCountsRank();
+    }
+
+    @SqlUpdate("""
+        CREATE TABLE IF NOT EXISTS collectable_keys (
+          key_id INTEGER PRIMARY KEY,
+          namespace TEXT NOT NULL,
+          id TEXT NOT NULL,
+          UNIQUE (namespace, id)
+        );
+        """)
+    void createKeysTable();
+
+    @SqlUpdate("""
+        CREATE TABLE IF NOT EXISTS collectable_unlocks_compact (
+          player BLOB NOT NULL,
+          key_id INTEGER NOT NULL,
+          first_unlocked_at INTEGER NOT NULL,
+          last_replayed_at INTEGER,
+          PRIMARY KEY (player, key_id)
+        ) WITHOUT ROWID;
+        """)
+    void createUnlocksTable();
+
+    @SqlUpdate("""
+        CREATE TABLE IF NOT EXISTS collectable_counts_compact (
+          player BLOB NOT NULL,
+          namespace TEXT NOT NULL,
+          unlocked INTEGER NOT NULL,
+          PRIMARY KEY (player, namespace)
+        ) WITHOUT ROWID;
+        """)
+    void createCountsTable();
+
+    @SqlUpdate("CREATE INDEX IF NOT EXISTS idx_collectable_counts_compact_rank ON collectable_counts_compact(namespace, unlocked)")
+    void createIdxCountsRank();
+
+    /*
+     * ====
+     * Keys
+     * ====
+     */
+
+    @SqlUpdate("INSERT OR IGNORE INTO collectable_keys (namespace, id) VALUES (:ns, :id)")
+    void insertKey(@Bind("ns") String namespace, @Bind("id") String id);
+
+    @SqlQuery("SELECT key_id FROM collectable_keys WHERE namespace=:ns AND id=:id")
+    Integer findKey(@Bind("ns") String namespace, @Bind("id") String id);
+
+    @SqlQuery("SELECT key_id AS keyId, namespace, id FROM collectable_keys")
+    @RegisterFieldMapper(KeyEntry.class)
+    List<KeyEntry> loadKeys();
+
+    /*
+     * =======
+     * Unlocks
+     * =======
+     */
+
+    @SqlUpdate("""
+       INSERT OR IGNORE INTO collectable_unlocks_compact
+       (player, key_id, first_unlocked_at)
+       VALUES (:player, :key, :when)
+       """)
+    int insertUnlock(
+        @Bind("player") byte[] player,
+        @Bind("key") int keyId,
+        @Bind("when") long whenMillis);
+
+    @SqlBatch("""
+       INSERT INTO collectable_unlocks_compact
+       (player, key_id, first_unlocked_at, last_replayed_at)
+       VALUES (:player, :keyId, :firstUnlockedAt, :lastReplayedAt)
+       ON CONFLICT(player, key_id) DO UPDATE SET
+         first_unlocked_at = excluded.first_unlocked_at,
+         last_replayed_at = excluded.last_replayed_at
+       """)
+    void upsertAll(
+        @Bind("player") byte[] player,
+        @BindFields Collection<KeyRow> rows);
+
+    @SqlUpdate("""
+        UPDATE collectable_unlocks_compact
+        SET last_replayed_at = :when
+        WHERE player=:player AND key_id=:key
+        """)
+    void updateReplay(
+        @Bind("player") byte[] player,
+        @Bind("key") int keyId,
+        @Bind("when") long whenMillis);
+
+    @SqlQuery("""
+        SELECT k.id FROM collectable_unlocks_compact u
+        JOIN collectable_keys k ON k.key_id = u.key_id
+        WHERE u.player=:player AND k.namespace=:ns
+        """)
+    Set<String> loadIds(
+        @Bind("player") byte[] player,
+        @Bind("ns") String namespace);
+
+    @SqlQuery("""
+        SELECT 1 FROM collectable_unlocks_compact
+        WHERE player=:player AND key_id=:key
+        LIMIT 1
+        """)
+    Boolean exists(
+        @Bind("player") byte[] player,
+        @Bind("key") int keyId);
+
+    @SqlQuery("""
+        SELECT k.namespace, k.id, u.first_unlocked_at AS firstUnlockedAt,
+        u.last_replayed_at AS lastReplayedAt FROM collectable_unlocks_compact u
+        JOIN collectable_keys k ON k.key_id = u.key_id
+        WHERE u.player=:player
+        """)
+    @RegisterFieldMapper(CollectableDao.Row.class)
+    List<CollectableDao.Row> loadAll(@Bind("player") byte[] player);
+
+    @SqlQuery("""
+        SELECT u.player, k.namespace, k.id, u.first_unlocked_at AS firstUnlockedAt,
+        u.last_replayed_at AS lastReplayedAt FROM collectable_unlocks_compact u
+        JOIN collectable_keys k ON k.key_id = u.key_id
+        WHERE u.player IN (<players>)
+        """)
+    @RegisterFieldMapper(BlobPlayerRow.class)
+    List<BlobPlayerRow> loadAllFor(@BindList("players") Collection<byte[]> players);
+
+    @SqlQuery("SELECT DISTINCT player FROM collectable_unlocks_compact")
+    List<byte[]> players();
+
+    @SqlUpdate("""
+        DELETE FROM collectable_unlocks_compact
+        WHERE player=:player AND key_id=:key
+        """)
+    int deleteOne(
+        @Bind("player") byte[] player,
+        @Bind("key") int keyId);
+
+    @SqlUpdate("""
+        DELETE FROM collectable_unlocks_compact
+        WHERE player=:player
+        AND key_id IN (SELECT key_id FROM collectable_keys WHERE namespace=:ns)
+        """)
+    int deleteNamespace(
+        @Bind("player") byte[] player,
+        @Bind("ns") String namespace);
+
+    @SqlBatch("""
+        DELETE FROM collectable_unlocks_compact
+        WHERE player=:player AND key_id=:keyId
+        """)
+    void deleteRows(
+        @Bind("player") byte[] player,
+        @BindFields Collection<KeyRow> rows);
+
+    @SqlUpdate("DELETE FROM collectable_unlocks_compact WHERE player=:player")
+    void deleteAllForPlayer(@Bind("player") byte[] player);
+
+    /*
+     * ======
+     * Counts
+     * ======
+     */
+
+    @SqlQuery("SELECT NOT EXISTS (SELECT 1 FROM collectable_counts_compact)")
+    boolean countsEmpty();
+
+    @SqlUpdate("""
+        INSERT INTO collectable_counts_compact (player, namespace, unlocked)
+        SELECT u.player, k.namespace, COUNT(*) FROM collectable_unlocks_compact u
+        JOIN collectable_keys k ON k.key_id = u.key_id
+        GROUP BY u.player, k.namespace
+        UNION ALL
+        SELECT player, :total, COUNT(*) FROM collectable_unlocks_compact GROUP BY player
+        """)
+    void backfillCounts(@Bind("total") String totalNamespace);
+
+    @SqlUpdate("""
+        INSERT INTO collectable_counts_compact (player, namespace, unlocked)
+        VALUES (:player, :ns, :delta)
+        ON CONFLICT(player, namespace) DO UPDATE SET
+          unlocked = unlocked + excluded.unlocked
+        """)
+    void adjustCount(
+        @Bind("player") byte[] player,
+        @Bind("ns") String namespace,
+        @Bind("delta") int delta);
+
+    @SqlUpdate("DELETE FROM collectable_counts_compact WHERE player=:player AND namespace=:ns")
+    void deleteCount(@Bind("player") byte[] player, @Bind("ns") String namespace);
+
+    @SqlUpdate("DELETE FROM collectable_counts_compact WHERE player=:player")
+    void deleteCounts(@Bind("player") byte[] player);
+
+    @SqlUpdate("""
+        INSERT INTO collectable_counts_compact (player, namespace, unlocked)
+        SELECT u.player, k.namespace, COUNT(*) FROM collectable_unlocks_compact u
+        JOIN collectable_keys k ON k.key_id = u.key_id
+        WHERE u.player=:player GROUP BY k.namespace
+        UNION ALL
+        SELECT player, :total, COUNT(*) FROM collectable_unlocks_compact WHERE player=:player GROUP BY player
+        """)
+    void insertCounts(@Bind("player") byte[] player, @Bind("total") String totalNamespace);
+
+    @SqlQuery("""
+        SELECT player, unlocked FROM collectable_counts_compact
+        WHERE namespace=:ns AND unlocked > 0
+        ORDER BY unlocked DESC LIMIT :limit
+        """)
+    @RegisterFieldMapper(BlobCountRow.class)
+    List<BlobCountRow> topCounts(@Bind("ns") String namespace, @Bind("limit") int limit);
+
+    @SqlQuery("SELECT unlocked FROM collectable_counts_compact WHERE player=:player AND namespace=:ns")
+    Integer count(@Bind("player") byte[] player, @Bind("ns") String namespace);
+
+    @SqlQuery("SELECT COUNT(*) FROM collectable_counts_compact WHERE namespace=:ns AND unlocked > :count")
+    long countAbove(@Bind("ns") String namespace, @Bind("count") int count);
+
+    @SqlQuery("""
+        SELECT k.namespace, k.id, d.unlocked FROM (
+          SELECT key_id, COUNT(*) AS unlocked FROM collectable_unlocks_compact GROUP BY key_id
+        ) d JOIN collectable_keys k ON k.key_id = d.key_id
+        """)
+    @RegisterFieldMapper(CollectableDao.DiscoveryRow.class)
+    List<CollectableDao.DiscoveryRow> discoveries();
+
+    @SqlQuery("SELECT COUNT(DISTINCT player) FROM collectable_unlocks_compact")
+    int playerCount();
+
+    /*
+     * =========
+     * Migration
+     * =========
+     */
+
+    @SqlQuery("SELECT COUNT(*) FROM sqlite_master WHERE type='table' AND name='collectable_unlocks'")
+    int legacyTableCount();
+
+    @SqlUpdate("""
+        INSERT OR IGNORE INTO collectable_keys (namespace, id)
+        SELECT DISTINCT namespace, id FROM collectable_unlocks
+        """)
+    void copyLegacyKeys();
+
+    @SqlQuery("""
+        SELECT player_uuid AS playerUuid, namespace, id, first_unlocked_at AS firstUnlockedAt,
+        last_replayed_at AS lastReplayedAt FROM collectable_unlocks
+        """)
+    @RegisterFieldMapper(LegacyRow.class)
+    Stream<LegacyRow> streamLegacyRows();
+
+    @SqlBatch("""
+       INSERT OR IGNORE INTO collectable_unlocks_compact
+       (player, key_id, first_unlocked_at, last_replayed_at)
+       VALUES (:player, :keyId, :firstUnlockedAt, :lastReplayedAt)
+       """)
+    void insertMigrated(@BindFields Collection<MigratedRow> rows);
+
+    @SqlUpdate("ALTER TABLE collectable_unlocks RENAME TO <name>")
+    void renameLegacyTable(@Define("name") String name);
+
+    /**
+     * A dictionary entry
+     */
+    class KeyEntry {
+        public int keyId;
+        public String namespace;
+        public String id;
+    }
+
+    /**
+     * An unlock row of a single player, by key id
+     */
+    class KeyRow {
+        public int keyId;
+        public Long firstUnlockedAt;
+        public Long lastReplayedAt;
+
+        public KeyRow() {}
+
+        public KeyRow(int keyId, Long firstUnlockedAt, Long lastReplayedAt) {
+            this.keyId = keyId;
+            this.firstUnlockedAt = firstUnlockedAt;
+            this.lastReplayedAt = lastReplayedAt;
+        }
+    }
+
+    /**
+     * A named unlock row along with the raw player blob, used by multi-player reads
+     */
+    class BlobPlayerRow {
+        public byte[] player;
+        public String namespace;
+        public String id;
+        public Long firstUnlockedAt;
+        public Long lastReplayedAt;
+    }
+
+    /**
+     * A {@code collectable_counts_compact} row with the raw player blob
+     */
+    class BlobCountRow {
+        public byte[] player;
+        public int unlocked;
+    }
+
+    /**
+     * A row of the old {@code collectable_unlocks} table
+     */
+    class LegacyRow {
+        public String playerUuid;
+        public String namespace;
+        public String id;
+        public Long firstUnlockedAt;
+        public Long lastReplayedAt;
+    }
+
+    /**
+     * A legacy row translated to the compact layout
+     */
+    class MigratedRow {
+        public byte[] player;
+        public int keyId;
+        public Long firstUnlockedAt;
+        public Long lastReplayedAt;
+
+        public MigratedRow(byte[] player, int keyId, Long firstUnlockedAt, Long lastReplayedAt) {
+            this.player = player;
+            this.keyId = keyId;
+            this.firstUnlockedAt = firstUnlockedAt;
+            this.lastReplayedAt = lastReplayedAt;
+        }
+    }
+
+}
@@ -5,7 +5,7 @@ import org.bukkit.OfflinePlayer;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.*;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
 
 /**
@@ -17,53 +17,93 @@ import java.util.function.Function;
  *   <li>Apply registered globals ({@code {key} -> resolver.apply(player)})</li>
  *   <li>If PlaceholderAPI is on the classpath and player != null, invoke {@code PlaceholderAPI.setPlaceholders(player, str)}</li>
  * </ol>
- * Thread safe: readers (apply/listRegistered) acquire a read-lock; writers (registerDynamic/unregisterDynamic) acquire a write-lock
+ * Thread safe: globals live in an immutable snapshot behind a volatile reference, readers (apply/listRegistered)
+ * never lock. Writers (registerDynamic/unregisterDynamic) are serialised and publish a new copy, registration order is kept
  * </p>
+ * Templates are compiled once into a {@link PlaceholderTemplate} and cached, applying one is a single pass that
+ * resolves only the tokens it contains, locals first then globals. Lazy locals such as a {@link PlaceholderContext}
+ * compute nothing for tokens a template does not use. Global tokens inside a local value (e.g. {@code {player}} in a
+ * display name) are expanded as well, any other token in a replaced value is left as is
  * @author Cammy
  */
 public class DefaultPlaceholderService implements PlaceholderService {
 
-    private final LinkedHashMap<String, Function<@Nullable OfflinePlayer, String>> globals = new LinkedHashMap<>();
-    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    /** replaced on every write, never mutated once published */
+    private volatile Map<String, Function<@Nullable OfflinePlayer, String>> globals = Collections.emptyMap();
+    private final Object writeLock = new Object();
+
+    /** most templates come from config and repeat, anything past this is assumed to be one-off text */
+    private static final int MAX_TEMPLATES = 2048;
+    private final Map<String, PlaceholderTemplate> templates = new ConcurrentHashMap<>();
 
 
     @Override
     public void registerDynamic(String key, Function<@Nullable OfflinePlayer, String> resolver) {
-        lock.writeLock().lock();
-        try { globals.put(key, resolver); }
-        finally { lock.writeLock().unlock(); }
+        Objects.requireNonNull(key, "key");
+        Objects.requireNonNull(resolver, "resolver");
+        synchronized (writeLock) {
+            var next = new LinkedHashMap<>(globals);
+            next.put(key, resolver);
+            globals = Collections.unmodifiableMap(next);
+        }
     }
 
     @Override
     public void unregisterDynamic(String key) {
-        lock.writeLock().lock();
-        try { globals.remove(key); }
-        finally { lock.writeLock().unlock(); }
+        synchronized (writeLock) {
+            if (!globals.containsKey(key)) return;
+            var next = new LinkedHashMap<>(globals);
+            next.remove(key);
+            globals = Collections.unmodifiableMap(next);
+        }
     }
 
     @Override
     public Set<String> listRegistered() {
-        lock.readLock().lock();
-        try { return Collections.unmodifiableSet(new LinkedHashSet<>(globals.keySet())); }
-        finally { lock.readLock().unlock(); }
+        // the snapshot never changes, its key set is a stable view
+        return globals.keySet();
     }
 
     @Override
     public String apply(String template, @Nullable OfflinePlayer player, Map<String, String> locals) {
-        String result = template;
-        // locals
-        for (var e : locals.entrySet()) {
-            result = result.replace("{" + e.getKey() + "}", e.getValue());
-        }
-        // globals
-        lock.readLock().lock();
-        try {
-            for (var e : globals.entrySet()) {
-                result = result.replace("{" + e.getKey() + "}", e.getValue().apply(player));
-            }
-        } finally {
-            lock.readLock().unlock();
-        }
-        return result;
+        if (template.indexOf('{') < 0) return template;
+        // one snapshot for the whole template
+        final var snapshot = globals;
+        return compile(template).render(token -> resolve(token, player, locals, snapshot));
+    }
+
+    /**
+     * @return the parsed template, cached while the cache holds fewer than {@link #MAX_TEMPLATES}
+     */
+    PlaceholderTemplate compile(String template) {
+        PlaceholderTemplate compiled = templates.get(template);
+        if (compiled != null) return compiled;
+
+        compiled = PlaceholderTemplate.compile(template);
+        // dropped wholesale rather than tracking use, refilling from config templates is cheap
+        if (templates.size() >= MAX_TEMPLATES) templates.clear();
+        templates.put(template, compiled);
+        return compiled;
+    }
+
+    private @Nullable String resolve(
+        String token,
+        @Nullable OfflinePlayer player,
+        Map<String, String> locals,
+        Map<String, Function<@Nullable OfflinePlayer, String>> snapshot
+    ) {
+        String local = locals.get(token);
+        if (local == null) return global(token, player, snapshot);
+        if (snapshot.isEmpty() || local.indexOf('{') < 0) return local;
+        return compile(local).render(nested -> global(nested, player, snapshot));
+    }
+
+    private static @Nullable String global(
+        String token,
+        @Nullable OfflinePlayer player,
+        Map<String, Function<@Nullable OfflinePlayer, String>> snapshot
+    ) {
+        Function<@Nullable OfflinePlayer, String> resolver = snapshot.get(token);
+        return resolver != null ? resolver.apply(player) : null;
     }
 }
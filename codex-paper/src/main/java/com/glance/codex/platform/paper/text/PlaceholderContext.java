@@ -0,0 +1,299 @@
+package com.glance.codex.platform.paper.text;
+
+import com.glance.codex.api.collectable.Collectable;
+import com.glance.codex.api.collectable.CollectableMeta;
+import com.glance.codex.api.text.PlaceholderService;
+import com.glance.codex.platform.paper.persistence.discovery.DiscoveryStats;
+import org.bukkit.Location;
+import org.bukkit.NamespacedKey;
+import org.bukkit.OfflinePlayer;
+import org.bukkit.entity.Player;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Placeholders of a single unlock, resolved when a template looks them up rather than up front
+ * <p>
+ * Only holds the collectable, its key and the player. A token is computed the first time it is looked up and
+ * cached for every later message and command of the same unlock, tokens no template uses cost nothing and a
+ * context allocates the same small amount however many tokens exist. Values put explicitly win over resolved ones
+ * <p>
+ * This is the one definition of the standard tokens, the eager {@link PlaceholderUtils#appendCollectableTags},
+ * {@link PlaceholderUtils#appendDiscoveryTags} and {@link PlaceholderUtils#appendPlayerTags} copy from it. A context
+ * can take its player tokens from a parent, so a batch of unlocks resolves them once. Tokens that change over time
+ * can be fixed to their current values with {@link #capture}, and the player's position with {@link #pin}
+ * <p>
+ * {@link PlaceholderService} implementations look tokens up with {@link #get}, iterating the map resolves
+ * every token. A context belongs to one unlock, lookups racing on two threads at worst compute a value twice
+ *
+ * @author Cammy
+ */
+public final class PlaceholderContext extends AbstractMap<String, String> {
+
+    private static final Object ABSENT = new Object();
+    private static final Map<String, Integer> SLOTS = new HashMap<>();
+    private static final List<String> TOKENS = new ArrayList<>();
+    private static final List<Group> GROUPS = new ArrayList<>();
+    private static final List<Function<PlaceholderContext, String>> RESOLVERS = new ArrayList<>();
+
+    static {
+        collectable("namespace", (key, c) -> key.namespace());
+        collectable("id", (key, c) -> key.getKey());
+        collectable("key", (key, c) -> key.asString());
+        collectable("repo_namespace", (key, c) -> key.namespace());
+        collectable("collectable_name_formatted", (key, c) -> c.rawDisplayName());
+        collectable("collectable_name_plain", (key, c) -> c.plainDisplayName());
+        collectable("allow_replay", (key, c) -> String.valueOf(c.allowReplay()));
+        collectable("show_when_locked", (key, c) -> String.valueOf(c.showWhenLocked()));
+        collectable("repo_name_formatted", (key, c) -> {
+            CollectableMeta meta = c.getMeta();
+            return meta != null ? meta.repository().displayNameRaw() : null;
+        });
+        collectable("repo_name_plain", (key, c) -> {
+            CollectableMeta meta = c.getMeta();
+            return meta != null ? meta.repository().plainDisplayName() : null;
+        });
+
+        discovery("discovered_count", (key, stats) -> String.valueOf(stats.discovered(key)));
+        discovery("discovered_percent", (key, stats) -> String.format(Locale.ROOT, "%.1f", stats.discoveredPercent(key)));
+        discovery("discovered_players", (key, stats) -> String.valueOf(stats.players()));
+
+        define("player", Group.PLAYER, ctx -> ctx.player != null ? ctx.player.getName() : null);
+        define("uuid", Group.PLAYER, ctx -> ctx.player != null ? ctx.player.getUniqueId().toString() : null);
+        online("world", (p, ctx) -> ctx.world(p));
+        online("location", (p, ctx) -> {
+            Location loc = ctx.location(p);
+            return String.format("(%f, %f, %f)", loc.getX(), loc.getY(), loc.getZ());
+        });
+        online("block_location", (p, ctx) -> {
+            Location loc = ctx.location(p);
+            return String.format("(%d, %d, %d)", loc.getBlockX(), loc.getBlockY(), loc.getBlockZ());
+        });
+        online("x", (p, ctx) -> String.valueOf(ctx.location(p).getBlockX()));
+        online("y", (p, ctx) -> String.valueOf(ctx.location(p).getBlockY()));
+        online("z", (p, ctx) -> String.valueOf(ctx.location(p).getBlockZ()));
+    }
+
+    private final @Nullable NamespacedKey key;
+    private final @Nullable Collectable collectable;
+    private final @Nullable OfflinePlayer player;
+    private final @Nullable PlaceholderContext parent;
+
+    /** resolved values by slot, {@link #ABSENT} when a token has no value */
+    private final Object[] values = new Object[RESOLVERS.size()];
+    private @Nullable Map<String, String> explicit;
+    private @Nullable Location location;
+    private @Nullable String world;
+
+    private PlaceholderContext(
+        @Nullable NamespacedKey key,
+        @Nullable Collectable collectable,
+        @Nullable OfflinePlayer player,
+        @Nullable PlaceholderContext parent
+    ) {
+        this.key = key;
+        this.collectable = collectable;
+        this.player = player;
+        this.parent = parent;
+    }
+
+    /**
+     * @return a context with the collectable and player tokens
+     */
+    public static @NotNull PlaceholderContext of(
+        @NotNull NamespacedKey key,
+        @NotNull Collectable collectable,
+        @Nullable OfflinePlayer player
+    ) {
+        return new PlaceholderContext(key, collectable, player, null);
+    }
+
+    /**
+     * @return a context with the collectable tokens, taking every other token from the parent
+     */
+    public static @NotNull PlaceholderContext of(
+        @NotNull NamespacedKey key,
+        @NotNull Collectable collectable,
+        @NotNull PlaceholderContext parent
+    ) {
+        return new PlaceholderContext(key, collectable, null, parent);
+    }
+
+    /**
+     * @return a context with the player tokens only
+     */
+    public static @NotNull PlaceholderContext of(@Nullable OfflinePlayer player) {
+        return new PlaceholderContext(null, null, player, null);
+    }
+
+    /**
+     * @return a context with the discovery tokens of a key only
+     */
+    static @NotNull PlaceholderContext of(@NotNull NamespacedKey key) {
+        return new PlaceholderContext(key, null, null, null);
+    }
+
+    /**
+     * @return the player the tokens describe, possibly the parent's
+     */
+    public @Nullable OfflinePlayer player() {
+        if (player != null) return player;
+        return parent != null ? parent.player() : null;
+    }
+
+    @Override
+    public @Nullable String get(Object token) {
+        if (!(token instanceof String name)) return null;
+        if (explicit != null) {
+            String value = explicit.get(name);
+            if (value != null) return value;
+        }
+
+        Integer slot = SLOTS.get(name);
+        if (slot != null) {
+            Object value = values[slot];
+            if (value == null) {
+                String resolved = RESOLVERS.get(slot).apply(this);
+                value = resolved != null ? resolved : ABSENT;
+                values[slot] = value;
+            }
+            if (value != ABSENT) return (String) value;
+        }
+        return parent != null ? parent.get(name) : null;
+    }
+
+    @Override
+    public boolean containsKey(Object token) {
+        return get(token) != null;
+    }
+
+    @Override
+    public @Nullable String put(@NotNull String token, @NotNull String value) {
+        String previous = get(token);
+        if (explicit == null) explicit = new HashMap<>(4);
+        explicit.put(token, value);
+        return previous;
+    }
+
+    @Override
+    public @NotNull Set<Entry<String, String>> entrySet() {
+        Map<String, String> all = new LinkedHashMap<>();
+        if (parent != null) all.putAll(parent);
+        for (String token : SLOTS.keySet()) {
+            String value = get(token);
+            if (value != null) all.put(token, value);
+        }
+        if (explicit != null) all.putAll(explicit);
+        return Collections.unmodifiableMap(all).entrySet();
+    }
+
+    /**
+     * Resolves every token of the group now, later lookups return these values rather than current ones
+     * <p>
+     * For effects that run after the unlock, e.g. {@link Group#DISCOVERY} as of the unlock. Only this context's
+     * own tokens are captured, not a parent's. Prefer {@link #pin} for {@link Group#POSITION}
+     *
+     * @return this context
+     */
+    public @NotNull PlaceholderContext capture(@NotNull Group group) {
+        for (int slot = 0; slot < RESOLVERS.size(); slot++) {
+            if (GROUPS.get(slot) == group) get(TOKENS.get(slot));
+        }
+        return this;
+    }
+
+    /**
+     * Copies the group's tokens that have a value into the map
+     *
+     * @param replace whether to overwrite values already in the map
+     */
+    void copyTo(@NotNull Map<String, String> target, @NotNull Group group, boolean replace) {
+        for (int slot = 0; slot < RESOLVERS.size(); slot++) {
+            if (GROUPS.get(slot) != group) continue;
+            String value = get(TOKENS.get(slot));
+            if (value == null) continue;
+            if (replace) target.put(TOKENS.get(slot), value);
+            else target.putIfAbsent(TOKENS.get(slot), value);
+        }
+    }
+
+    /**
+     * Remembers where the player is now, the position tokens are still only formatted when looked up
+     * <p>
+     * Must be called on the main thread, for effects that run after the player may have moved
+     *
+     * @return this context
+     */
+    public @NotNull PlaceholderContext pin() {
+        if (player instanceof Player online) {
+            location = online.getLocation();
+            world = online.getWorld().getName();
+        }
+        return this;
+    }
+
+    private @NotNull Location location(@NotNull Player online) {
+        if (location == null) location = online.getLocation();
+        return location;
+    }
+
+    private @NotNull String world(@NotNull Player online) {
+        if (world == null) world = online.getWorld().getName();
+        return world;
+    }
+
+    /*
+     * =========
+     * Resolvers
+     * =========
+     */
+
+    private static void define(@NotNull String token, @NotNull Group group, @NotNull Function<PlaceholderContext, String> resolver) {
+        SLOTS.put(token, RESOLVERS.size());
+        TOKENS.add(token);
+        GROUPS.add(group);
+        RESOLVERS.add(resolver);
+    }
+
+    private static void collectable(@NotNull String token, @NotNull BiFunction<NamespacedKey, Collectable, String> resolver) {
+        define(token, Group.COLLECTABLE, ctx -> ctx.key != null && ctx.collectable != null ? resolver.apply(ctx.key, ctx.collectable) : null);
+    }
+
+    private static void discovery(@NotNull String token, @NotNull BiFunction<NamespacedKey, DiscoveryStats, String> resolver) {
+        define(token, Group.DISCOVERY, ctx -> {
+            DiscoveryStats stats = PlaceholderUtils.discoveryStats();
+            return ctx.key != null && stats != null ? resolver.apply(ctx.key, stats) : null;
+        });
+    }
+
+    private static void online(@NotNull String token, @NotNull BiFunction<Player, PlaceholderContext, String> resolver) {
+        define(token, Group.POSITION, ctx -> ctx.player instanceof Player p ? resolver.apply(p, ctx) : null);
+    }
+
+    /**
+     * Kinds of standard tokens
+     */
+    public enum Group {
+        /** the collectable and its repository, fixed for a collectable */
+        COLLECTABLE,
+        /** server-wide discovery figures of the collectable, change with every unlock */
+        DISCOVERY,
+        /** name and uuid of the player */
+        PLAYER,
+        /** world and location of an online player, read from the server on the main thread */
+        POSITION
+    }
+
+}
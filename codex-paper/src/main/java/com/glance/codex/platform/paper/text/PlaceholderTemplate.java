@@ -0,0 +1,80 @@
+package com.glance.codex.platform.paper.text;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * A template parsed once into its literal text and {@code {token}} parts
+ * <p>
+ * A token is the text between a {@code '{'} and the next {@code '}'} with no other {@code '{'} in between, so
+ * {@code "{a {b}"} holds the token {@code b}. Rendering is a single pass over the parts that looks up only the
+ * tokens present, tokens without a value are written back as they were. Instances are immutable and shared
+ *
+ * @author Cammy
+ */
+public final class PlaceholderTemplate {
+
+    /** one more literal than tokens, literal {@code i} comes before token {@code i} */
+    private final String[] literals;
+    private final String[] tokens;
+    private final String raw;
+    private final int literalLength;
+
+    private PlaceholderTemplate(@NotNull String raw, @NotNull String[] literals, @NotNull String[] tokens) {
+        this.raw = raw;
+        this.literals = literals;
+        this.tokens = tokens;
+        int length = 0;
+        for (String literal : literals) length += literal.length();
+        this.literalLength = length;
+    }
+
+    /**
+     * Splits a template into its parts
+     */
+    public static @NotNull PlaceholderTemplate compile(@NotNull String raw) {
+        List<String> literals = new ArrayList<>();
+        List<String> tokens = new ArrayList<>();
+
+        int copied = 0;
+        int close = raw.indexOf('}');
+        while (close >= 0) {
+            int open = raw.lastIndexOf('{', close);
+            if (open >= copied) {
+                literals.add(raw.substring(copied, open));
+                tokens.add(raw.substring(open + 1, close));
+                copied = close + 1;
+            }
+            close = raw.indexOf('}', close + 1);
+        }
+        literals.add(raw.substring(copied));
+        return new PlaceholderTemplate(raw, literals.toArray(String[]::new), tokens.toArray(String[]::new));
+    }
+
+    /**
+     * @param values token to replacement, null when the token has no value
+     * @return the template with every token that has a value replaced
+     */
+    public @NotNull String render(@NotNull Function<String, @Nullable String> values) {
+        if (tokens.length == 0) return raw;
+
+        StringBuilder out = new StringBuilder(literalLength + tokens.length * 16);
+        for (int i = 0; i < tokens.length; i++) {
+            out.append(literals[i]);
+            String value = values.apply(tokens[i]);
+            if (value != null) out.append(value);
+            else out.append('{').append(tokens[i]).append('}');
+        }
+        return out.append(literals[tokens.length]).toString();
+    }
+
+    @Override
+    public String toString() {
+        return raw;
+    }
+
+}
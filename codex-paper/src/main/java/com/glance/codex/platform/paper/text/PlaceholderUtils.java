@@ -1,13 +1,10 @@
 package com.glance.codex.platform.paper.text;
 
 import com.glance.codex.api.collectable.Collectable;
-import com.glance.codex.api.collectable.CollectableMeta;
-import com.glance.codex.api.collectable.CollectableRepository;
+import com.glance.codex.platform.paper.persistence.discovery.DiscoveryStats;
 import lombok.experimental.UtilityClass;
-import org.bukkit.Location;
 import org.bukkit.NamespacedKey;
 import org.bukkit.OfflinePlayer;
-import org.bukkit.entity.Player;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -17,6 +14,19 @@ import java.util.Map;
 @UtilityClass
 public class PlaceholderUtils {
 
+    private volatile @Nullable DiscoveryStats discoveryStats;
+
+    /**
+     * Sets the stats behind the discovery placeholders, null while they are unavailable
+     */
+    public void registerDiscoveryStats(@Nullable DiscoveryStats stats) {
+        discoveryStats = stats;
+    }
+
+    @Nullable DiscoveryStats discoveryStats() {
+        return discoveryStats;
+    }
+
     /**
      * Standard placeholders provided for collectable actions.
      * <p>
@@ -34,6 +44,9 @@ public class PlaceholderUtils {
      *      <li>{@code {repo_name_formatted}} -> MiniMessage-ready display name of the repo</li>
      *      <li>{@code {repo_name_plain}} -> Raw repo display name with no formatting tags</li>
      *  </ul>
+     * <p>
+     * Along with the discovery tags of {@link #appendDiscoveryTags}. Copies every tag eagerly from a
+     * {@link PlaceholderContext}, the unlock path uses the context directly
      */
     public @NotNull Map<String, String> appendCollectableTags(
         @NotNull NamespacedKey key,
@@ -45,24 +58,36 @@ public class PlaceholderUtils {
             map.putAll(placeholders);
         }
 
-        map.put("namespace", key.namespace());
-        map.put("id", key.getKey());
-        map.put("key", key.asString());
-        map.put("repo_namespace", key.namespace());
-
-        map.put("collectable_name_formatted", collectable.rawDisplayName());
-        map.put("collectable_name_plain", collectable.plainDisplayName());
-        map.put("allow_replay", String.valueOf(collectable.allowReplay()));
-        map.put("show_when_locked", String.valueOf(collectable.showWhenLocked()));
+        PlaceholderContext tags = PlaceholderContext.of(key, collectable, (OfflinePlayer) null);
+        tags.copyTo(map, PlaceholderContext.Group.COLLECTABLE, true);
+        tags.copyTo(map, PlaceholderContext.Group.DISCOVERY, true);
+        return map;
+    }
 
-        CollectableMeta meta = collectable.getMeta();
-        if (meta != null) {
-            CollectableRepository repo = meta.repository();
+    /**
+     * Server-wide discovery placeholders of a collectable, read from memory
+     * <p>
+     * Includes:
+     *
+     *  <ul>
+     *      <li>{@code {discovered_count}} -> players that unlocked the collectable</li>
+     *      <li>{@code {discovered_percent}} -> share of players that unlocked it, one decimal (e.g. "3.2")</li>
+     *      <li>{@code {discovered_players}} -> players the percentage is based on</li>
+     *  </ul>
+     */
+    public @NotNull Map<String, String> appendDiscoveryTags(
+        @NotNull NamespacedKey key,
+        @Nullable Map<String, String> placeholders
+    ) {
+        // a context reads the discovery tags on lookup, they are current already
+        if (placeholders instanceof PlaceholderContext) return placeholders;
 
-            map.put("repo_name_formatted", repo.displayNameRaw());
-            map.put("repo_name_plain", repo.plainDisplayName());
+        Map<String, String> map = new HashMap<>();
+        if (placeholders != null) {
+            map.putAll(placeholders);
         }
 
+        PlaceholderContext.of(key).copyTo(map, PlaceholderContext.Group.DISCOVERY, true);
         return map;
     }
 
@@ -78,29 +103,22 @@ public class PlaceholderUtils {
      *     <li>{@code {location}} -> formatted location as {@code (x, y, z)}</li>
      *     <li>{@code {block_location}} -> formatted block location as {@code (blockX, blockY, blockZ)}</li>
      * </ul>
+     * A {@link PlaceholderContext} of the same player is returned as is, it resolves these tokens itself
      */
     public @NotNull Map<String, String> appendPlayerTags(
             @NotNull OfflinePlayer player,
             @Nullable Map<String, String> placeholders
     ) {
+        if (placeholders instanceof PlaceholderContext ctx && player.equals(ctx.player())) return ctx;
+
         Map<String, String> full = new HashMap<>();
         if (placeholders != null) {
             full.putAll(placeholders);
         }
 
-        full.putIfAbsent("player", player.getName());
-        full.putIfAbsent("uuid", player.getUniqueId().toString());
-        if (player instanceof Player p) {
-            full.putIfAbsent("world", p.getWorld().getName());
-
-            Location loc = p.getLocation();
-            full.putIfAbsent("location", String.format("(%f, %f, %f)", loc.getX(), loc.getY(), loc.getZ()));
-            full.putIfAbsent("block_location", String.format("(%d, %d, %d)", loc.getBlockX(), loc.getBlockY(), loc.getBlockZ()));
-            full.putIfAbsent("x", String.valueOf(loc.getBlockX()));
-            full.putIfAbsent("y", String.valueOf(loc.getBlockY()));
-            full.putIfAbsent("z", String.valueOf(loc.getBlockZ()));
-        }
-
+        PlaceholderContext tags = PlaceholderContext.of(player);
+        tags.copyTo(full, PlaceholderContext.Group.PLAYER, false);
+        tags.copyTo(full, PlaceholderContext.Group.POSITION, false);
         return full;
     }
 